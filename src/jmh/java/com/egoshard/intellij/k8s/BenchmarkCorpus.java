@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s;
+
+import com.egoshard.intellij.k8s.parser.ConfigParser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Deterministic generated manifests for benchmarks.
+ */
+public final class BenchmarkCorpus {
+
+    private static final long SEED = 0x4B38534CL;
+    private static final char[] ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-_.".toCharArray();
+
+    /**
+     * Generated manifest shapes.
+     */
+    public enum Shape {
+        /**
+         * Ten short ConfigMap values.
+         */
+        SMALL(ConfigParser.Kind.CONFIGMAP, 10, 16),
+        /**
+         * Ten thousand short ConfigMap values.
+         */
+        KEYS_10K(ConfigParser.Kind.CONFIGMAP, 10_000, 32),
+        /**
+         * Four ConfigMap values of one megabyte each.
+         */
+        LARGE_VALUES(ConfigParser.Kind.CONFIGMAP, 4, 1024 * 1024),
+        /**
+         * A thousand base64 encoded Secret values of three kilobytes each.
+         */
+        BASE64_SECRET(ConfigParser.Kind.SECRET, 1_000, 3 * 1024);
+
+        private final ConfigParser.Kind kind;
+        private final int keys;
+        private final int valueLength;
+
+        Shape(ConfigParser.Kind kind, int keys, int valueLength) {
+            this.kind = kind;
+            this.keys = keys;
+            this.valueLength = valueLength;
+        }
+
+        public ConfigParser.Kind getKind() {
+            return kind;
+        }
+
+    }
+
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * @param shape manifest shape
+     * @param layer layer index, layers share half of their keys with the previous layer
+     * @return generated data values, base64 encoded for Secrets
+     */
+    public static Map<String, Object> getData(Shape shape, int layer) {
+        Random random = new Random(SEED + layer);
+        Map<String, Object> data = new HashMap<>(shape.keys * 2);
+        for (int i = 0; i < shape.keys; i++) {
+            String value = getValue(random, shape.valueLength);
+            data.put("KEY_" + (i + layer * shape.keys / 2),
+                    shape.kind == ConfigParser.Kind.SECRET
+                            ? Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8))
+                            : value);
+        }
+        return data;
+    }
+
+    /**
+     * @param shape manifest shape
+     * @param layer layer index
+     * @return parsed manifest as provided to {@link ConfigParser#parse(Map)}
+     */
+    public static Map<String, Object> getSource(Shape shape, int layer) {
+        Map<String, Object> source = new HashMap<>();
+        source.put(ConfigParser.KEY_KIND, shape.kind.getKey());
+        source.put("data", getData(shape, layer));
+        return source;
+    }
+
+    /**
+     * @param shape manifest shape
+     * @param layer layer index
+     * @return manifest as UTF-8 YAML
+     */
+    public static byte[] getYaml(Shape shape, int layer) {
+        Map<String, Object> data = getData(shape, layer);
+        StringBuilder builder = new StringBuilder(data.size() * (shape.valueLength + 32))
+                .append("apiVersion: v1\n")
+                .append("kind: ").append(shape.kind.getKey()).append('\n')
+                .append("metadata:\n")
+                .append("  name: layer-").append(layer).append('\n')
+                .append("data:\n");
+        data.forEach((key, value) -> builder.append("  ").append(key).append(": \"").append(value).append("\"\n"));
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String getValue(Random random, int length) {
+        char[] value = new char[length];
+        for (int i = 0; i < length; i++) {
+            value[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+        }
+        return new String(value);
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s;
+
+import com.egoshard.intellij.k8s.parser.ConfigMapParser;
+import com.egoshard.intellij.k8s.parser.ConfigParser;
+import com.egoshard.intellij.k8s.parser.SecretParser;
+import com.egoshard.intellij.k8s.support.ConfigCatalog;
+import com.egoshard.intellij.k8s.support.ConfigFileUtil;
+import com.egoshard.intellij.k8s.support.ConfigFingerprint;
+import com.egoshard.intellij.k8s.support.ConfigLayerCache;
+import com.egoshard.intellij.k8s.support.PersistentParseCache;
+import com.egoshard.intellij.k8s.ui.ConfigEditor;
+import com.google.common.collect.ImmutableMap;
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.configurations.RunConfigurationBase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of reading, parsing and merging configuration entries from in-memory files.
+ * <p>
+ * Cold runs parse every file on each invocation, cached runs are answered by the per-entry parse cache. Layered runs merge a
+ * stack of ConfigMaps that override half of the keys of the previous layer through {@link ConfigEditor#resolve(List)}, which
+ * is the merge path behind {@link ConfigEditor#parse(RunConfigurationBase, Map)}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConfigEntryBenchmark {
+
+    private static final Map<String, ConfigParser> PARSERS = ImmutableMap.of(
+            ConfigParser.Kind.CONFIGMAP.getKey(), new ConfigMapParser(),
+            ConfigParser.Kind.SECRET.getKey(), new SecretParser()
+    );
+    private static final int LAYERS = 20;
+
+    @Param({"SMALL", "KEYS_10K", "LARGE_VALUES", "BASE64_SECRET"})
+    private BenchmarkCorpus.Shape shape;
+
+    @Param({"false", "true"})
+    private boolean cached;
+
+    private ConfigEntry entry;
+    private List<ConfigEntry> layers;
+
+    @Setup
+    public void setUp() {
+        MemoryFileUtil fileUtil = new MemoryFileUtil(cached);
+        entry = new ConfigEntry(PARSERS, fileUtil, null, fileUtil.add(shape, 0));
+        layers = new ArrayList<>(LAYERS);
+        BenchmarkCorpus.Shape layerShape = shape == BenchmarkCorpus.Shape.LARGE_VALUES ? BenchmarkCorpus.Shape.SMALL : shape;
+        for (int i = 0; i < LAYERS; i++) {
+            layers.add(new ConfigEntry(PARSERS, fileUtil, null, fileUtil.add(layerShape, i)));
+        }
+    }
+
+    @Benchmark
+    public Map<String, String> entry() throws IOException, ConfigFileException {
+        return entry.parse();
+    }
+
+    @Benchmark
+    public Map<String, String> layers() throws ExecutionException {
+        return ConfigEditor.resolve(layers);
+    }
+
+    /**
+     * File utility serving generated manifests from memory, without a fingerprint or modification stamp unless cached.
+     */
+    private static class MemoryFileUtil extends ConfigFileUtil {
+
+        private final Map<String, byte[]> files = new HashMap<>();
+        private final boolean cached;
+
+        MemoryFileUtil(boolean cached) {
+            this.cached = cached;
+        }
+
+        String add(BenchmarkCorpus.Shape shape, int layer) {
+            String path = shape + "-" + layer + ".yml";
+            files.put(path, BenchmarkCorpus.getYaml(shape, layer));
+            return path;
+        }
+
+        @Override
+        public InputStream getStream(RunConfigurationBase config, String path) throws IOException {
+            byte[] content = files.get(path);
+            if (content == null) {
+                throw new FileNotFoundException(path);
+            }
+            return new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public boolean exists(RunConfigurationBase config, String path) {
+            return files.containsKey(path);
+        }
+
+        @Override
+        public long getModificationStamp(RunConfigurationBase config, String path) {
+            return cached ? 1 : STAMP_UNKNOWN;
+        }
+
+        @Override
+        public ConfigFingerprint getFingerprint(RunConfigurationBase config, String path, byte[] content) {
+            return cached ? ConfigFingerprint.of(path, 1, content) : null;
+        }
+
+        @Override
+        public PersistentParseCache getPersistentCache() {
+            return null;
+        }
+
+        @Override
+        public ConfigLayerCache getLayerCache(RunConfigurationBase config) {
+            return null;
+        }
+
+        @Override
+        public ConfigCatalog getCatalog(RunConfigurationBase config) {
+            return null;
+        }
+
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import com.egoshard.intellij.k8s.BenchmarkCorpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup and copy cost of {@link CompactMap} against {@link HashMap} for parsed layers. Lookups probe every key of the layer in
+ * random order, copies convert a parsed layer the way cached layers and merged snapshots are converted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompactMapBenchmark {
+
+    @Param({"SMALL", "KEYS_10K"})
+    private BenchmarkCorpus.Shape shape;
+
+    private Map<String, String> hashMap;
+    private Map<String, String> compactMap;
+    private List<String> probes;
+
+    @Setup
+    public void setUp() {
+        hashMap = new HashMap<>();
+        BenchmarkCorpus.getData(shape, 0).forEach((key, value) -> hashMap.put(key, String.valueOf(value)));
+        compactMap = CompactMap.copyOf(hashMap);
+        probes = new ArrayList<>();
+        hashMap.keySet().forEach(key -> probes.add(new String(key.toCharArray())));
+        Collections.shuffle(probes, new Random(0));
+    }
+
+    @Benchmark
+    public void hashMapGet(Blackhole blackhole) {
+        for (String probe : probes) {
+            blackhole.consume(hashMap.get(probe));
+        }
+    }
+
+    @Benchmark
+    public void compactMapGet(Blackhole blackhole) {
+        for (String probe : probes) {
+            blackhole.consume(compactMap.get(probe));
+        }
+    }
+
+    @Benchmark
+    public Map<String, String> hashMapCopy() {
+        return new HashMap<>(hashMap);
+    }
+
+    @Benchmark
+    public Map<String, String> compactMapCopy() {
+        return CompactMap.copyOf(hashMap);
+    }
+
+}
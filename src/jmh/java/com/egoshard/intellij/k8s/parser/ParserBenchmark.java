@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import com.egoshard.intellij.k8s.BenchmarkCorpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the ConfigMap and Secret parsers over already loaded manifests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"SMALL", "KEYS_10K", "LARGE_VALUES"})
+    private BenchmarkCorpus.Shape configMapShape;
+
+    private final ConfigParser configMapParser = new ConfigMapParser();
+    private final ConfigParser secretParser = new SecretParser();
+    private Map<String, Object> configMap;
+    private Map<String, Object> secret;
+
+    @Setup
+    public void setUp() {
+        configMap = BenchmarkCorpus.getSource(configMapShape, 0);
+        secret = BenchmarkCorpus.getSource(BenchmarkCorpus.Shape.BASE64_SECRET, 0);
+    }
+
+    @Benchmark
+    public Map<String, String> configMap() {
+        return configMapParser.parse(configMap);
+    }
+
+    @Benchmark
+    public Map<String, String> secret() {
+        return secretParser.parse(secret);
+    }
+
+}
@@ -15,15 +15,38 @@
  */
 package com.egoshard.intellij.k8s;
 
+import com.egoshard.intellij.k8s.parser.ConfigLayers;
 import com.egoshard.intellij.k8s.parser.ConfigParser;
+import com.egoshard.intellij.k8s.parser.ContainerEnvironment;
+import com.egoshard.intellij.k8s.parser.EnvFileParser;
+import com.egoshard.intellij.k8s.parser.KustomizationReader;
+import com.egoshard.intellij.k8s.parser.ManifestReader;
+import com.egoshard.intellij.k8s.parser.SecretData;
+import com.egoshard.intellij.k8s.support.ConfigCatalog;
 import com.egoshard.intellij.k8s.support.ConfigFileUtil;
+import com.egoshard.intellij.k8s.support.ConfigFingerprint;
+import com.egoshard.intellij.k8s.support.ConfigLayerCache;
+import com.egoshard.intellij.k8s.support.ConfigMetrics;
+import com.egoshard.intellij.k8s.support.ParseCache;
+import com.egoshard.intellij.k8s.support.PersistentParseCache;
 import com.intellij.execution.configurations.RunConfigurationBase;
-import org.yaml.snakeyaml.Yaml;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.Nullable;
+import org.yaml.snakeyaml.error.YAMLException;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static com.egoshard.intellij.k8s.parser.ConfigParser.KEY_KIND;
 
@@ -33,30 +56,324 @@ public class ConfigEntry {
     private static final String MSG_SOURCE_WRONGKIND = "The provided configuration cannot be parsed. No parser exists for kind: [%s].";
     private static final String MSG_SOURCE_INVALID = "Unable to read YAML file, [%s], invalid file";
     private static final String MSG_SOURCE_NOT_EXIST = "Unable to read YAML file, [%s], file not found.";
+    private static final String MSG_SOURCE_NO_MATCH = "The provided configuration has no resource named [%s].";
+    private static final String MSG_CATALOG_UNAVAILABLE = "Unable to resolve container [%s], the project resources cannot be indexed.";
+
+    private static final EnvFileParser ENV_FILE_PARSER = new EnvFileParser();
 
     private final Map<String, ConfigParser> parsers;
     private final ConfigFileUtil fileUtil;
     private final RunConfigurationBase config;
+    private final ParseCache cache = new ParseCache();
     private String path;
+    private String name;
+    private String mount;
+    private String container;
+    private volatile List<String> inputs;
 
     public ConfigEntry(Map<String, ConfigParser> parsers, ConfigFileUtil fileUtil, RunConfigurationBase config, String path) {
+        this(parsers, fileUtil, config, path, null);
+    }
+
+    public ConfigEntry(Map<String, ConfigParser> parsers, ConfigFileUtil fileUtil, RunConfigurationBase config, String path,
+                       String name) {
         this.parsers = parsers;
         this.fileUtil = fileUtil;
         this.config = config;
         this.path = path;
+        this.name = name;
     }
 
+    /**
+     * Parses the configuration file into key/value pairs.
+     * <p>
+     * Results are cached against the fingerprint of the file content, an unchanged file is returned from cache without being
+     * parsed again. Files whose VFS modification stamp is unchanged are not read at all. Results are shared with the entries of
+     * other run configurations through the project {@link ConfigLayerCache} and also kept in the persistent parse cache, so
+     * content parsed by another run configuration, in an earlier session or in another project is not parsed again either.
+     * </p>
+     * <p>
+     * Multi-document files are read one document at a time. Documents of a kind without a registered parser are skipped and the
+     * remaining documents are merged in document order, later documents taking precedence. Secret values of single document
+     * files are decoded when first read, see {@link SecretData}. The items of {@code kind: List}
+     * files are streamed and merged the same way. When a name is set, only resources whose {@code metadata.name} matches it are
+     * merged.
+     * </p>
+     * <p>
+     * Kustomization files, recognised by their file name, are built locally from their resources and generators, see
+     * {@link KustomizationReader}. Their results are cached against the fingerprint of every file the build read, so generators
+     * only run again when one of their inputs changes.
+     * </p>
+     * <p>
+     * Env files, recognised by their {@code .env} file name, are plain {@code KEY=VALUE} layers read without a YAML parser, see
+     * {@link EnvFileParser}. They have no resource names, the name filter does not apply to them. Keys without a value take it
+     * from the environment of the IDE, results are then cached against those values as well as the file content.
+     * </p>
+     * <p>
+     * When a container is set the file holds a workload, such as a Deployment, and the environment of that container is resolved,
+     * see {@link ContainerEnvironment}. The name then selects the workload and referenced ConfigMaps and Secrets are looked up by
+     * name in the project {@link ConfigCatalog}. Results are cached against the stamps of the workload file, of the files the
+     * references resolved to and of the catalog.
+     * </p>
+     *
+     * @return unmodifiable map of key/value pairs
+     */
     public Map<String, String> parse() throws IOException, ConfigFileException {
-        Map<String, Object> source = getYaml();
-        if (source == null || source.size() == 0) {
+        long start = ConfigMetrics.start();
+        try {
+            return parseCached();
+        } finally {
+            ConfigMetrics.stop(ConfigMetrics.ENTRY_PARSE, start);
+        }
+    }
+
+    private Map<String, String> parseCached() throws IOException, ConfigFileException {
+        if (isWorkload()) {
+            List<String> previous = inputs;
+            long stamp = getWorkloadStamp(previous);
+            Map<String, String> cached = cache.get(stamp);
+            if (cached != null) {
+                return cached;
+            }
+            byte[] content = read();
+            Map<String, String> result = parseWorkload(content);
+            // workload results are only served by stamp, the fingerprint of the workload file alone does not cover references
+            return cache.put(inputs.equals(previous) ? stamp : ConfigFileUtil.STAMP_UNKNOWN,
+                    ConfigFingerprint.of(path, Collections.singletonMap(path, content)), result);
+        }
+        boolean kustomization = KustomizationReader.isKustomization(path);
+        List<String> previous = inputs;
+        long stamp = kustomization ? getStamp(previous) : fileUtil.getModificationStamp(config, path);
+        Map<String, String> cached = cache.get(stamp);
+        if (cached != null) {
+            return cached;
+        }
+        if (kustomization) {
+            KustomizationReader.Build build = readKustomization();
+            return parseCached(inputs.equals(previous) ? stamp : ConfigFileUtil.STAMP_UNKNOWN,
+                    ConfigFingerprint.of(path, build.getInputs()).withEnvironment(build.getEnvironment()), () -> parse(build));
+        }
+        byte[] content = read();
+        ConfigFingerprint fingerprint = fileUtil.getFingerprint(config, path, content);
+        if (fingerprint != null && EnvFileParser.isEnvFile(path)) {
+            fingerprint = fingerprint.withEnvironment(ENV_FILE_PARSER.getEnvironment(content));
+        }
+        return parseCached(stamp, fingerprint, () -> parse(content));
+    }
+
+    private Map<String, String> parseCached(long stamp, ConfigFingerprint fingerprint, Supplier<Map<String, String>> parser) {
+        Map<String, String> cached = cache.get(stamp, fingerprint);
+        if (cached != null) {
+            return cached;
+        }
+        String filter = isNamed() ? name : null;
+        ConfigLayerCache sharedCache = fingerprint == null ? null : fileUtil.getLayerCache(config);
+        if (sharedCache != null) {
+            cached = sharedCache.get(fingerprint, filter);
+            if (cached != null) {
+                return cache.putShared(stamp, fingerprint, cached);
+            }
+        }
+        PersistentParseCache persistentCache = fingerprint == null ? null : fileUtil.getPersistentCache();
+        Map<String, String> result = persistentCache == null ? null : persistentCache.get(fingerprint.getHash(), filter);
+        if (result == null) {
+            result = parser.get();
+            if (persistentCache != null) {
+                persistentCache.put(fingerprint.getHash(), filter, result);
+            }
+        }
+        Map<String, String> value = cache.put(stamp, fingerprint, result);
+        return sharedCache == null ? value : cache.putShared(stamp, fingerprint, sharedCache.put(fingerprint, filter, value));
+    }
+
+    private Map<String, String> parse(byte[] content) throws ConfigFileException {
+        if (EnvFileParser.isEnvFile(path)) {
+            return parseEnvFile(content);
+        }
+        List<Object> skipped = new ArrayList<>();
+        List<Map<String, String>> layers = parseDocuments(content, skipped, ConfigParser::parse);
+        return merge(layers, skipped);
+    }
+
+    private Map<String, String> parseWorkload(byte[] content) throws ConfigFileException {
+        ConfigCatalog catalog = fileUtil.getCatalog(config);
+        if (catalog == null) {
+            throw new ConfigFileException(String.format(MSG_CATALOG_UNAVAILABLE, container));
+        }
+        String near = fileUtil.getResolvedPath(config, path);
+        Set<String> files = new LinkedHashSet<>();
+        files.add(path);
+        try {
+            ContainerEnvironment environment = ContainerEnvironment.read(content, isNamed() ? name : null, container);
+            Map<String, String> result = environment.resolve((kind, resource) ->
+                    find(catalog, kind, resource, near == null ? path : near, files));
+            inputs = new ArrayList<>(files);
+            ConfigMetrics.record(ConfigMetrics.ENTRY_DOCUMENTS, files.size());
+            ConfigMetrics.record(ConfigMetrics.ENTRY_KEYS, result.size());
+            return Collections.unmodifiableMap(result);
+        } catch (IllegalArgumentException e) {
+            throw new ConfigFileException(e.getMessage(), e);
+        } catch (YAMLException e) {
+            throw new ConfigFileException(String.format(MSG_SOURCE_INVALID, path), e);
+        }
+    }
+
+    @Nullable
+    private Map<String, String> find(ConfigCatalog catalog, ConfigParser.Kind kind, String resource, String near, Set<String> files) {
+        ConfigParser parser = parsers.get(kind.getKey());
+        List<ConfigCatalog.Resource> resources = parser == null ? Collections.emptyList() : catalog.find(kind, resource, near);
+        if (resources.isEmpty()) {
+            return null;
+        }
+        files.add(resources.get(0).getPath());
+        List<Map<String, String>> layers = resources.stream()
+                .map(item -> parser.parse(item.getSource()))
+                .collect(Collectors.toList());
+        return layers.size() == 1 ? layers.get(0) : ConfigLayers.merge(layers);
+    }
+
+    private Map<String, String> parseEnvFile(byte[] content) throws ConfigFileException {
+        try {
+            Map<String, String> result = ENV_FILE_PARSER.parse(content);
+            ConfigMetrics.record(ConfigMetrics.ENTRY_DOCUMENTS, 1);
+            ConfigMetrics.record(ConfigMetrics.ENTRY_KEYS, result.size());
+            return result;
+        } catch (IllegalArgumentException e) {
+            throw new ConfigFileException(e.getMessage(), e);
+        }
+    }
+
+    private <R> List<R> parseDocuments(byte[] content, List<Object> skipped, BiFunction<ConfigParser, Map<String, Object>, R> parser)
+            throws ConfigFileException {
+        Iterator<Map<String, Object>> documents = new ManifestReader()
+                .readAll(content, kind -> isSupported(kind, skipped), isNamed() ? name::equals : null)
+                .iterator();
+        List<R> layers = new ArrayList<>();
+        int count = 0;
+        for (Map<String, Object> source = getYaml(documents); source != null; source = getYaml(documents)) {
+            count++;
+            Object kind = source.get(KEY_KIND);
+            if (isSupported(kind, skipped)) {
+                layers.add(parser.apply(parsers.get(kind), source));
+            }
+        }
+        ConfigMetrics.record(ConfigMetrics.ENTRY_DOCUMENTS, count);
+        return layers;
+    }
+
+    private Map<String, String> parse(KustomizationReader.Build build) throws ConfigFileException {
+        List<Map<String, String>> layers;
+        try {
+            layers = build.getLayers(parsers, isNamed() ? name : null);
+        } catch (IllegalArgumentException | YAMLException e) {
+            throw new ConfigFileException(String.format(MSG_SOURCE_INVALID, path), e);
+        }
+        ConfigMetrics.record(ConfigMetrics.ENTRY_DOCUMENTS, layers.size());
+        return merge(layers, Collections.emptyList());
+    }
+
+    private Map<String, String> merge(List<Map<String, String>> layers, List<Object> skipped) throws ConfigFileException {
+        requireLayers(layers, skipped);
+        Map<String, String> result = layers.size() == 1 ? layers.get(0) : ConfigLayers.merge(layers);
+        ConfigMetrics.record(ConfigMetrics.ENTRY_KEYS, ConfigLayers.getKeys(result).size());
+        return result;
+    }
+
+    private void requireLayers(List<?> layers, List<Object> skipped) throws ConfigFileException {
+        if (!layers.isEmpty()) {
+            return;
+        } else if (isNamed()) {
+            throw new ConfigFileException(String.format(MSG_SOURCE_NO_MATCH, name));
+        } else if (skipped.isEmpty()) {
             throw new IllegalArgumentException(MSG_SOURCE_NULL);
+        } else {
+            throw new ConfigFileException(String.format(MSG_SOURCE_WRONGKIND, skipped.get(0)));
         }
-        String kind = (String) source.get(KEY_KIND);
-        if (parsers.containsKey(kind)) {
-            return parsers.get(kind).parse(source);
+    }
+
+    /**
+     * Parses the configuration file into the files a volume mount of its resources would hold.
+     * <p>
+     * Resources are selected exactly as by {@link #parse()}, but ConfigMap binaryData and binary Secret values are included and
+     * encoded values are left encoded, see {@link SecretData#transferTo}. Results are not cached, volumes are only built at launch.
+     * </p>
+     *
+     * @return volume layers in document order, later layers taking precedence
+     */
+    public List<SecretData> parseVolume() throws IOException, ConfigFileException {
+        List<SecretData> layers;
+        List<Object> skipped = new ArrayList<>();
+        if (KustomizationReader.isKustomization(path)) {
+            try {
+                layers = readKustomization().getVolumes(parsers, isNamed() ? name : null);
+            } catch (IllegalArgumentException | YAMLException e) {
+                throw new ConfigFileException(String.format(MSG_SOURCE_INVALID, path), e);
+            }
+        } else if (isWorkload()) {
+            layers = Collections.singletonList(new SecretData(Collections.emptyMap(), parse()));
+        } else if (EnvFileParser.isEnvFile(path)) {
+            layers = Collections.singletonList(new SecretData(Collections.emptyMap(), parseEnvFile(read())));
         } else {
-            throw new ConfigFileException(String.format(MSG_SOURCE_WRONGKIND, kind));
+            layers = parseDocuments(read(), skipped, ConfigParser::parseVolume);
+        }
+        requireLayers(layers, skipped);
+        return layers;
+    }
+
+    /**
+     * Retrieves the VFS modification stamp of the configuration file without reading it. The stamp of a kustomization combines
+     * the stamps of every file its last build read, the files are only read to find them if it has not been built yet. The stamp
+     * of a workload combines the stamps of the files its references last resolved to and the version of the project catalog.
+     *
+     * @return modification stamp, or {@link ConfigFileUtil#STAMP_UNKNOWN} if the file cannot be resolved
+     */
+    public long getModificationStamp() {
+        if (isWorkload()) {
+            if (inputs == null) {
+                try {
+                    parseWorkload(read());
+                } catch (IOException | RuntimeException e) {
+                    return ConfigFileUtil.STAMP_UNKNOWN;
+                }
+            }
+            return getWorkloadStamp(inputs);
+        }
+        if (!KustomizationReader.isKustomization(path)) {
+            return fileUtil.getModificationStamp(config, path);
         }
+        if (inputs == null) {
+            try {
+                readKustomization();
+            } catch (IOException | RuntimeException e) {
+                return ConfigFileUtil.STAMP_UNKNOWN;
+            }
+        }
+        return getStamp(inputs);
+    }
+
+    private long getStamp(@Nullable List<String> files) {
+        if (files == null) {
+            return ConfigFileUtil.STAMP_UNKNOWN;
+        }
+        long stamp = 1;
+        for (String file : files) {
+            long current = fileUtil.getModificationStamp(config, file);
+            if (current == ConfigFileUtil.STAMP_UNKNOWN) {
+                return ConfigFileUtil.STAMP_UNKNOWN;
+            }
+            stamp = stamp * 31 + current;
+        }
+        return stamp == ConfigFileUtil.STAMP_UNKNOWN ? 1 : stamp;
+    }
+
+    private long getWorkloadStamp(@Nullable List<String> files) {
+        ConfigCatalog catalog = fileUtil.getCatalog(config);
+        long stamp = getStamp(files);
+        if (catalog == null || stamp == ConfigFileUtil.STAMP_UNKNOWN) {
+            return ConfigFileUtil.STAMP_UNKNOWN;
+        }
+        stamp = stamp * 31 + catalog.getVersion();
+        return stamp == ConfigFileUtil.STAMP_UNKNOWN ? 1 : stamp;
     }
 
     public String getPath() {
@@ -65,23 +382,139 @@ public class ConfigEntry {
 
     public void setPath(String path) {
         this.path = path;
+        this.inputs = null;
+        this.cache.invalidate();
+    }
+
+    /**
+     * @return name of the environment variable the volume directory of the entry is injected as, or null if the entry is
+     * injected as environment variables
+     */
+    public String getMount() {
+        return this.mount;
+    }
+
+    public void setMount(String mount) {
+        this.mount = mount;
+    }
+
+    public boolean isMounted() {
+        return mount != null && !mount.isEmpty();
+    }
+
+    /**
+     * @return name of the workload container whose environment the entry resolves, or null if the entry holds ConfigMaps and
+     * Secrets
+     */
+    public String getContainer() {
+        return this.container;
+    }
+
+    public void setContainer(String container) {
+        this.container = container;
+        this.inputs = null;
+        this.cache.invalidate();
+    }
+
+    public boolean isWorkload() {
+        return container != null && !container.isEmpty();
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+        this.cache.invalidate();
     }
 
+    /**
+     * Checks that the configuration file exists and, for named entries, that the resource index does not rule out a resource of
+     * that name in it. Kustomizations and env files are only checked for existence.
+     *
+     * @return true if the entry may be parsed
+     */
     public boolean validate() {
         if (fileUtil == null) {
             throw new IllegalStateException("A required configuration is not configured, File Utility.");
         }
-        return fileUtil.exists(config, path);
+        if (!fileUtil.exists(config, path)) {
+            return false;
+        }
+        if (!isNamed() || KustomizationReader.isKustomization(path) || EnvFileParser.isEnvFile(path)) {
+            return true;
+        }
+        return fileUtil.mayDeclare(config, path, isWorkload() ? ContainerEnvironment.getWorkloadKinds() : parsers.keySet(), name);
+    }
+
+    /**
+     * Checks whether values of the entry may come from a Secret without reading its file. Env files never hold Secret values,
+     * workloads and kustomizations may always reference them, other files may unless the resource index rules out a Secret.
+     *
+     * @return true if the entry may supply Secret values
+     */
+    public boolean maySupplySecrets() {
+        if (EnvFileParser.isEnvFile(path)) {
+            return false;
+        }
+        if (fileUtil == null || isWorkload() || KustomizationReader.isKustomization(path)) {
+            return true;
+        }
+        return fileUtil.mayDeclareKind(config, path, ConfigParser.Kind.SECRET.getKey());
     }
 
-    private Map<String, Object> getYaml() throws IOException, ConfigFileException {
+    private byte[] read() throws IOException, ConfigFileException {
         try (InputStream input = fileUtil.getStream(config, path)) {
-            return new Yaml().load(input);
-        } catch (ClassCastException e) {
-            throw new ConfigFileException(String.format(MSG_SOURCE_INVALID, path), e);
+            byte[] content = FileUtil.loadBytes(input);
+            ConfigMetrics.record(ConfigMetrics.ENTRY_BYTES, content.length);
+            return content;
         } catch (FileNotFoundException ex) {
             throw new ConfigFileException(String.format(MSG_SOURCE_NOT_EXIST, path), ex);
         }
     }
 
+    private KustomizationReader.Build readKustomization() throws IOException, ConfigFileException {
+        try {
+            KustomizationReader.Build build = new KustomizationReader(this::load).read(path);
+            inputs = new ArrayList<>(build.getInputs().keySet());
+            build.getInputs().values().forEach(content -> ConfigMetrics.record(ConfigMetrics.ENTRY_BYTES, content.length));
+            return build;
+        } catch (FileNotFoundException | IllegalArgumentException ex) {
+            throw new ConfigFileException(ex.getMessage(), ex);
+        } catch (YAMLException ex) {
+            throw new ConfigFileException(String.format(MSG_SOURCE_INVALID, path), ex);
+        }
+    }
+
+    @Nullable
+    private byte[] load(String file) throws IOException {
+        if (!fileUtil.exists(config, file)) {
+            return null;
+        }
+        try (InputStream input = fileUtil.getStream(config, file)) {
+            return FileUtil.loadBytes(input);
+        }
+    }
+
+    private boolean isNamed() {
+        return name != null && !name.isEmpty();
+    }
+
+    private Map<String, Object> getYaml(Iterator<Map<String, Object>> documents) throws ConfigFileException {
+        try {
+            return documents.hasNext() ? documents.next() : null;
+        } catch (IllegalArgumentException e) {
+            throw new ConfigFileException(String.format(MSG_SOURCE_INVALID, path), e);
+        }
+    }
+
+    private boolean isSupported(Object kind, List<Object> skipped) {
+        if (parsers.containsKey(kind)) {
+            return true;
+        }
+        skipped.add(kind);
+        return false;
+    }
+
 }
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s;
+
+import com.egoshard.intellij.k8s.parser.ConfigLayers;
+import com.egoshard.intellij.k8s.parser.SecretData;
+import com.egoshard.intellij.k8s.parser.ValueArena;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Report of an injected environment recording which configuration entry each variable came from.
+ * <p>
+ * Creating a report only keeps the entries, their parsed layers and the injected environment, nothing is resolved or copied on
+ * the launch path. The winning entry of each variable and the entries it overrides are resolved, and values are read, only when
+ * the report is rendered. That happens when the report is opened through the injection report action or debug logging is on.
+ * Values of entries that may supply Secret values are masked unless they are explicitly revealed.
+ * </p>
+ */
+public final class ConfigReport {
+
+    static final String MASK = "********";
+    private static final Key<ConfigReport> LAST_KEY = new Key<>("K8s Config Injection Report");
+    private static final String MSG_HEADER = "%d variables injected from %d configuration entries.%n";
+    private static final String MSG_VARIABLE = "%s=%s%n";
+    private static final String MSG_SOURCE = "    from %s%n";
+    private static final String MSG_OVERRIDES = "    overrides %s%n";
+    private static final String MSG_MOUNT = "    volume directory of %s%n";
+    private static final String MSG_UNKNOWN = "    from the run configuration%n";
+    private static final String MSG_RELEASED = "<evicted from the cache, launch again to report it>";
+
+    private final List<ConfigEntry> entries;
+    private final List<Map<String, String>> layers;
+    private final Map<String, String> environment;
+
+    /**
+     * @param entries     configuration entries in merge order
+     * @param layers      parsed layers of the entries, in entry order
+     * @param environment injected environment including volume directories
+     */
+    public ConfigReport(List<ConfigEntry> entries, List<Map<String, String>> layers, Map<String, String> environment) {
+        this.entries = entries;
+        this.layers = layers;
+        this.environment = environment;
+    }
+
+    /**
+     * @param project project the run configuration belongs to
+     * @return report of the last injection in the project, or null if there was none
+     */
+    @Nullable
+    public static ConfigReport getLast(@Nullable Project project) {
+        return project == null ? null : project.getUserData(LAST_KEY);
+    }
+
+    /**
+     * @param project project the run configuration belongs to
+     * @param report  report of the injection that just happened
+     */
+    public static void setLast(@Nullable Project project, ConfigReport report) {
+        if (project != null) {
+            project.putUserData(LAST_KEY, report);
+        }
+    }
+
+    /**
+     * @return unmodifiable injected environment
+     */
+    public Map<String, String> getEnvironment() {
+        return environment;
+    }
+
+    /**
+     * Resolves where a variable came from.
+     *
+     * @param key variable name
+     * @return winning and overridden entries of the variable
+     */
+    public Provenance getProvenance(String key) {
+        int winner = -1;
+        List<ConfigEntry> overridden = new ArrayList<>();
+        for (int i = layers.size() - 1; i >= 0; i--) {
+            if (!ConfigLayers.getKeys(layers.get(i)).contains(key)) {
+                continue;
+            }
+            if (winner < 0 && hasValue(layers.get(i), key)) {
+                winner = i;
+            } else if (winner >= 0) {
+                overridden.add(entries.get(i));
+            }
+        }
+        List<ConfigEntry> mounts = entries.stream()
+                .filter(entry -> entry.isMounted() && key.equals(entry.getMount()))
+                .collect(Collectors.toList());
+        return new Provenance(winner < 0 ? null : entries.get(winner), winner >= 0 && isSecret(winner), overridden, mounts);
+    }
+
+    /**
+     * Renders the report, variables in key order each followed by the entry it came from and the entries it overrides.
+     *
+     * @param revealSecrets true to include values of entries that may supply Secret values
+     * @return report text
+     */
+    public String render(boolean revealSecrets) {
+        List<String> keys = new ArrayList<>(environment.keySet());
+        Collections.sort(keys);
+        StringBuilder builder = new StringBuilder(String.format(Locale.ROOT, MSG_HEADER, keys.size(), entries.size()));
+        for (String key : keys) {
+            Provenance provenance = getProvenance(key);
+            builder.append(String.format(Locale.ROOT, MSG_VARIABLE, key,
+                    provenance.isSecret() && !revealSecrets ? MASK : getValue(key)));
+            if (provenance.getSource() != null) {
+                builder.append(String.format(Locale.ROOT, MSG_SOURCE, describe(provenance.getSource())));
+            } else if (!provenance.getMounts().isEmpty()) {
+                builder.append(String.format(Locale.ROOT, MSG_MOUNT, describe(provenance.getMounts())));
+            } else {
+                builder.append(String.format(Locale.ROOT, MSG_UNKNOWN));
+            }
+            if (!provenance.getOverridden().isEmpty()) {
+                builder.append(String.format(Locale.ROOT, MSG_OVERRIDES, describe(provenance.getOverridden())));
+            }
+        }
+        return builder.toString();
+    }
+
+    private boolean isSecret(int layer) {
+        return layers.get(layer) instanceof SecretData || entries.get(layer).maySupplySecrets();
+    }
+
+    private String getValue(String key) {
+        try {
+            return environment.get(key);
+        } catch (ValueArena.ReleasedException e) {
+            return MSG_RELEASED;
+        }
+    }
+
+    /**
+     * @return true if the layer supplies a value, values that cannot be read are treated as supplied
+     */
+    private static boolean hasValue(Map<String, String> layer, String key) {
+        try {
+            return layer.get(key) != null;
+        } catch (IllegalArgumentException | ValueArena.ReleasedException e) {
+            return true;
+        }
+    }
+
+    private static String describe(List<ConfigEntry> entries) {
+        return entries.stream().map(ConfigReport::describe).collect(Collectors.joining(", "));
+    }
+
+    private static String describe(ConfigEntry entry) {
+        StringBuilder builder = new StringBuilder(String.valueOf(entry.getPath()));
+        if (entry.getName() != null && !entry.getName().isEmpty()) {
+            builder.append(" [").append(entry.getName()).append(']');
+        }
+        if (entry.isWorkload()) {
+            builder.append(" container ").append(entry.getContainer());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Entries a variable came from.
+     */
+    public static final class Provenance {
+
+        private final ConfigEntry source;
+        private final boolean secret;
+        private final List<ConfigEntry> overridden;
+        private final List<ConfigEntry> mounts;
+
+        Provenance(@Nullable ConfigEntry source, boolean secret, List<ConfigEntry> overridden, List<ConfigEntry> mounts) {
+            this.source = source;
+            this.secret = secret;
+            this.overridden = overridden;
+            this.mounts = mounts;
+        }
+
+        /**
+         * @return entry whose value was injected, or null if the variable is a volume directory or was not configured by an entry
+         */
+        @Nullable
+        public ConfigEntry getSource() {
+            return source;
+        }
+
+        /**
+         * @return true if the value may come from a Secret and is masked by default
+         */
+        public boolean isSecret() {
+            return secret;
+        }
+
+        /**
+         * @return entries holding the variable that were overridden, from specific to generic
+         */
+        public List<ConfigEntry> getOverridden() {
+            return overridden;
+        }
+
+        /**
+         * @return mounted entries whose volume directory the variable names
+         */
+        public List<ConfigEntry> getMounts() {
+            return mounts;
+        }
+
+    }
+
+}
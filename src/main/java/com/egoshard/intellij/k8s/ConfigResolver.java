@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s;
+
+import com.egoshard.intellij.k8s.parser.CompactMap;
+import com.egoshard.intellij.k8s.parser.LayerIndex;
+import com.egoshard.intellij.k8s.support.ConfigFileUtil;
+import com.egoshard.intellij.k8s.support.ConfigLayerCache;
+import com.egoshard.intellij.k8s.ui.ConfigEditor;
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.RunManager;
+import com.intellij.execution.RunManagerListener;
+import com.intellij.execution.RunnerAndConfigurationSettings;
+import com.intellij.execution.configurations.RunConfiguration;
+import com.intellij.execution.configurations.RunConfigurationBase;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.messages.MessageBusConnection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Project level resolver that computes run configuration environments in the background.
+ * <p>
+ * Environments are resolved when settings are applied and again whenever a file they reference changes, so launches can pick
+ * up a ready snapshot instead of parsing on the launch path. Each snapshot records the VFS modification stamps of its files when
+ * it was resolved and is only served while all of them are unchanged. Without a current snapshot launches parse synchronously.
+ * VFS events only schedule a check, stamps are compared on the resolver thread because computing them may read files.
+ * </p>
+ * <p>
+ * Snapshots keep the parsed layers of their entries in a {@link LayerIndex}. When files change only the changed layers are
+ * parsed again and only the keys they touch are merged again, into a copy of the index so a failed update leaves the previous
+ * snapshot intact. Settings whose entries were reordered update the snapshot of the
+ * previous order the same way, re-merging only the keys of the moved entries.
+ * </p>
+ * <p>
+ * Snapshots holding off-heap values of layers that have since been evicted from the {@link ConfigLayerCache} are not served,
+ * they are resolved again from scratch in the background.
+ * </p>
+ * <p>
+ * When a run configuration is removed, snapshots no remaining run configuration resolves to are dropped. Disposing the
+ * resolver shuts its thread down.
+ * </p>
+ */
+public class ConfigResolver implements Disposable {
+
+    private static final Logger logger = Logger.getInstance(ConfigResolver.class);
+    private static final String MSG_RESOLVE_FAIL = "Unable to pre-resolve Kubernetes configuration, it will be parsed at launch. %s";
+    private static final String POOL_NAME = "K8s Config Resolver";
+
+    private final Map<List<String>, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final Set<List<String>> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final ExecutorService executor;
+    private volatile boolean disposed;
+
+    public ConfigResolver(Project project) {
+        this(AppExecutorUtil.createBoundedApplicationPoolExecutor(POOL_NAME, 1));
+        MessageBusConnection connection = project.getMessageBus().connect(this);
+        connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                if (events.stream().anyMatch(event -> event instanceof VFileContentChangeEvent)) {
+                    refresh();
+                }
+            }
+        });
+        connection.subscribe(RunManagerListener.TOPIC, new RunManagerListener() {
+            @Override
+            public void runConfigurationRemoved(@NotNull RunnerAndConfigurationSettings settings) {
+                prune(getSettings(project, settings.getConfiguration()));
+            }
+        });
+    }
+
+    ConfigResolver(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @param project project the run configuration belongs to
+     * @return resolver of the project, or null if there is no open project
+     */
+    @Nullable
+    public static ConfigResolver getInstance(@Nullable Project project) {
+        return project == null || project.isDisposed() ? null : ServiceManager.getService(project, ConfigResolver.class);
+    }
+
+    /**
+     * Resolves the environment of enabled settings in the background.
+     *
+     * @param settings run configuration settings
+     * @return future completing once the environment has been resolved
+     */
+    public Future<?> schedule(ConfigSettings settings) {
+        if (!settings.isEnabled()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return submit(settings.getEntries());
+    }
+
+    /**
+     * Retrieves the pre-resolved environment of settings if none of the files it was resolved from have changed since.
+     *
+     * @param settings run configuration settings
+     * @return unmodifiable environment, or null if there is no current snapshot
+     */
+    @Nullable
+    public Map<String, String> getSnapshot(ConfigSettings settings) {
+        Snapshot snapshot = getCurrent(settings);
+        return snapshot == null ? null : snapshot.getEnvironment();
+    }
+
+    /**
+     * Retrieves the pre-resolved snapshot of settings if none of the files it was resolved from have changed since.
+     *
+     * @param settings run configuration settings
+     * @return snapshot, or null if there is no current snapshot
+     */
+    @Nullable
+    public Snapshot getCurrent(ConfigSettings settings) {
+        List<ConfigEntry> entries = settings.getEntries();
+        List<String> key = getKey(entries);
+        Snapshot snapshot = snapshots.get(key);
+        if (snapshot != null && snapshot.environment.isReleased()) {
+            snapshots.remove(key, snapshot);
+            submit(entries);
+            return null;
+        }
+        return snapshot != null && snapshot.isCurrent(entries) ? snapshot : null;
+    }
+
+    /**
+     * Schedules a check of all snapshots on the resolver thread, snapshots whose files have changed are resolved again. Checks
+     * requested while one is pending are merged into it.
+     */
+    void refresh() {
+        if (!disposed && refreshing.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                refreshing.set(false);
+                for (Snapshot snapshot : snapshots.values()) {
+                    if (!snapshot.isCurrent(snapshot.entries)) {
+                        submit(snapshot.entries);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Schedules dropping every snapshot that none of the provided settings resolve to. The check runs on the resolver thread
+     * after the resolutions already scheduled, so a snapshot replaced by reordered settings is still updated in place.
+     *
+     * @param live settings of the remaining run configurations
+     */
+    void prune(Collection<ConfigSettings> live) {
+        if (disposed) {
+            return;
+        }
+        Set<List<String>> keys = live.stream().map(settings -> getKey(settings.getEntries())).collect(Collectors.toSet());
+        executor.execute(() -> snapshots.keySet().retainAll(keys));
+    }
+
+    /**
+     * @return settings of every run configuration of the project except the excluded one
+     */
+    private static List<ConfigSettings> getSettings(Project project, @Nullable RunConfiguration excluded) {
+        return RunManager.getInstance(project).getAllConfigurationsList().stream()
+                .filter(config -> config != excluded && config instanceof RunConfigurationBase)
+                .map(config -> ConfigEditor.getSettings((RunConfigurationBase) config))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        executor.shutdownNow();
+        snapshots.clear();
+        pending.clear();
+    }
+
+    private Future<?> submit(List<ConfigEntry> entries) {
+        List<String> key = getKey(entries);
+        if (disposed || !pending.add(key)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return executor.submit(() -> {
+            pending.remove(key);
+            resolve(key, entries);
+        });
+    }
+
+    private void resolve(List<String> key, List<ConfigEntry> entries) {
+        long[] stamps = getStamps(entries);
+        if (Arrays.stream(stamps).anyMatch(stamp -> stamp == ConfigFileUtil.STAMP_UNKNOWN)) {
+            snapshots.remove(key);
+            return;
+        }
+        Snapshot previous = snapshots.get(key);
+        List<String> previousKey = key;
+        if (previous == null) {
+            previousKey = findReordered(key);
+            previous = previousKey == null ? null : snapshots.remove(previousKey);
+        }
+        if (previous != null && previous.environment.isReleased()) {
+            previous = null;
+        }
+        try {
+            LayerIndex index = previous == null
+                    ? new LayerIndex(ConfigEditor.parseLayers(entries))
+                    : update(previous, previousKey, key, entries, stamps);
+            snapshots.put(key, new Snapshot(entries, stamps, index));
+        } catch (ExecutionException | IOException | RuntimeException e) {
+            snapshots.remove(key);
+            logger.debug(String.format(MSG_RESOLVE_FAIL, e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Brings the layers of a snapshot up to date by moving reordered layers into place and parsing changed layers again.
+     */
+    private static LayerIndex update(Snapshot previous, List<String> previousKey, List<String> key, List<ConfigEntry> entries,
+                                     long[] stamps) throws IOException {
+        LayerIndex index = previous.index.copy();
+        List<String> order = new ArrayList<>(previousKey);
+        List<Long> previousStamps = Arrays.stream(previous.stamps).boxed().collect(Collectors.toList());
+        for (int i = 0; i < key.size(); i++) {
+            int from = order.subList(i, order.size()).indexOf(key.get(i)) + i;
+            if (from != i) {
+                index.move(from, i);
+                order.add(i, order.remove(from));
+                previousStamps.add(i, previousStamps.remove(from));
+            }
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            if (previousStamps.get(i) != stamps[i]) {
+                index.replace(i, ConfigEditor.parseLayer(entries.get(i)));
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return key of a snapshot holding the same entries in another order, or null if there is none
+     */
+    @Nullable
+    private List<String> findReordered(List<String> key) {
+        List<String> sorted = new ArrayList<>(key);
+        Collections.sort(sorted);
+        for (List<String> candidate : snapshots.keySet()) {
+            if (candidate.size() == key.size() && !pending.contains(candidate)) {
+                List<String> other = new ArrayList<>(candidate);
+                Collections.sort(other);
+                if (sorted.equals(other)) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static List<String> getKey(List<ConfigEntry> entries) {
+        return entries.stream()
+                .map(entry -> entry.getPath() + '\0' + entry.getName() + '\0' + entry.getContainer() + '\0' + entry.getMount())
+                .collect(Collectors.toList());
+    }
+
+    private static long[] getStamps(List<ConfigEntry> entries) {
+        return entries.stream().mapToLong(ConfigEntry::getModificationStamp).toArray();
+    }
+
+    /**
+     * Environment resolved from a specific revision of each configuration file.
+     */
+    public static final class Snapshot {
+
+        private final List<ConfigEntry> entries;
+        private final long[] stamps;
+        private final LayerIndex index;
+        private final List<Map<String, String>> layers;
+        private final CompactMap environment;
+
+        Snapshot(List<ConfigEntry> entries, long[] stamps, LayerIndex index) {
+            this.entries = entries;
+            this.stamps = stamps;
+            this.index = index;
+            this.layers = Collections.unmodifiableList(index.getLayers());
+            this.environment = index.getResult();
+        }
+
+        /**
+         * @return unmodifiable environment
+         */
+        public Map<String, String> getEnvironment() {
+            return environment;
+        }
+
+        /**
+         * @return unmodifiable parsed layers the environment was merged from, in entry order
+         */
+        public List<Map<String, String>> getLayers() {
+            return layers;
+        }
+
+        boolean isCurrent(List<ConfigEntry> current) {
+            return Arrays.equals(stamps, getStamps(current));
+        }
+
+    }
+
+}
@@ -15,6 +15,8 @@
  */
 package com.egoshard.intellij.k8s;
 
+import com.egoshard.intellij.k8s.parser.ValueArena;
+import com.egoshard.intellij.k8s.support.ConfigMetrics;
 import com.egoshard.intellij.k8s.ui.ConfigEditor;
 import com.egoshard.intellij.k8s.ui.ConfigPanelFactory;
 import com.intellij.execution.ExecutionException;
@@ -29,7 +31,6 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Run configuration extension for converting Kubernetes configuration files into runtime environment variables.
@@ -37,6 +38,8 @@ import java.util.Map;
 class K8sRunConfiguration extends RunConfigurationExtension {
 
     private static final Logger logger = Logger.getInstance(K8sRunConfiguration.class);
+    private static final String MSG_INJECTED = "Kubernetes configuration injected %d variables, see Run | K8s Config Injection Report.";
+    private static final String MSG_RELEASED = "Cached Kubernetes configuration was evicted during injection, parsing again.";
 
     @Override
     public boolean isEnabledFor(@NotNull RunConfigurationBase applicableConfiguration, @Nullable RunnerSettings runnerSettings) {
@@ -117,14 +120,46 @@ class K8sRunConfiguration extends RunConfigurationExtension {
      */
     @Override
     public <T extends RunConfigurationBase> void updateJavaParameters(T configuration, JavaParameters params, RunnerSettings runnerSettings) throws ExecutionException {
-        logger.info("Kubernetes configuration injection commencing.");
-        params.setEnv(ConfigEditor.parse(configuration, new HashMap<>(params.getEnv())));
-        StringBuilder builder = new StringBuilder();
-        builder.append("Injected parameters:\n");
-        for (Map.Entry<String, String> stringStringEntry : params.getEnv().entrySet()) {
-            builder.append(stringStringEntry.getKey()).append("=").append(stringStringEntry.getValue()).append("\n");
+        long start = ConfigMetrics.start();
+        try {
+            logger.info("Kubernetes configuration injection commencing.");
+            ConfigReport report = inject(configuration, params);
+            if (report != null) {
+                ConfigReport.setLast(configuration.getProject(), report);
+                logger.info(String.format(MSG_INJECTED, report.getEnvironment().size()));
+                // the report is only rendered on demand, Secret values stay masked in the log
+                if (logger.isDebugEnabled()) {
+                    logger.debug(report.render(false));
+                }
+            }
+        } finally {
+            ConfigMetrics.stop(ConfigMetrics.INJECT, start);
         }
-        logger.info(builder.toString());
+    }
+
+    /**
+     * Resolves the environment and copies it into a map of its own. Resolved environments are immutable compact maps whose large
+     * values may be held off-heap, this is the only place they are copied into strings. If the layer cache evicts a layer while
+     * it is being copied the configuration is parsed again once.
+     *
+     * @return injection report, or null if injection is disabled and the parameters are left as they are
+     */
+    @Nullable
+    private static ConfigReport inject(RunConfigurationBase configuration, JavaParameters params) throws ExecutionException {
+        try {
+            return copyEnvironment(ConfigEditor.inject(configuration), params);
+        } catch (ValueArena.ReleasedException e) {
+            logger.debug(MSG_RELEASED, e);
+            return copyEnvironment(ConfigEditor.inject(configuration), params);
+        }
+    }
+
+    @Nullable
+    private static ConfigReport copyEnvironment(@Nullable ConfigReport report, JavaParameters params) {
+        if (report != null) {
+            params.setEnv(new HashMap<>(report.getEnvironment()));
+        }
+        return report;
     }
 
     /**
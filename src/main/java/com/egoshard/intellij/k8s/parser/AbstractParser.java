@@ -26,6 +26,7 @@ import java.util.Map;
 public abstract class AbstractParser implements ConfigParser {
 
     static final String KEY_DATA = "data";
+    static final String KEY_BINARY_DATA = "binaryData";
     private static final String MSG_SOURCE_MISSING = "The source parameter is required.";
     private static final String MSG_KEY_MISSING = "The provided configuration cannot be parsed. The key, [%s], does not exist in the source object.";
     private static final String MSG_INCORRECT_KIND = "The provided source data is invalid or not the correct Kubernetes kind for this parser.";
@@ -41,6 +42,26 @@ public abstract class AbstractParser implements ConfigParser {
         }
     }
 
+    /**
+     * Converts the values of a data section to strings.
+     * <p>
+     * Scanned values are decoded here rather than kept as views of the source buffer, a cached result would otherwise keep the
+     * whole file content alive.
+     * </p>
+     *
+     * @param data data section
+     * @return compact map of key/value pairs
+     */
+    static CompactMap toCompactMap(Map<String, Object> data) {
+        CompactMap.Builder builder = new CompactMap.Builder(data.size());
+        for (Map.Entry<String, Object> entry : data.entrySet()) {
+            // YAML keys such as 1 or true are not strings
+            Object key = entry.getKey();
+            builder.put(String.valueOf(key), String.valueOf(entry.getValue()));
+        }
+        return builder.build();
+    }
+
     /**
      * Extracts a map of configuration values from a source map using a provided key.
      * <p>
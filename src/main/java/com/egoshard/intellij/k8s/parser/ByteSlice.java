@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.IntConsumer;
+
+/**
+ * Character sequence view over one or more UTF-8 encoded ranges of a byte buffer.
+ * <p>
+ * Ranges are joined by line breaks, followed by a number of trailing line breaks, matching the layout of a YAML literal block
+ * scalar. The bytes are only decoded the first time the value is read as characters.
+ * </p>
+ */
+final class ByteSlice implements CharSequence {
+
+    private final ByteBuffer buffer;
+    private final int[] bounds;
+    private final int trailingBreaks;
+    private String value;
+
+    /**
+     * @param buffer         source buffer
+     * @param bounds         start and end offset pairs of each range
+     * @param trailingBreaks number of line breaks appended after the last range
+     */
+    ByteSlice(ByteBuffer buffer, int[] bounds, int trailingBreaks) {
+        this.buffer = buffer;
+        this.bounds = bounds;
+        this.trailingBreaks = trailingBreaks;
+    }
+
+    static ByteSlice of(ByteBuffer buffer, int start, int end) {
+        return new ByteSlice(buffer, new int[]{start, end}, 0);
+    }
+
+    /**
+     * @return number of encoded bytes in the slice, including line breaks.
+     */
+    int byteLength() {
+        int length = Math.max(0, bounds.length / 2 - 1) + trailingBreaks;
+        for (int i = 0; i < bounds.length; i += 2) {
+            length += bounds[i + 1] - bounds[i];
+        }
+        return length;
+    }
+
+    /**
+     * Copies the encoded bytes of the slice into a new buffer without decoding them.
+     *
+     * @return encoded slice content
+     */
+    ByteBuffer toByteBuffer() {
+        ByteBuffer result = ByteBuffer.allocate(byteLength());
+        for (int i = 0; i < bounds.length; i += 2) {
+            if (i > 0) {
+                result.put((byte) '\n');
+            }
+            result.put(range(bounds[i], bounds[i + 1]));
+        }
+        for (int i = 0; i < trailingBreaks; i++) {
+            result.put((byte) '\n');
+        }
+        result.flip();
+        return result;
+    }
+
+    /**
+     * @return true if the slice covers only part of its buffer or adds line breaks to it
+     */
+    boolean isView() {
+        return bounds.length != 2 || bounds[0] != 0 || bounds[1] != buffer.capacity() || trailingBreaks != 0;
+    }
+
+    /**
+     * Copies the slice into a buffer of its own, so the copy does not keep the source buffer alive.
+     *
+     * @return slice over a copy of the encoded bytes
+     */
+    ByteSlice copy() {
+        ByteBuffer copy = toByteBuffer();
+        return of(copy, 0, copy.limit());
+    }
+
+    /**
+     * Passes each encoded byte of the slice, including line breaks, to a consumer without decoding them.
+     *
+     * @param consumer byte consumer, bytes are passed as signed values
+     */
+    void forEachByte(IntConsumer consumer) {
+        for (int i = 0; i < bounds.length; i += 2) {
+            if (i > 0) {
+                consumer.accept('\n');
+            }
+            for (int j = bounds[i]; j < bounds[i + 1]; j++) {
+                consumer.accept(buffer.get(j));
+            }
+        }
+        for (int i = 0; i < trailingBreaks; i++) {
+            consumer.accept('\n');
+        }
+    }
+
+    @Override
+    public int length() {
+        return toString().length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        if (value == null) {
+            StringBuilder builder = new StringBuilder(byteLength());
+            for (int i = 0; i < bounds.length; i += 2) {
+                if (i > 0) {
+                    builder.append('\n');
+                }
+                builder.append(StandardCharsets.UTF_8.decode(range(bounds[i], bounds[i + 1])));
+            }
+            for (int i = 0; i < trailingBreaks; i++) {
+                builder.append('\n');
+            }
+            value = builder.toString();
+        }
+        return value;
+    }
+
+    private ByteBuffer range(int start, int end) {
+        ByteBuffer range = buffer.duplicate();
+        range.limit(end);
+        range.position(start);
+        return range;
+    }
+
+}
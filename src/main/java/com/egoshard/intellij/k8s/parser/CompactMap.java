@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Immutable string map backed by a single array of keys and values sorted by key.
+ * <p>
+ * Parsed layers and merged environments are held for as long as they are cached, for large configurations the entry objects
+ * and hash table of a {@link java.util.HashMap} take several times the memory of the references themselves. This map stores
+ * each pair as two adjacent array slots and looks keys up by binary search, iteration is in key order. Entries are created on
+ * the fly while iterating. Null keys are not supported.
+ * </p>
+ * <p>
+ * Maps are built once and never change, they can be shared between threads without synchronization.
+ * </p>
+ * <p>
+ * Large values of a cached layer can be moved into a {@link ValueArena}, see {@link #moveOffHeap}. Those values are only copied
+ * into strings when they are read, merging maps through {@link ConfigLayers} carries them over without reading them.
+ * </p>
+ */
+public final class CompactMap extends AbstractMap<String, String> {
+
+    private static final CompactMap EMPTY = new CompactMap(new Object[0]);
+
+    private final Object[] table;
+    private final boolean offHeap;
+    private Set<Entry<String, String>> entries;
+
+    private CompactMap(Object[] table) {
+        this.table = table;
+        boolean found = false;
+        for (int i = 1; i < table.length && !found; i += 2) {
+            found = table[i] instanceof ValueArena.Value;
+        }
+        this.offHeap = found;
+    }
+
+    /**
+     * Copies a map. Lazily decoded maps such as {@link SecretData} are fully decoded by the copy.
+     *
+     * @param map map to copy
+     * @return compact copy, or the map itself if it already is compact
+     */
+    public static CompactMap copyOf(Map<String, String> map) {
+        if (map instanceof CompactMap) {
+            return (CompactMap) map;
+        }
+        Builder builder = new Builder(map.size());
+        map.forEach(builder::put);
+        return builder.build();
+    }
+
+    /**
+     * @return empty map
+     */
+    public static CompactMap of() {
+        return EMPTY;
+    }
+
+    @Override
+    public int size() {
+        return table.length >> 1;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return table.length == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public String get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : getValue(index + 1);
+    }
+
+    @Override
+    public String getOrDefault(Object key, String defaultValue) {
+        int index = indexOf(key);
+        return index < 0 ? defaultValue : getValue(index + 1);
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super String> action) {
+        for (int i = 0; i < table.length; i += 2) {
+            action.accept((String) table[i], getValue(i + 1));
+        }
+    }
+
+    @NotNull
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        Set<Entry<String, String>> result = entries;
+        if (result == null) {
+            entries = result = new EntrySet();
+        }
+        return result;
+    }
+
+    /**
+     * Replaces keys and values by equal instances, used to share strings between maps. Key order is kept as is, so the
+     * replacement keys must be equal to the ones they replace.
+     *
+     * @param keys   replacement of each key
+     * @param values replacement of each non-null value
+     * @return map holding the replacements, or this map if every replacement is the instance it already holds
+     */
+    CompactMap replaceAll(UnaryOperator<String> keys, UnaryOperator<String> values) {
+        Object[] result = null;
+        for (int i = 0; i < table.length; i++) {
+            Object current = table[i];
+            Object replacement = (i & 1) == 0 ? keys.apply((String) current)
+                    : current instanceof String ? values.apply((String) current) : current;
+            if (replacement != current && result == null) {
+                result = table.clone();
+            }
+            if (result != null) {
+                result[i] = replacement;
+            }
+        }
+        return result == null ? this : new CompactMap(result);
+    }
+
+    /**
+     * Copies the map, moving values of at least the threshold in UTF-8 bytes into an arena.
+     *
+     * @param arena     arena of the layer the map is cached as
+     * @param threshold minimum size in bytes of a moved value
+     * @return map holding the moved values, or this map if no value was moved
+     */
+    public CompactMap moveOffHeap(ValueArena arena, int threshold) {
+        Object[] moved = null;
+        for (int i = 1; i < table.length; i += 2) {
+            Object value = arena.store(table[i], threshold);
+            if (value != table[i]) {
+                if (moved == null) {
+                    moved = table.clone();
+                }
+                moved[i] = value;
+            }
+        }
+        return moved == null ? this : new CompactMap(moved);
+    }
+
+    /**
+     * @return true if a value of the map is held by a released arena and can no longer be read
+     */
+    public boolean isReleased() {
+        if (offHeap) {
+            for (int i = 1; i < table.length; i += 2) {
+                if (table[i] instanceof ValueArena.Value && ((ValueArena.Value) table[i]).isReleased()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Looks up a value without copying it into a string, used to merge maps.
+     *
+     * @param key key to look up
+     * @return string, off-heap value, or null if the map does not hold the key
+     */
+    @Nullable
+    Object getSlot(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : table[index + 1];
+    }
+
+    /**
+     * Reads the value held in an array slot, copying off-heap values into a string.
+     */
+    static String read(@Nullable Object slot) {
+        return slot instanceof ValueArena.Value ? ((ValueArena.Value) slot).read() : (String) slot;
+    }
+
+    private String getValue(int index) {
+        return read(table[index]);
+    }
+
+    /**
+     * @return array slot of the key, or a negative value if the map does not hold the key
+     */
+    private int indexOf(@Nullable Object key) {
+        if (!(key instanceof String)) {
+            return -1;
+        }
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = ((String) table[middle << 1]).compareTo((String) key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle << 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Collects pairs in any order, a key put more than once keeps its last value.
+     */
+    public static final class Builder {
+
+        private String[] keys;
+        private Object[] values;
+        private int size;
+
+        /**
+         * @param expected expected number of pairs
+         */
+        public Builder(int expected) {
+            keys = new String[Math.max(expected, 1)];
+            values = new Object[keys.length];
+        }
+
+        /**
+         * @param key   key, not null
+         * @param value value
+         * @return this builder
+         */
+        public Builder put(String key, String value) {
+            return putSlot(key, value);
+        }
+
+        /**
+         * @param key  key, not null
+         * @param slot string or off-heap value as returned by {@link #getSlot(Object)}
+         * @return this builder
+         */
+        Builder putSlot(String key, @Nullable Object slot) {
+            if (key == null) {
+                throw new NullPointerException();
+            }
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            keys[size] = key;
+            values[size++] = slot;
+            return this;
+        }
+
+        /**
+         * @return map of the collected pairs
+         */
+        public CompactMap build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            // stable, so pairs of a duplicated key stay in insertion order and the last one wins
+            Arrays.sort(order, Comparator.comparing(i -> keys[i]));
+            Object[] table = new Object[size * 2];
+            int length = 0;
+            for (int i = 0; i < size; i++) {
+                int pair = order[i];
+                if (length > 0 && table[length - 2].equals(keys[pair])) {
+                    length -= 2;
+                }
+                table[length++] = keys[pair];
+                table[length++] = values[pair];
+            }
+            return new CompactMap(length == table.length ? table : Arrays.copyOf(table, length));
+        }
+
+    }
+
+    /**
+     * Entry view created on the fly from the array.
+     */
+    private final class EntrySet extends AbstractSet<Entry<String, String>> {
+
+        @NotNull
+        @Override
+        public Iterator<Entry<String, String>> iterator() {
+            return new Iterator<Entry<String, String>>() {
+
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return index < table.length;
+                }
+
+                @Override
+                public Entry<String, String> next() {
+                    if (index >= table.length) {
+                        throw new NoSuchElementException();
+                    }
+                    Entry<String, String> entry = new SimpleImmutableEntry<>((String) table[index], getValue(index + 1));
+                    index += 2;
+                    return entry;
+                }
+
+            };
+        }
+
+        @Override
+        public int size() {
+            return CompactMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            int index = indexOf(entry.getKey());
+            return index >= 0 && Objects.equals(getValue(index + 1), entry.getValue());
+        }
+
+    }
+
+}
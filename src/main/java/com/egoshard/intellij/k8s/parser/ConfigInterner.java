@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Canonicalizes parsed layers so equal keys and large equal values are held once across layers and run configurations.
+ * <p>
+ * The same keys and the same certificate bundles or JSON blobs appear in many manifests, and every parse creates new copies of
+ * them. Keys are interned into a weak store, values of at least {@link #VALUE_THRESHOLD} characters into a second weak store
+ * keyed by their content hash. Smaller values are kept as they are, a store entry would take more memory than a duplicate.
+ * Both stores only hold strings still referenced from a parsed layer, strings that are no longer used are collected as usual.
+ * </p>
+ */
+public final class ConfigInterner {
+
+    static final int VALUE_THRESHOLD = 128;
+
+    private static final Store keys = new Store();
+    private static final Store values = new Store();
+
+    private ConfigInterner() {
+    }
+
+    /**
+     * Copies a parsed layer into a {@link CompactMap} holding canonical keys and large values.
+     *
+     * @param layer parsed key/value pairs
+     * @return canonical compact map, the layer itself if it already holds canonical strings only
+     */
+    public static CompactMap canonicalize(Map<String, String> layer) {
+        return CompactMap.copyOf(layer).replaceAll(keys::intern, ConfigInterner::internValue);
+    }
+
+    private static String internValue(String value) {
+        return value.length() < VALUE_THRESHOLD ? value : values.intern(value);
+    }
+
+    /**
+     * @return number of distinct keys held by the key store
+     */
+    static int getKeyCount() {
+        return keys.size();
+    }
+
+    /**
+     * @return number of distinct values held by the value store
+     */
+    static int getValueCount() {
+        return values.size();
+    }
+
+    /**
+     * Weak interner, a string is only held while it is referenced elsewhere.
+     * <p>
+     * Lookups hash the content of the string and compare it in full on a hash match, so strings of different content are never
+     * merged. Strings cache their hash, looking up a canonical instance again does not hash its content again.
+     * </p>
+     */
+    private static final class Store {
+
+        private final Map<String, WeakReference<String>> strings = new WeakHashMap<>();
+
+        synchronized String intern(String string) {
+            WeakReference<String> reference = strings.get(string);
+            String canonical = reference == null ? null : reference.get();
+            if (canonical == null) {
+                strings.put(string, new WeakReference<>(string));
+                return string;
+            }
+            return canonical;
+        }
+
+        synchronized int size() {
+            return strings.size();
+        }
+
+    }
+
+}
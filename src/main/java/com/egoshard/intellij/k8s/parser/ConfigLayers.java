@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merges parsed configuration layers from generic to specific.
+ * <p>
+ * The winning layer of each key is resolved before any value is read, starting from the most specific layer, so values of
+ * lazily decoded layers such as {@link SecretData} are only decoded if they survive the merge. The winning layer decides a key
+ * even if its value turns out to be binary data, such a key is left out of the result rather than taken from a generic layer.
+ * Values held off-heap by a {@link ValueArena} are carried over into the result without being copied into strings.
+ * </p>
+ */
+public final class ConfigLayers {
+
+    private static final Object DECIDED = new Object();
+
+    private ConfigLayers() {
+    }
+
+    /**
+     * Retrieves the keys that may have a value in a layer without decoding any value.
+     *
+     * @param layer parsed layer
+     * @return keys of the layer
+     */
+    public static Set<String> getKeys(Map<String, String> layer) {
+        return layer instanceof SecretData ? ((SecretData) layer).getCandidateKeys() : layer.keySet();
+    }
+
+    /**
+     * Checks whether a cached layer holds values of a released {@link ValueArena}, such a layer can no longer be read and has
+     * to be parsed again.
+     *
+     * @param layer parsed layer
+     * @return true if the layer was released
+     */
+    public static boolean isReleased(Map<String, String> layer) {
+        if (layer instanceof SecretData) {
+            return ((SecretData) layer).isReleased();
+        }
+        return layer instanceof CompactMap && ((CompactMap) layer).isReleased();
+    }
+
+    /**
+     * Merges layers, later layers taking precedence.
+     *
+     * @param layers parsed layers from generic to specific
+     * @return merged key/value pairs as a {@link CompactMap}
+     * @throws MergeException if a winning value cannot be decoded
+     */
+    public static Map<String, String> merge(List<? extends Map<String, String>> layers) {
+        if (layers.size() == 1 && !(layers.get(0) instanceof SecretData)) {
+            return CompactMap.copyOf(layers.get(0));
+        }
+        int size = 0;
+        for (Map<String, String> layer : layers) {
+            size = Math.max(size, getKeys(layer).size());
+        }
+        Map<String, Object> result = new HashMap<>(Math.max(16, size * 2));
+        for (int i = layers.size() - 1; i >= 0; i--) {
+            Map<String, String> layer = layers.get(i);
+            for (String key : getKeys(layer)) {
+                if (!result.containsKey(key)) {
+                    Object value = getSlot(layer, key, i);
+                    result.put(key, value == null ? DECIDED : value);
+                }
+            }
+        }
+        CompactMap.Builder builder = new CompactMap.Builder(result.size());
+        result.forEach((key, value) -> {
+            if (value != DECIDED) {
+                builder.putSlot(key, value);
+            }
+        });
+        return builder.build();
+    }
+
+    /**
+     * Looks up the value of a key in a layer, off-heap values are returned as they are.
+     *
+     * @return string, off-heap value, or null if the layer has no value for the key
+     * @throws MergeException if the value cannot be decoded
+     */
+    static Object getSlot(Map<String, String> layer, String key, int index) {
+        try {
+            if (layer instanceof CompactMap) {
+                return ((CompactMap) layer).getSlot(key);
+            }
+            return layer instanceof SecretData ? ((SecretData) layer).getSlot(key) : layer.get(key);
+        } catch (IllegalArgumentException e) {
+            throw new MergeException(index, e);
+        }
+    }
+
+    /**
+     * Raised when the winning value of a layer cannot be decoded.
+     */
+    public static class MergeException extends IllegalArgumentException {
+
+        private final int layer;
+
+        MergeException(int layer, IllegalArgumentException cause) {
+            super(cause.getMessage(), cause);
+            this.layer = layer;
+        }
+
+        /**
+         * @return index of the layer holding the value
+         */
+        public int getLayer() {
+            return layer;
+        }
+
+    }
+
+}
@@ -16,7 +16,6 @@
 package com.egoshard.intellij.k8s.parser;
 
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * Parses ConfigMap files into discrete environment variable key/value pairs.
@@ -31,9 +30,18 @@ public class ConfigMapParser extends AbstractParser {
      */
     @Override
     public Map<String, String> parse(Map<String, Object> source) {
-        Map<String, Object> data = super.getData(source, KEY_DATA);
-        return data.keySet().stream()
-                .collect(Collectors.toMap(key -> key, key -> String.valueOf(data.get(key)), (a, b) -> b));
+        return toCompactMap(super.getData(source, KEY_DATA));
+    }
+
+    /**
+     * Parses a source map into the files a volume mount of the ConfigMap would hold, including binaryData keys.
+     *
+     * @param source configuration map
+     * @return plain data and encoded binaryData by key
+     */
+    @Override
+    public SecretData parseVolume(Map<String, Object> source) {
+        return new SecretData(super.getData(source, KEY_BINARY_DATA), parse(source));
     }
 
     /**
@@ -15,6 +15,7 @@
  */
 package com.egoshard.intellij.k8s.parser;
 
+import java.util.Collections;
 import java.util.Map;
 
 /**
@@ -24,6 +25,12 @@ public interface ConfigParser {
 
     String KEY_KIND = "kind";
 
+    /**
+     * Version of the results parsing produces, results persisted by an earlier version are never read back. Increase it with
+     * any change to a parser, reader or scanner that changes the result of parsing some file.
+     */
+    int RESULT_VERSION = 2;
+
     /**
      * Parses a source map matching the YAML structure of a Kubernetes configuration file.
      *
@@ -32,6 +39,16 @@ public interface ConfigParser {
      */
     Map<String, String> parse(Map<String, Object> source);
 
+    /**
+     * Parses a source map into the files a volume mount of the Kubernetes configuration would hold, one per key.
+     *
+     * @param source configuration map
+     * @return plain and encoded file content by key
+     */
+    default SecretData parseVolume(Map<String, Object> source) {
+        return new SecretData(Collections.emptyMap(), parse(source));
+    }
+
     /**
      * Indicates the specific kind of Kubernetes configuration the parser is intended to operate on.
      *
@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.Nullable;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.reader.UnicodeReader;
+
+import java.io.ByteArrayInputStream;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Environment of a container declared in a workload manifest, resolved the way the kubelet resolves it.
+ * <p>
+ * {@code envFrom} sources are applied in order, later sources overriding earlier ones, and {@code env} entries are applied
+ * after them. Referenced ConfigMaps and Secrets are looked up by name. A missing reference fails resolution unless it is
+ * {@code optional}, in which case it is skipped. Literal values expand {@code $(VAR)} references to variables defined before
+ * them, unresolvable references are kept as is and {@code $$} escapes a dollar sign. {@code fieldRef} and
+ * {@code resourceFieldRef} values depend on the running pod and are not injected.
+ * </p>
+ */
+public final class ContainerEnvironment {
+
+    private static final Logger logger = Logger.getInstance(ContainerEnvironment.class);
+    private static final Map<String, List<String>> POD_SPECS = ImmutableMap.<String, List<String>>builder()
+            .put("Pod", Collections.singletonList("spec"))
+            .put("Deployment", ImmutableList.of("spec", "template", "spec"))
+            .put("StatefulSet", ImmutableList.of("spec", "template", "spec"))
+            .put("DaemonSet", ImmutableList.of("spec", "template", "spec"))
+            .put("ReplicaSet", ImmutableList.of("spec", "template", "spec"))
+            .put("Job", ImmutableList.of("spec", "template", "spec"))
+            .put("CronJob", ImmutableList.of("spec", "jobTemplate", "spec", "template", "spec"))
+            .build();
+    private static final List<String> CONTAINER_KEYS = ImmutableList.of("containers", "initContainers");
+    private static final String KEY_METADATA = "metadata";
+    private static final String KEY_NAME = "name";
+    private static final String KEY_KEY = "key";
+    private static final String KEY_OPTIONAL = "optional";
+    private static final String KEY_ENV = "env";
+    private static final String KEY_ENV_FROM = "envFrom";
+    private static final String KEY_PREFIX = "prefix";
+    private static final String KEY_VALUE = "value";
+    private static final String KEY_VALUE_FROM = "valueFrom";
+    private static final Map<String, ConfigParser.Kind> SOURCE_REFS = ImmutableMap.of(
+            "configMapRef", ConfigParser.Kind.CONFIGMAP,
+            "secretRef", ConfigParser.Kind.SECRET);
+    private static final Map<String, ConfigParser.Kind> KEY_REFS = ImmutableMap.of(
+            "configMapKeyRef", ConfigParser.Kind.CONFIGMAP,
+            "secretKeyRef", ConfigParser.Kind.SECRET);
+
+    private static final String MSG_NO_WORKLOAD = "The provided configuration has no Pod or workload%s.";
+    private static final String MSG_NAMED = " named [%s]";
+    private static final String MSG_NO_CONTAINER = "The workload [%s] has no container named [%s], containers are %s.";
+    private static final String MSG_AMBIGUOUS_CONTAINER = "The workload [%s] has several containers, one of %s must be selected.";
+    private static final String MSG_MISSING_SOURCE = "The %s [%s] referenced by container [%s] does not exist.";
+    private static final String MSG_MISSING_KEY = "The %s [%s] referenced by variable [%s] of container [%s] has no key [%s].";
+    private static final String MSG_INVALID = "The %s of container [%s] is invalid.";
+    private static final String MSG_NOT_INJECTED = "The variable [%s] of container [%s] is set from the running pod and is not injected.";
+
+    private final String container;
+    private final List<Map<String, Object>> envFrom;
+    private final List<Map<String, Object>> env;
+
+    private ContainerEnvironment(String container, List<Map<String, Object>> envFrom, List<Map<String, Object>> env) {
+        this.container = container;
+        this.envFrom = envFrom;
+        this.env = env;
+    }
+
+    /**
+     * @return kinds of manifests declaring containers
+     */
+    public static Set<String> getWorkloadKinds() {
+        return POD_SPECS.keySet();
+    }
+
+    /**
+     * @param kind manifest kind
+     * @return true if manifests of the kind declare containers
+     */
+    public static boolean isWorkload(@Nullable Object kind) {
+        return kind != null && POD_SPECS.containsKey(kind);
+    }
+
+    /**
+     * Reads the environment of a container from a manifest file. The first workload accepted by the name filter is used.
+     *
+     * @param content   YAML file content, which may hold several documents or a {@code kind: List}
+     * @param workload  workload name filter, or null to use the first workload
+     * @param container container name, or null if the workload has a single container
+     * @return container environment
+     * @throws IllegalArgumentException if there is no such workload or container
+     */
+    public static ContainerEnvironment read(byte[] content, @Nullable String workload, @Nullable String container) {
+        for (Object document : new Yaml(new SafeConstructor()).loadAll(new UnicodeReader(new ByteArrayInputStream(content)))) {
+            for (Map<String, Object> manifest : getManifests(document)) {
+                Object kind = manifest.get(ConfigParser.KEY_KIND);
+                String name = getString(getMap(manifest.get(KEY_METADATA)).get(KEY_NAME));
+                if (isWorkload(kind) && (workload == null || workload.equals(name))) {
+                    return read(manifest, POD_SPECS.get(kind), name, container);
+                }
+            }
+        }
+        throw new IllegalArgumentException(String.format(MSG_NO_WORKLOAD, workload == null ? "" : String.format(MSG_NAMED, workload)));
+    }
+
+    private static ContainerEnvironment read(Map<String, Object> manifest, List<String> path, String workload,
+                                             @Nullable String container) {
+        Map<String, Object> spec = manifest;
+        for (String key : path) {
+            spec = getMap(spec.get(key));
+        }
+        List<Map<String, Object>> containers = new ArrayList<>();
+        for (String key : CONTAINER_KEYS) {
+            getList(spec.get(key)).forEach(item -> containers.add(getMap(item)));
+        }
+        List<String> names = new ArrayList<>();
+        containers.forEach(item -> names.add(getString(item.get(KEY_NAME))));
+        Map<String, Object> selected = null;
+        if (container == null || container.isEmpty()) {
+            if (containers.size() != 1) {
+                throw new IllegalArgumentException(String.format(MSG_AMBIGUOUS_CONTAINER, workload, names));
+            }
+            selected = containers.get(0);
+        } else if (names.contains(container)) {
+            selected = containers.get(names.indexOf(container));
+        }
+        if (selected == null) {
+            throw new IllegalArgumentException(String.format(MSG_NO_CONTAINER, workload, container, names));
+        }
+        String name = getString(selected.get(KEY_NAME));
+        List<Map<String, Object>> envFrom = new ArrayList<>();
+        getList(selected.get(KEY_ENV_FROM)).forEach(item -> envFrom.add(getMap(item)));
+        List<Map<String, Object>> env = new ArrayList<>();
+        getList(selected.get(KEY_ENV)).forEach(item -> env.add(getMap(item)));
+        return new ContainerEnvironment(name, envFrom, env);
+    }
+
+    /**
+     * @return name of the container
+     */
+    public String getContainer() {
+        return container;
+    }
+
+    /**
+     * Resolves the environment of the container.
+     *
+     * @param lookup finds referenced ConfigMaps and Secrets by name
+     * @return map key/value pairs
+     * @throws IllegalArgumentException if a reference that is not optional cannot be resolved
+     */
+    public Map<String, String> resolve(Lookup lookup) {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (Map<String, Object> source : envFrom) {
+            String prefix = source.get(KEY_PREFIX) == null ? "" : getString(source.get(KEY_PREFIX));
+            Reference reference = getReference(source, SOURCE_REFS, KEY_ENV_FROM);
+            Map<String, String> values = lookup.find(reference.kind, reference.name);
+            if (values == null) {
+                if (!reference.optional) {
+                    throw new IllegalArgumentException(String.format(MSG_MISSING_SOURCE, reference.kind.getKey(), reference.name, container));
+                }
+                continue;
+            }
+            for (String key : ConfigLayers.getKeys(values)) {
+                String value = values.get(key);
+                if (value != null) {
+                    result.put(prefix + key, value);
+                }
+            }
+        }
+        for (Map<String, Object> variable : env) {
+            String name = getString(variable.get(KEY_NAME));
+            if (name == null) {
+                throw new IllegalArgumentException(String.format(MSG_INVALID, KEY_ENV, container));
+            }
+            Map<String, Object> valueFrom = getMap(variable.get(KEY_VALUE_FROM));
+            if (valueFrom.isEmpty()) {
+                Object value = variable.get(KEY_VALUE);
+                result.put(name, expand(value == null ? "" : getString(value), result));
+                continue;
+            }
+            if (Collections.disjoint(valueFrom.keySet(), KEY_REFS.keySet())) {
+                logger.info(String.format(MSG_NOT_INJECTED, name, container));
+                continue;
+            }
+            Reference reference = getReference(valueFrom, KEY_REFS, KEY_ENV);
+            Map<String, String> values = lookup.find(reference.kind, reference.name);
+            String value = values == null ? null : values.get(reference.key);
+            if (value != null) {
+                result.put(name, value);
+            } else if (!reference.optional) {
+                throw new IllegalArgumentException(values == null
+                        ? String.format(MSG_MISSING_SOURCE, reference.kind.getKey(), reference.name, container)
+                        : String.format(MSG_MISSING_KEY, reference.kind.getKey(), reference.name, name, container, reference.key));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return ConfigMaps and Secrets referenced by the container, by kind and name
+     */
+    public Set<Map.Entry<ConfigParser.Kind, String>> getReferences() {
+        Set<Map.Entry<ConfigParser.Kind, String>> result = new LinkedHashSet<>();
+        envFrom.forEach(source -> add(result, getReference(source, SOURCE_REFS, KEY_ENV_FROM)));
+        env.stream().map(variable -> getMap(variable.get(KEY_VALUE_FROM)))
+                .filter(valueFrom -> !Collections.disjoint(valueFrom.keySet(), KEY_REFS.keySet()))
+                .forEach(valueFrom -> add(result, getReference(valueFrom, KEY_REFS, KEY_ENV)));
+        return result;
+    }
+
+    private static void add(Set<Map.Entry<ConfigParser.Kind, String>> references, Reference reference) {
+        references.add(new AbstractMap.SimpleImmutableEntry<>(reference.kind, reference.name));
+    }
+
+    private Reference getReference(Map<String, Object> source, Map<String, ConfigParser.Kind> kinds, String section) {
+        for (Map.Entry<String, ConfigParser.Kind> kind : kinds.entrySet()) {
+            Map<String, Object> reference = getMap(source.get(kind.getKey()));
+            String name = getString(reference.get(KEY_NAME));
+            if (name != null) {
+                return new Reference(kind.getValue(), name, getString(reference.get(KEY_KEY)),
+                        Boolean.TRUE.equals(reference.get(KEY_OPTIONAL)));
+            }
+        }
+        throw new IllegalArgumentException(String.format(MSG_INVALID, section, container));
+    }
+
+    /**
+     * Expands {@code $(VAR)} references the way Kubernetes expands container variables.
+     */
+    static String expand(String value, Map<String, String> variables) {
+        if (value.indexOf('$') < 0) {
+            return value;
+        }
+        StringBuilder result = new StringBuilder(value.length());
+        int i = 0;
+        while (i < value.length()) {
+            char current = value.charAt(i);
+            if (current != '$' || i + 1 == value.length()) {
+                result.append(current);
+                i++;
+            } else if (value.charAt(i + 1) == '$') {
+                result.append('$');
+                i += 2;
+            } else if (value.charAt(i + 1) == '(') {
+                int end = value.indexOf(')', i + 2);
+                if (end < 0) {
+                    result.append(value, i, value.length());
+                    break;
+                }
+                String name = value.substring(i + 2, end);
+                String resolved = variables.get(name);
+                result.append(resolved == null ? value.substring(i, end + 1) : resolved);
+                i = end + 1;
+            } else {
+                result.append(current).append(value.charAt(i + 1));
+                i += 2;
+            }
+        }
+        return result.toString();
+    }
+
+    private static List<Map<String, Object>> getManifests(Object document) {
+        Map<String, Object> manifest = getMap(document);
+        if (!"List".equals(manifest.get(ConfigParser.KEY_KIND))) {
+            return Collections.singletonList(manifest);
+        }
+        List<Map<String, Object>> result = new ArrayList<>();
+        getList(manifest.get("items")).forEach(item -> result.add(getMap(item)));
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getMap(@Nullable Object value) {
+        return value instanceof Map ? (Map<String, Object>) value : Collections.emptyMap();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> getList(@Nullable Object value) {
+        return value instanceof List ? (List<Object>) value : Collections.emptyList();
+    }
+
+    @Nullable
+    private static String getString(@Nullable Object value) {
+        return value == null ? null : String.valueOf(value);
+    }
+
+    /**
+     * Finds ConfigMaps and Secrets referenced by a container.
+     */
+    @FunctionalInterface
+    public interface Lookup {
+
+        /**
+         * @param kind resource kind
+         * @param name resource name
+         * @return key/value pairs of the resource, or null if it does not exist
+         */
+        @Nullable
+        Map<String, String> find(ConfigParser.Kind kind, String name);
+
+    }
+
+    /**
+     * Reference to a ConfigMap or Secret, or to one of its keys.
+     */
+    private static final class Reference {
+
+        private final ConfigParser.Kind kind;
+        private final String name;
+        private final String key;
+        private final boolean optional;
+
+        Reference(ConfigParser.Kind kind, String name, @Nullable String key, boolean optional) {
+            this.kind = kind;
+            this.name = name;
+            this.key = key;
+            this.optional = optional;
+        }
+
+    }
+
+}
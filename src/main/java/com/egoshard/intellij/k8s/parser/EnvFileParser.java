@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Parses env files, the {@code KEY=VALUE} sources of {@code kubectl create configmap --from-env-file} and kustomize {@code envs},
+ * into discrete environment variable key/value pairs.
+ * <p>
+ * Files are scanned in a single pass over their bytes without going through a YAML parser, following kubectl rules. A leading
+ * UTF-8 byte order mark is ignored. Lines are split on the first {@code =} after leading whitespace is removed. Blank lines and
+ * lines starting with {@code #} are skipped. Values are taken as is, quotes and a {@code #} inside a value are part of it. Keys
+ * must be valid environment variable names and may only be defined once. A line holding only a key takes its value from the
+ * environment of the IDE, or an empty value if the variable is not set. Results depending on the environment must be cached
+ * against the values it supplied, see {@link #getEnvironment}.
+ * </p>
+ */
+public final class EnvFileParser {
+
+    private static final String FILE_EXTENSION = ".env";
+    private static final String FILE_PREFIX = ".env.";
+    private static final String MSG_INVALID_KEY = "The env file key [%s] on line %d is not a valid environment variable name.";
+    private static final String MSG_DUPLICATE_KEY = "The env file key [%s] on line %d is already defined.";
+
+    private final Function<String, String> environment;
+
+    public EnvFileParser() {
+        this(System::getenv);
+    }
+
+    EnvFileParser(Function<String, String> environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * @param path configuration file path
+     * @return true if the file name is one of an env file, {@code .env}, {@code *.env} or {@code .env.*}
+     */
+    public static boolean isEnvFile(@Nullable String path) {
+        if (path == null) {
+            return false;
+        }
+        String separated = path.replace('\\', '/');
+        String name = separated.substring(separated.lastIndexOf('/') + 1);
+        return name.endsWith(FILE_EXTENSION) || name.startsWith(FILE_PREFIX);
+    }
+
+    /**
+     * Parses env file content.
+     *
+     * @param content file content
+     * @return map key/value pairs
+     * @throws IllegalArgumentException if a key is not a valid environment variable name or is defined more than once
+     */
+    public Map<String, String> parse(byte[] content) {
+        Map<String, String> result = new HashMap<>();
+        int start = hasBom(content) ? 3 : 0;
+        for (int line = 1; start < content.length; line++) {
+            int end = start;
+            while (end < content.length && content[end] != '\n') {
+                end++;
+            }
+            int next = end + 1;
+            if (end > start && content[end - 1] == '\r') {
+                end--;
+            }
+            parseLine(content, start, end, line, result);
+            start = next;
+        }
+        return result;
+    }
+
+    /**
+     * Looks up the values parsing the content would take from the environment of the IDE.
+     *
+     * @param content file content
+     * @return values of the keys without a value in the file by key, sorted by key, empty if the result does not depend on
+     * the environment
+     */
+    public Map<String, String> getEnvironment(byte[] content) {
+        Map<String, String> result = new TreeMap<>();
+        try {
+            new EnvFileParser(key -> {
+                String value = getEnvironment(key);
+                result.put(key, value);
+                return value;
+            }).parse(content);
+        } catch (IllegalArgumentException e) {
+            // the content fails to parse as well, there is no result to cache
+        }
+        return result;
+    }
+
+    private void parseLine(byte[] content, int start, int end, int line, Map<String, String> result) {
+        while (start < end && isWhitespace(content[start])) {
+            start++;
+        }
+        if (start == end || content[start] == '#') {
+            return;
+        }
+        int separator = start;
+        while (separator < end && content[separator] != '=') {
+            separator++;
+        }
+        if (!isKey(content, start, separator)) {
+            throw new IllegalArgumentException(String.format(MSG_INVALID_KEY,
+                    new String(content, start, separator - start, StandardCharsets.UTF_8), line));
+        }
+        String key = new String(content, start, separator - start, StandardCharsets.US_ASCII);
+        String value = separator < end
+                ? new String(content, separator + 1, end - separator - 1, StandardCharsets.UTF_8)
+                : getEnvironment(key);
+        if (result.put(key, value) != null) {
+            throw new IllegalArgumentException(String.format(MSG_DUPLICATE_KEY, key, line));
+        }
+    }
+
+    private String getEnvironment(String key) {
+        String value = environment.apply(key);
+        return value == null ? "" : value;
+    }
+
+    private static boolean hasBom(byte[] content) {
+        return content.length >= 3 && content[0] == (byte) 0xEF && content[1] == (byte) 0xBB && content[2] == (byte) 0xBF;
+    }
+
+    private static boolean isWhitespace(byte value) {
+        return value == ' ' || value == '\t' || value == '\r' || value == 0x0B || value == '\f';
+    }
+
+    /**
+     * Environment variable names as validated by Kubernetes, {@code [-._a-zA-Z][-._a-zA-Z0-9]*}.
+     */
+    private static boolean isKey(byte[] content, int start, int end) {
+        if (start == end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            byte value = content[i];
+            boolean letter = (value >= 'a' && value <= 'z') || (value >= 'A' && value <= 'Z')
+                    || value == '-' || value == '.' || value == '_';
+            if (!letter && (i == start || value < '0' || value > '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
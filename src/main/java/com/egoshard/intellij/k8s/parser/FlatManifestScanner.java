@@ -0,0 +1,486 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import com.google.common.collect.ImmutableSet;
+import org.jetbrains.annotations.Nullable;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Scans flat ConfigMap and Secret manifests directly from UTF-8 encoded bytes without going through SnakeYAML.
+ * <p>
+ * The supported shape is a single block mapping document whose {@code kind} is a scalar and whose {@code data},
+ * {@code stringData} and {@code binaryData} sections are flat mappings of plain, single line quoted or literal block scalars.
+ * Other top level sections are skipped line by line. Values are returned as {@link ByteSlice} views over the source buffer.
+ * </p>
+ * <p>
+ * Anything outside that shape, such as anchors, aliases, tags, flow collections, folded or escaped scalars, multiple documents
+ * or scalars SnakeYAML would resolve to a non string type, is rejected so the caller can fall back to SnakeYAML.
+ * </p>
+ */
+public class FlatManifestScanner {
+
+    private static final Set<String> SECTIONS = ImmutableSet.of(
+            AbstractParser.KEY_DATA,
+            SecretParser.KEY_STRING_DATA,
+            AbstractParser.KEY_BINARY_DATA
+    );
+    private static final String RESOLVABLE = "yYnNtTfFoO-+0123456789.<~=!&*";
+    private static final String INDICATORS = "-?:,[]{}#&*!|>'\"%@`";
+
+    private final Resolver resolver = new Resolver();
+
+    /**
+     * Scans a manifest for the parser relevant sections.
+     *
+     * @param buffer UTF-8 encoded manifest, read between its position and limit
+     * @return map of extracted top level sections, or null if the manifest is not in the supported shape
+     */
+    @Nullable
+    public Map<String, Object> scan(ByteBuffer buffer) {
+        try {
+            return new Scan(buffer).scan();
+        } catch (UnsupportedException e) {
+            return null;
+        }
+    }
+
+    /**
+     * State of a single scan over line boundaries of the source buffer.
+     */
+    private class Scan {
+
+        private final ByteBuffer buffer;
+        private int[] starts = new int[64];
+        private int[] ends = new int[64];
+        private int count;
+        private boolean terminated;
+
+        Scan(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        Map<String, Object> scan() {
+            split();
+            Map<String, Object> result = new LinkedHashMap<>();
+            Set<String> seen = new HashSet<>();
+            boolean started = false;
+            int line = 0;
+            while (line < count) {
+                int start = starts[line];
+                int end = ends[line];
+                if (isBlank(start, end)) {
+                    line++;
+                    continue;
+                }
+                if (!started && isDocumentStart(start, end)) {
+                    started = true;
+                    line++;
+                    continue;
+                }
+                started = true;
+                int colon = keyEnd(start, end);
+                String key = ascii(start, colon);
+                if (!seen.add(key) || !isString(key)) {
+                    throw new UnsupportedException();
+                }
+                int value = skipSpaces(colon + 1, end);
+                if (SECTIONS.contains(key)) {
+                    if (isEmptyFlowMapping(value, end)) {
+                        result.put(key, new LinkedHashMap<>());
+                        line++;
+                    } else if (isComment(value, end)) {
+                        line = section(line + 1, key, result);
+                    } else {
+                        throw new UnsupportedException();
+                    }
+                } else if (ConfigParser.KEY_KIND.equals(key)) {
+                    result.put(key, inlineScalar(value, end, line).toString());
+                    line++;
+                } else {
+                    if (!isComment(value, end) && !isSkippable(value, end)) {
+                        throw new UnsupportedException();
+                    }
+                    line = skipIndented(line + 1);
+                }
+            }
+            if (seen.isEmpty()) {
+                throw new UnsupportedException();
+            }
+            return result;
+        }
+
+        private int section(int line, String key, Map<String, Object> result) {
+            int first = nextContent(line);
+            if (first == count || indent(first) == 0) {
+                result.put(key, null);
+                return first;
+            }
+            int indent = indent(first);
+            Map<String, Object> values = new LinkedHashMap<>();
+            while (line < count) {
+                int start = starts[line];
+                int end = ends[line];
+                if (isBlank(start, end)) {
+                    line++;
+                    continue;
+                }
+                int current = indent(line);
+                if (current == 0) {
+                    break;
+                }
+                if (current != indent) {
+                    throw new UnsupportedException();
+                }
+                int colon = keyEnd(start + indent, end);
+                String name = ascii(start + indent, colon);
+                if (!isString(name)) {
+                    throw new UnsupportedException();
+                }
+                int value = skipSpaces(colon + 1, end);
+                if (value < end && buffer.get(value) == '|') {
+                    line = literal(line, value, end, indent, name, values);
+                    continue;
+                }
+                if (isComment(value, end)) {
+                    throw new UnsupportedException();
+                }
+                values.put(name, inlineScalar(value, end, line));
+                line++;
+            }
+            result.put(key, values);
+            return line;
+        }
+
+        private CharSequence inlineScalar(int start, int end, int line) {
+            if (start >= end) {
+                throw new UnsupportedException();
+            }
+            byte first = buffer.get(start);
+            CharSequence value;
+            if (first == '"') {
+                int close = indexOf((byte) '"', start + 1, end);
+                if (close < 0 || indexOf((byte) '\\', start + 1, close) >= 0 || !isComment(skipSpaces(close + 1, end), end)) {
+                    throw new UnsupportedException();
+                }
+                value = ByteSlice.of(buffer, start + 1, close);
+            } else if (first == '\'') {
+                int close = start + 1;
+                boolean escaped = false;
+                while (true) {
+                    close = indexOf((byte) '\'', close, end);
+                    if (close < 0) {
+                        throw new UnsupportedException();
+                    }
+                    if (close + 1 < end && buffer.get(close + 1) == '\'') {
+                        escaped = true;
+                        close += 2;
+                    } else {
+                        break;
+                    }
+                }
+                if (!isComment(skipSpaces(close + 1, end), end)) {
+                    throw new UnsupportedException();
+                }
+                value = escaped
+                        ? ByteSlice.of(buffer, start + 1, close).toString().replace("''", "'")
+                        : ByteSlice.of(buffer, start + 1, close);
+            } else {
+                if (INDICATORS.indexOf(first) >= 0) {
+                    throw new UnsupportedException();
+                }
+                int stop = start;
+                int last = start;
+                while (stop < end) {
+                    byte current = buffer.get(stop);
+                    if (current == '#' && buffer.get(stop - 1) == ' ') {
+                        break;
+                    }
+                    if (current == ':' && (stop + 1 == end || buffer.get(stop + 1) == ' ')) {
+                        throw new UnsupportedException();
+                    }
+                    if (current != ' ') {
+                        last = stop + 1;
+                    }
+                    stop++;
+                }
+                int next = nextContent(line + 1);
+                if (next < count && indent(next) > indent(line)) {
+                    throw new UnsupportedException();
+                }
+                value = ByteSlice.of(buffer, start, last);
+                if (RESOLVABLE.indexOf(first) >= 0 && !isString(value.toString())) {
+                    throw new UnsupportedException();
+                }
+            }
+            return value;
+        }
+
+        private int literal(int line, int header, int end, int indent, String name, Map<String, Object> values) {
+            int position = header + 1;
+            char chomping = ' ';
+            if (position < end && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+                chomping = (char) buffer.get(position);
+                position++;
+            }
+            if (position < end && buffer.get(position) != ' ' || !isComment(skipSpaces(position, end), end)) {
+                throw new UnsupportedException();
+            }
+            int first = line + 1;
+            while (first < count && isSpaces(starts[first], ends[first])) {
+                first++;
+            }
+            if (first == count || indent(first) <= indent) {
+                throw new UnsupportedException();
+            }
+            int content = indent(first);
+            int[] bounds = new int[16];
+            int ranges = 0;
+            int lastContent = 0;
+            int current = line + 1;
+            while (current < count) {
+                int start = starts[current];
+                int lineEnd = ends[current];
+                if (isSpaces(start, lineEnd)) {
+                    if (lineEnd - start > content) {
+                        throw new UnsupportedException();
+                    }
+                    bounds = add(bounds, ranges++, start, start);
+                } else {
+                    int lineIndent = indent(current);
+                    if (lineIndent <= indent) {
+                        break;
+                    }
+                    if (lineIndent < content) {
+                        throw new UnsupportedException();
+                    }
+                    bounds = add(bounds, ranges++, start + content, lineEnd);
+                    lastContent = ranges;
+                }
+                current++;
+            }
+            if (current == count && !terminated) {
+                throw new UnsupportedException();
+            }
+            int breaks = chomping == '-' ? 0 : chomping == '+' ? 1 + ranges - lastContent : 1;
+            values.put(name, new ByteSlice(buffer, Arrays.copyOf(bounds, lastContent * 2), breaks));
+            return current;
+        }
+
+        private int[] add(int[] bounds, int index, int start, int end) {
+            int[] result = index * 2 + 2 > bounds.length ? Arrays.copyOf(bounds, bounds.length * 2) : bounds;
+            result[index * 2] = start;
+            result[index * 2 + 1] = end;
+            return result;
+        }
+
+        private int skipIndented(int line) {
+            while (line < count && (isBlank(starts[line], ends[line]) || buffer.get(starts[line]) == ' ')) {
+                line++;
+            }
+            return line;
+        }
+
+        private int nextContent(int line) {
+            while (line < count && isBlank(starts[line], ends[line])) {
+                line++;
+            }
+            return line;
+        }
+
+        private int indent(int line) {
+            int position = starts[line];
+            while (position < ends[line] && buffer.get(position) == ' ') {
+                position++;
+            }
+            return position - starts[line];
+        }
+
+        private int keyEnd(int start, int end) {
+            int position = start;
+            while (position < end && isKeyCharacter(buffer.get(position))) {
+                position++;
+            }
+            if (position == start || position == end || buffer.get(position) != ':'
+                    || position + 1 < end && buffer.get(position + 1) != ' ') {
+                throw new UnsupportedException();
+            }
+            return position;
+        }
+
+        private boolean isKeyCharacter(byte value) {
+            return value >= 'a' && value <= 'z' || value >= 'A' && value <= 'Z' || value >= '0' && value <= '9'
+                    || value == '_' || value == '-' || value == '.';
+        }
+
+        private boolean isSkippable(int start, int end) {
+            byte first = buffer.get(start);
+            if (first == '|' || first == '>') {
+                return true;
+            }
+            if (first == '"' || first == '\'') {
+                return indexOf(first, start + 1, end) > 0;
+            }
+            return "&*!{[".indexOf(first) < 0;
+        }
+
+        private boolean isEmptyFlowMapping(int start, int end) {
+            return start + 1 < end && buffer.get(start) == '{' && buffer.get(start + 1) == '}' && isComment(skipSpaces(start + 2, end), end);
+        }
+
+        private boolean isDocumentStart(int start, int end) {
+            return end - start >= 3 && buffer.get(start) == '-' && buffer.get(start + 1) == '-' && buffer.get(start + 2) == '-'
+                    && (end - start == 3 || buffer.get(start + 3) == ' ' && isComment(skipSpaces(start + 3, end), end));
+        }
+
+        private boolean isBlank(int start, int end) {
+            return isComment(skipSpaces(start, end), end);
+        }
+
+        private boolean isSpaces(int start, int end) {
+            return skipSpaces(start, end) == end;
+        }
+
+        private boolean isComment(int start, int end) {
+            return start == end || buffer.get(start) == '#';
+        }
+
+        private int skipSpaces(int start, int end) {
+            while (start < end && buffer.get(start) == ' ') {
+                start++;
+            }
+            return start;
+        }
+
+        private int indexOf(byte value, int start, int end) {
+            for (int i = start; i < end; i++) {
+                if (buffer.get(i) == value) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private String ascii(int start, int end) {
+            byte[] bytes = new byte[end - start];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(start + i);
+            }
+            return new String(bytes, StandardCharsets.US_ASCII);
+        }
+
+        private boolean isString(String value) {
+            return Tag.STR.equals(resolver.resolve(NodeId.scalar, value, true));
+        }
+
+        /**
+         * Validates the buffer as printable UTF-8 text and records line boundaries, trailing carriage returns excluded.
+         */
+        private void split() {
+            int position = buffer.position();
+            int limit = buffer.limit();
+            if (limit - position >= 3 && (buffer.get(position) & 0xFF) == 0xEF && (buffer.get(position + 1) & 0xFF) == 0xBB
+                    && (buffer.get(position + 2) & 0xFF) == 0xBF) {
+                position += 3;
+            }
+            int start = position;
+            while (position < limit) {
+                int value = buffer.get(position) & 0xFF;
+                if (value == '\n') {
+                    int end = position > start && buffer.get(position - 1) == '\r' ? position - 1 : position;
+                    addLine(start, end);
+                    start = ++position;
+                } else if (value == '\r') {
+                    if (position + 1 >= limit || buffer.get(position + 1) != '\n') {
+                        throw new UnsupportedException();
+                    }
+                    position++;
+                } else if (value < 0x20 || value == 0x7F) {
+                    throw new UnsupportedException();
+                } else if (value < 0x80) {
+                    position++;
+                } else {
+                    position = character(position, limit, value);
+                }
+            }
+            terminated = start == limit;
+            if (!terminated) {
+                addLine(start, limit);
+            }
+        }
+
+        private int character(int position, int limit, int value) {
+            if (value >= 0xC2 && value <= 0xDF) {
+                int next = continuation(position + 1, limit);
+                if (value == 0xC2 && next < 0xA0) {
+                    throw new UnsupportedException();
+                }
+                return position + 2;
+            }
+            if (value >= 0xE0 && value <= 0xEF) {
+                int second = continuation(position + 1, limit);
+                int third = continuation(position + 2, limit);
+                int codePoint = (value & 0x0F) << 12 | (second & 0x3F) << 6 | third & 0x3F;
+                if (codePoint < 0x800 || codePoint >= 0xD800 && codePoint <= 0xDFFF || codePoint == 0x2028 || codePoint == 0x2029
+                        || codePoint == 0xFEFF || codePoint >= 0xFFFE) {
+                    throw new UnsupportedException();
+                }
+                return position + 3;
+            }
+            throw new UnsupportedException();
+        }
+
+        private int continuation(int position, int limit) {
+            if (position >= limit || (buffer.get(position) & 0xC0) != 0x80) {
+                throw new UnsupportedException();
+            }
+            return buffer.get(position) & 0xFF;
+        }
+
+        private void addLine(int start, int end) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = start;
+            ends[count] = end;
+            count++;
+        }
+
+    }
+
+    /**
+     * Signals that the manifest is outside the shape supported by the scanner.
+     */
+    private static class UnsupportedException extends RuntimeException {
+
+        UnsupportedException() {
+            super(null, null, false, false);
+        }
+
+    }
+
+}
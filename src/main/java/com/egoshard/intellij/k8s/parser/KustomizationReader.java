@@ -0,0 +1,479 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.Nullable;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.reader.UnicodeReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Builds ConfigMap and Secret layers from a kustomization locally, without the kustomize binary or network access.
+ * <p>
+ * A kustomization is read in two steps. {@link #read(String)} walks {@code resources} and {@code bases}, following directories
+ * to their kustomization file, and loads every file the build depends on without parsing any manifest. The loaded inputs can
+ * be fingerprinted to look the result up in a cache before {@link Build#getLayers(Map, String)} parses the manifests and runs
+ * the {@code configMapGenerator} and {@code secretGenerator} entries.
+ * </p>
+ * <p>
+ * Layers follow kustomize precedence. Resources come first in the order they are listed, each directory contributing its whole
+ * build in place, followed by the generators of the kustomization. A generator with {@code behavior: replace} replaces earlier
+ * layers of the same kind and name, {@code merge} and {@code create} add a layer that overrides earlier values. Generator
+ * sources are {@code envs} (and the legacy {@code env}), {@code files} and {@code literals}, a key defined by more than one
+ * source of the same generator is an error as it is for kustomize. Env files are read by {@link EnvFileParser}. File content
+ * that is not UTF-8 text is binary data, it is routed like binary Secret values and never injected, volumes built by
+ * {@link Build#getVolumes(Map, String)} hold it as is.
+ * </p>
+ * <p>
+ * Name prefixes and suffixes, patches and generator options are not supported, a kustomization using them is read without
+ * them and a warning is logged.
+ * </p>
+ */
+public final class KustomizationReader {
+
+    private static final Logger logger = Logger.getInstance(KustomizationReader.class);
+    private static final List<String> FILE_NAMES = Arrays.asList("kustomization.yaml", "kustomization.yml", "Kustomization");
+    private static final String KEY_RESOURCES = "resources";
+    private static final String KEY_BASES = "bases";
+    private static final String KEY_CONFIGMAP_GENERATOR = "configMapGenerator";
+    private static final String KEY_SECRET_GENERATOR = "secretGenerator";
+    private static final String KEY_NAME = "name";
+    private static final String KEY_BEHAVIOR = "behavior";
+    private static final String KEY_LITERALS = "literals";
+    private static final String KEY_FILES = "files";
+    private static final String KEY_ENVS = "envs";
+    private static final String KEY_ENV = "env";
+    private static final List<String> UNSUPPORTED_KEYS = Arrays.asList(
+            "namePrefix", "nameSuffix", "patches", "patchesStrategicMerge", "patchesJson6902", "generatorOptions");
+    private static final String BEHAVIOR_REPLACE = "replace";
+    private static final String REMOTE = "://";
+
+    private static final String MSG_NOT_MAPPING = "The kustomization [%s] is not a YAML mapping.";
+    private static final String MSG_NOT_LIST = "The [%s] field of kustomization [%s] is not a list.";
+    private static final String MSG_CYCLE = "The kustomization [%s] includes itself.";
+    private static final String MSG_REMOTE = "Remote kustomize resources are not supported, [%s].";
+    private static final String MSG_NOT_FOUND = "Unable to read kustomize resource, [%s], file not found.";
+    private static final String MSG_NO_NAME = "A generator of kustomization [%s] has no name.";
+    private static final String MSG_INVALID_SOURCE = "Invalid generator source [%s] in kustomization [%s].";
+    private static final String MSG_DUPLICATE_KEY = "The generator [%s] defines the key [%s] more than once.";
+    private static final String MSG_UNSUPPORTED = "The kustomization [%s] uses %s, which is not supported and is ignored.";
+    private static final String MSG_BINARY_VALUE = "The generated ConfigMap value of key [%s] is binary data and is not injected as an environment variable.";
+
+    private final FileLoader loader;
+
+    /**
+     * @param loader loads files by path, paths are those of the kustomization joined with relative references
+     */
+    public KustomizationReader(FileLoader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * @param path configuration file path
+     * @return true if the file name is one kustomize recognizes as a kustomization
+     */
+    public static boolean isKustomization(@Nullable String path) {
+        return path != null && FILE_NAMES.contains(getFileName(path));
+    }
+
+    /**
+     * Loads a kustomization and every file its build depends on.
+     *
+     * @param path kustomization file path
+     * @return build inputs ready to be fingerprinted and built
+     * @throws FileNotFoundException    if the kustomization or a file it references does not exist
+     * @throws IllegalArgumentException if a kustomization is invalid, includes itself or references remote resources
+     */
+    public Build read(String path) throws IOException {
+        Build build = new Build();
+        readKustomization(normalize(path), load(build, normalize(path)), new HashSet<>(), build);
+        return build;
+    }
+
+    private void readKustomization(String path, byte[] content, Set<String> visiting, Build build) throws IOException {
+        if (!visiting.add(path)) {
+            throw new IllegalArgumentException(String.format(MSG_CYCLE, path));
+        }
+        Map<String, Object> kustomization = getMapping(content, path);
+        List<String> unsupported = new ArrayList<>(UNSUPPORTED_KEYS);
+        unsupported.retainAll(kustomization.keySet());
+        if (!unsupported.isEmpty()) {
+            logger.warn(String.format(MSG_UNSUPPORTED, path, unsupported));
+        }
+        String directory = getDirectory(path);
+        List<Object> resources = new ArrayList<>(getList(kustomization, KEY_RESOURCES, path));
+        resources.addAll(getList(kustomization, KEY_BASES, path));
+        for (Object resource : resources) {
+            readResource(String.valueOf(resource), directory, visiting, build);
+        }
+        for (Object generator : getList(kustomization, KEY_CONFIGMAP_GENERATOR, path)) {
+            build.steps.add(readGenerator(ConfigParser.Kind.CONFIGMAP, generator, path, build));
+        }
+        for (Object generator : getList(kustomization, KEY_SECRET_GENERATOR, path)) {
+            build.steps.add(readGenerator(ConfigParser.Kind.SECRET, generator, path, build));
+        }
+        visiting.remove(path);
+    }
+
+    private void readResource(String reference, String directory, Set<String> visiting, Build build) throws IOException {
+        if (reference.contains(REMOTE)) {
+            throw new IllegalArgumentException(String.format(MSG_REMOTE, reference));
+        }
+        String path = resolve(directory, reference);
+        byte[] content = loader.load(path);
+        if (content != null && !isKustomization(path)) {
+            build.inputs.put(path, content);
+            build.steps.add(new Resource(content));
+            return;
+        }
+        if (content != null) {
+            build.inputs.put(path, content);
+            readKustomization(path, content, visiting, build);
+            return;
+        }
+        for (String name : FILE_NAMES) {
+            String candidate = path + "/" + name;
+            content = loader.load(candidate);
+            if (content != null) {
+                build.inputs.put(candidate, content);
+                readKustomization(candidate, content, visiting, build);
+                return;
+            }
+        }
+        throw new FileNotFoundException(String.format(MSG_NOT_FOUND, path));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Generator readGenerator(ConfigParser.Kind kind, Object value, String path, Build build) throws IOException {
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException(String.format(MSG_INVALID_SOURCE, value, path));
+        }
+        Map<String, Object> generator = (Map<String, Object>) value;
+        Object name = generator.get(KEY_NAME);
+        if (name == null) {
+            throw new IllegalArgumentException(String.format(MSG_NO_NAME, path));
+        }
+        String directory = getDirectory(path);
+        Generator result = new Generator(kind, String.valueOf(name), BEHAVIOR_REPLACE.equals(generator.get(KEY_BEHAVIOR)));
+        List<Object> envs = new ArrayList<>(getList(generator, KEY_ENVS, path));
+        if (generator.get(KEY_ENV) != null) {
+            envs.add(generator.get(KEY_ENV));
+        }
+        for (Object env : envs) {
+            byte[] content = load(build, resolve(directory, String.valueOf(env)));
+            EnvFileParser parser = new EnvFileParser();
+            build.environment.putAll(parser.getEnvironment(content));
+            parser.parse(content).forEach(result::putText);
+        }
+        for (Object file : getList(generator, KEY_FILES, path)) {
+            String source = String.valueOf(file);
+            int separator = source.indexOf('=');
+            String reference = separator < 0 ? source : source.substring(separator + 1);
+            String key = separator < 0 ? getFileName(reference) : source.substring(0, separator);
+            if (key.isEmpty() || reference.isEmpty()) {
+                throw new IllegalArgumentException(String.format(MSG_INVALID_SOURCE, source, path));
+            }
+            result.putFile(key, load(build, resolve(directory, reference)));
+        }
+        for (Object literal : getList(generator, KEY_LITERALS, path)) {
+            String source = String.valueOf(literal);
+            int separator = source.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException(String.format(MSG_INVALID_SOURCE, source, path));
+            }
+            result.putText(source.substring(0, separator), unquote(source.substring(separator + 1)));
+        }
+        return result;
+    }
+
+    private byte[] load(Build build, String path) throws IOException {
+        byte[] content = loader.load(path);
+        if (content == null) {
+            throw new FileNotFoundException(String.format(MSG_NOT_FOUND, path));
+        }
+        build.inputs.put(path, content);
+        return content;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getMapping(byte[] content, String path) {
+        Object document = new Yaml(new SafeConstructor()).load(new UnicodeReader(new ByteArrayInputStream(content)));
+        if (document == null) {
+            return Collections.emptyMap();
+        }
+        if (!(document instanceof Map)) {
+            throw new IllegalArgumentException(String.format(MSG_NOT_MAPPING, path));
+        }
+        return (Map<String, Object>) document;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> getList(Map<String, Object> source, String key, String path) {
+        Object value = source.get(key);
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException(String.format(MSG_NOT_LIST, key, path));
+        }
+        return (List<Object>) value;
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2) {
+            char first = value.charAt(0);
+            if ((first == '"' || first == '\'') && value.charAt(value.length() - 1) == first) {
+                return value.substring(1, value.length() - 1);
+            }
+        }
+        return value;
+    }
+
+    static String resolve(String directory, String reference) {
+        String path = reference.replace('\\', '/');
+        boolean absolute = path.startsWith("/") || (path.length() > 1 && path.charAt(1) == ':');
+        return normalize(absolute || directory.isEmpty() ? path : directory + "/" + path);
+    }
+
+    static String normalize(String path) {
+        String separated = path.replace('\\', '/');
+        List<String> segments = new ArrayList<>();
+        for (String segment : separated.split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..") && !segments.isEmpty() && !segments.get(segments.size() - 1).equals("..")) {
+                segments.remove(segments.size() - 1);
+            } else {
+                segments.add(segment);
+            }
+        }
+        return (separated.startsWith("/") ? "/" : "") + String.join("/", segments);
+    }
+
+    private static String getDirectory(String path) {
+        int separator = path.lastIndexOf('/');
+        return separator < 0 ? "" : path.substring(0, separator);
+    }
+
+    private static String getFileName(String path) {
+        String separated = path.replace('\\', '/');
+        return separated.substring(separated.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Loads files referenced by a kustomization.
+     */
+    @FunctionalInterface
+    public interface FileLoader {
+
+        /**
+         * @param path file path
+         * @return file content, or null if the path does not exist or is a directory
+         * @throws IOException if the file exists but cannot be read
+         */
+        @Nullable
+        byte[] load(String path) throws IOException;
+
+    }
+
+    /**
+     * Files a kustomization build depends on, with the steps that build layers from them.
+     */
+    public static final class Build {
+
+        private final Map<String, byte[]> inputs = new LinkedHashMap<>();
+        private final Map<String, String> environment = new TreeMap<>();
+        private final List<Step> steps = new ArrayList<>();
+
+        private Build() {
+        }
+
+        /**
+         * @return unmodifiable map of every loaded file path to its content, in load order
+         */
+        public Map<String, byte[]> getInputs() {
+            return Collections.unmodifiableMap(inputs);
+        }
+
+        /**
+         * @return unmodifiable map of the values env files took from the environment of the IDE, sorted by key
+         */
+        public Map<String, String> getEnvironment() {
+            return Collections.unmodifiableMap(environment);
+        }
+
+        /**
+         * Parses resources and runs generators.
+         *
+         * @param parsers parsers by supported kind, resources of other kinds are skipped
+         * @param name    resource name filter, or null to build every ConfigMap and Secret
+         * @return layers in kustomize precedence order, from generic to specific
+         * @throws IllegalArgumentException if a manifest cannot be parsed
+         */
+        public List<Map<String, String>> getLayers(Map<String, ConfigParser> parsers, @Nullable String name) {
+            List<Map<String, String>> result = new ArrayList<>();
+            build(parsers, name, false).forEach(layer -> result.add(layer.values));
+            return result;
+        }
+
+        /**
+         * Parses resources and runs generators for a volume mount, binary values are included.
+         *
+         * @param parsers parsers by supported kind, resources of other kinds are skipped
+         * @param name    resource name filter, or null to build every ConfigMap and Secret
+         * @return volume layers in kustomize precedence order, from generic to specific
+         * @throws IllegalArgumentException if a manifest cannot be parsed
+         */
+        public List<SecretData> getVolumes(Map<String, ConfigParser> parsers, @Nullable String name) {
+            List<SecretData> result = new ArrayList<>();
+            build(parsers, name, true).forEach(layer -> result.add((SecretData) layer.values));
+            return result;
+        }
+
+        private List<Layer> build(Map<String, ConfigParser> parsers, @Nullable String name, boolean volume) {
+            List<Layer> layers = new ArrayList<>();
+            for (Step step : steps) {
+                step.apply(layers, parsers, name, volume);
+            }
+            return layers;
+        }
+
+    }
+
+    /**
+     * Build step adding layers.
+     */
+    private interface Step {
+
+        void apply(List<Layer> layers, Map<String, ConfigParser> parsers, @Nullable String name, boolean volume);
+
+    }
+
+    /**
+     * Manifest file listed as a resource.
+     */
+    private static final class Resource implements Step {
+
+        private final byte[] content;
+
+        Resource(byte[] content) {
+            this.content = content;
+        }
+
+        @Override
+        public void apply(List<Layer> layers, Map<String, ConfigParser> parsers, @Nullable String name, boolean volume) {
+            // a name filter is always passed so that the reader reports the name of every manifest
+            Predicate<Object> names = value -> name == null || name.equals(value);
+            for (Map<String, Object> document : new ManifestReader().readAll(content, parsers::containsKey, names)) {
+                Object kind = document.get(ConfigParser.KEY_KIND);
+                ConfigParser parser = parsers.get(kind);
+                if (parser != null) {
+                    Object manifestName = ManifestReader.getName(document);
+                    layers.add(new Layer(String.valueOf(kind), manifestName == null ? null : String.valueOf(manifestName),
+                            volume ? parser.parseVolume(document) : parser.parse(document)));
+                }
+            }
+        }
+
+    }
+
+    /**
+     * ConfigMap or Secret generator.
+     */
+    private static final class Generator implements Step {
+
+        private final ConfigParser.Kind kind;
+        private final String name;
+        private final boolean replace;
+        private final Map<String, String> plain = new HashMap<>();
+        private final Map<String, Object> encoded = new HashMap<>();
+
+        Generator(ConfigParser.Kind kind, String name, boolean replace) {
+            this.kind = kind;
+            this.name = name;
+            this.replace = replace;
+        }
+
+        void putText(String key, String value) {
+            if (plain.put(key, value) != null || encoded.containsKey(key)) {
+                throw new IllegalArgumentException(String.format(MSG_DUPLICATE_KEY, name, key));
+            }
+        }
+
+        void putFile(String key, byte[] content) {
+            if (SecretDecoder.isText(content, content.length)) {
+                putText(key, new String(content, StandardCharsets.UTF_8));
+            } else if (plain.containsKey(key) || encoded.put(key, Base64.getEncoder().encodeToString(content)) != null) {
+                throw new IllegalArgumentException(String.format(MSG_DUPLICATE_KEY, name, key));
+            }
+        }
+
+        @Override
+        public void apply(List<Layer> layers, Map<String, ConfigParser> parsers, @Nullable String filter, boolean volume) {
+            if (!parsers.containsKey(kind.getKey()) || (filter != null && !filter.equals(name))) {
+                return;
+            }
+            if (replace) {
+                layers.removeIf(layer -> layer.kind.equals(kind.getKey()) && Objects.equals(layer.name, name));
+            }
+            if (volume || (kind == ConfigParser.Kind.SECRET && !encoded.isEmpty())) {
+                layers.add(new Layer(kind.getKey(), name, new SecretData(encoded, plain)));
+                return;
+            }
+            encoded.keySet().forEach(key -> logger.info(String.format(MSG_BINARY_VALUE, key)));
+            layers.add(new Layer(kind.getKey(), name, Collections.unmodifiableMap(plain)));
+        }
+
+    }
+
+    /**
+     * Layer with the kind and name of the resource it was built from.
+     */
+    private static final class Layer {
+
+        private final String kind;
+        private final String name;
+        private final Map<String, String> values;
+
+        Layer(String kind, @Nullable String name, Map<String, String> values) {
+            this.kind = kind;
+            this.name = name;
+            this.values = values;
+        }
+
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merged configuration layers that can be updated incrementally.
+ * <p>
+ * Each parsed layer is kept together with an index of the layer that wins each key. Replacing a layer re-resolves only the
+ * keys of the old and new layer, lower layers are only consulted for keys the layer no longer provides. Moving a layer
+ * re-resolves only the keys of the moved layer, the relative order of every other layer is unchanged. Results always match
+ * {@link ConfigLayers#merge(List)} over the current layers, off-heap values included.
+ * </p>
+ * <p>
+ * An index is not thread safe.
+ * </p>
+ */
+public final class LayerIndex {
+
+    private final List<Layer> layers = new ArrayList<>();
+    private final Map<String, Layer> winners = new HashMap<>();
+    private final Map<String, Object> result = new HashMap<>();
+
+    /**
+     * @param layers parsed layers from generic to specific
+     * @throws ConfigLayers.MergeException if a winning value cannot be decoded
+     */
+    public LayerIndex(List<? extends Map<String, String>> layers) {
+        for (int i = 0; i < layers.size(); i++) {
+            this.layers.add(new Layer(layers.get(i), i));
+        }
+        for (int i = this.layers.size() - 1; i >= 0; i--) {
+            Layer layer = this.layers.get(i);
+            for (String key : layer.getKeys()) {
+                if (!winners.containsKey(key)) {
+                    put(key, layer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the index so it can be updated while this index stays unchanged, parsed layers are shared.
+     *
+     * @return independent index over the same layers
+     */
+    public LayerIndex copy() {
+        LayerIndex copy = new LayerIndex(new ArrayList<Map<String, String>>());
+        Map<Layer, Layer> copies = new IdentityHashMap<>();
+        for (Layer layer : layers) {
+            Layer moved = new Layer(layer.values, layer.position);
+            copies.put(layer, moved);
+            copy.layers.add(moved);
+        }
+        winners.forEach((key, layer) -> copy.winners.put(key, copies.get(layer)));
+        copy.result.putAll(result);
+        return copy;
+    }
+
+    /**
+     * @return copy of the merged key/value pairs
+     */
+    public CompactMap getResult() {
+        CompactMap.Builder builder = new CompactMap.Builder(result.size());
+        result.forEach(builder::putSlot);
+        return builder.build();
+    }
+
+    /**
+     * @return copy of the parsed layers in position order
+     */
+    public List<Map<String, String>> getLayers() {
+        List<Map<String, String>> result = new ArrayList<>(layers.size());
+        layers.forEach(layer -> result.add(layer.values));
+        return result;
+    }
+
+    /**
+     * @return number of layers
+     */
+    public int size() {
+        return layers.size();
+    }
+
+    /**
+     * Replaces a layer, re-resolving only the keys it held before or holds now.
+     *
+     * @param index  position of the layer
+     * @param values new parsed layer
+     * @throws ConfigLayers.MergeException if a winning value cannot be decoded
+     */
+    public void replace(int index, Map<String, String> values) {
+        Layer layer = new Layer(values, index);
+        Layer previous = layers.set(index, layer);
+        for (String key : layer.getKeys()) {
+            Layer winner = winners.get(key);
+            if (winner == null || winner == previous || winner.position < index) {
+                put(key, layer);
+            }
+        }
+        for (String key : previous.getKeys()) {
+            if (winners.get(key) == previous) {
+                resolve(key, index - 1);
+            }
+        }
+    }
+
+    /**
+     * Moves a layer to another position, re-resolving only the keys of the moved layer.
+     *
+     * @param from current position of the layer
+     * @param to   new position of the layer
+     * @throws ConfigLayers.MergeException if a winning value cannot be decoded
+     */
+    public void move(int from, int to) {
+        if (from == to) {
+            return;
+        }
+        Layer layer = layers.remove(from);
+        layers.add(to, layer);
+        for (int i = Math.min(from, to); i <= Math.max(from, to); i++) {
+            layers.get(i).position = i;
+        }
+        for (String key : layer.getKeys()) {
+            resolve(key, layers.size() - 1);
+        }
+    }
+
+    private void resolve(String key, int from) {
+        for (int i = from; i >= 0; i--) {
+            Layer layer = layers.get(i);
+            if (layer.getKeys().contains(key)) {
+                put(key, layer);
+                return;
+            }
+        }
+        winners.remove(key);
+        result.remove(key);
+    }
+
+    private void put(String key, Layer layer) {
+        Object value = ConfigLayers.getSlot(layer.values, key, layer.position);
+        winners.put(key, layer);
+        if (value == null) {
+            result.remove(key);
+        } else {
+            result.put(key, value);
+        }
+    }
+
+    /**
+     * Parsed layer at a position, distinct even if the same parsed result is used at several positions.
+     */
+    private static final class Layer {
+
+        private final Map<String, String> values;
+        private int position;
+
+        Layer(Map<String, String> values, int position) {
+            this.values = values;
+            this.position = position;
+        }
+
+        Set<String> getKeys() {
+            return ConfigLayers.getKeys(values);
+        }
+
+    }
+
+}
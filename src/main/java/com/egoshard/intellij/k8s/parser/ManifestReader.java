@@ -0,0 +1,617 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import com.google.common.collect.ImmutableSet;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.Constructor;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.NodeEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.nodes.MappingNode;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.NodeTuple;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.SequenceNode;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.reader.UnicodeReader;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Streams Kubernetes manifests through the SnakeYAML event API and extracts only the top level sections consumed by parsers.
+ * <p>
+ * The {@code kind}, {@code data}, {@code stringData} and {@code binaryData} sections are composed and constructed exactly as
+ * {@link Yaml#load} would construct them. Every other section, such as {@code metadata.annotations}, is skipped event by event
+ * without building nodes or objects for it. Documents this reader cannot extract faithfully, for instance those with aliases to
+ * skipped sections or merge keys at the top level, are loaded in full instead.
+ * </p>
+ * <p>
+ * When the fast path is enabled, flat manifests are first offered to the {@link FlatManifestScanner}, which bypasses SnakeYAML
+ * entirely for the shapes it supports.
+ * </p>
+ * <p>
+ * Multi-document streams and {@code kind: List} containers are read one manifest at a time by {@link #readAll}. Manifests
+ * whose kind or name is rejected are skipped as soon as it is known, so only the current manifest is ever held in memory.
+ * Container items that precede the kind, as they do in {@code kubectl} output, are skipped and the document is streamed again
+ * once its kind is known to be a list.
+ * </p>
+ */
+public class ManifestReader {
+
+    private static final String MSG_NOT_MAPPING = "The provided configuration is not a YAML mapping.";
+    private static final String KEY_ITEMS = "items";
+    private static final String KEY_METADATA = "metadata";
+    private static final String KEY_NAME = "name";
+    private static final String KIND_LIST = "List";
+    private static final Set<String> SELECTED_KEYS = ImmutableSet.of(
+            ConfigParser.KEY_KIND,
+            AbstractParser.KEY_DATA,
+            SecretParser.KEY_STRING_DATA,
+            AbstractParser.KEY_BINARY_DATA
+    );
+
+    private final Resolver resolver = new Resolver();
+    private final boolean fastPath;
+
+    public ManifestReader() {
+        this(true);
+    }
+
+    /**
+     * @param fastPath true to try the flat manifest scanner before SnakeYAML
+     */
+    public ManifestReader(boolean fastPath) {
+        this.fastPath = fastPath;
+    }
+
+    /**
+     * Extracts the parser relevant sections of a single YAML document.
+     *
+     * @param content YAML file content
+     * @return map of extracted top level sections, or null if the document is empty
+     * @throws IllegalArgumentException if the document is not a YAML mapping
+     */
+    public Map<String, Object> read(byte[] content) {
+        if (fastPath) {
+            Map<String, Object> scanned = new FlatManifestScanner().scan(ByteBuffer.wrap(content));
+            if (scanned != null) {
+                return scanned;
+            }
+        }
+        try {
+            Iterator<Event> events = new Yaml().parse(new UnicodeReader(new ByteArrayInputStream(content))).iterator();
+            next(events, Event.ID.StreamStart);
+            Event event = events.next();
+            if (event.is(Event.ID.StreamEnd)) {
+                return null;
+            }
+            Map<String, Object> result = readDocument(events);
+            if (!events.next().is(Event.ID.StreamEnd)) {
+                throw new FallbackException();
+            }
+            return result;
+        } catch (FallbackException e) {
+            return load(content);
+        }
+    }
+
+    /**
+     * Lazily extracts the parser relevant sections of every manifest in a YAML stream.
+     *
+     * @param content YAML file content
+     * @param kinds   filter accepting the kinds of manifests to extract
+     * @return iterable of extracted top level sections, one map per accepted manifest
+     * @throws IllegalArgumentException during iteration, if a manifest is not a YAML mapping
+     * @see #readAll(byte[], Predicate, Predicate)
+     */
+    public Iterable<Map<String, Object>> readAll(byte[] content, Predicate<Object> kinds) {
+        return readAll(content, kinds, null);
+    }
+
+    /**
+     * Lazily extracts the parser relevant sections of every manifest in a YAML stream.
+     * <p>
+     * Documents are read as the returned iterable is traversed. A document of a list kind, such as the {@code kind: List}
+     * produced by {@code kubectl get -o yaml}, is a container and the items of its top level {@code items} sequence are streamed
+     * one at a time in its place. The {@code items} of any other kind, such as a custom resource, are not manifests. Empty manifests are omitted, as are manifests whose kind or {@code metadata.name} is rejected by the provided
+     * filters. Manifests without a kind are returned for the caller to handle. With a name filter, the name of each returned
+     * manifest is available through {@link #getName(Map)}.
+     * </p>
+     *
+     * @param content YAML file content
+     * @param kinds   filter accepting the kinds of manifests to extract
+     * @param names   filter accepting the names of manifests to extract, or null to accept any name
+     * @return iterable of extracted top level sections, one map per accepted manifest
+     * @throws IllegalArgumentException during iteration, if a manifest is not a YAML mapping
+     */
+    public Iterable<Map<String, Object>> readAll(byte[] content, Predicate<Object> kinds, Predicate<Object> names) {
+        if (fastPath && names == null) {
+            Map<String, Object> scanned = new FlatManifestScanner().scan(ByteBuffer.wrap(content));
+            if (scanned != null && !isListKind(scanned.get(ConfigParser.KEY_KIND))) {
+                return isAccepted(scanned, kinds, null) ? Collections.singletonList(scanned) : Collections.emptyList();
+            }
+        }
+        return () -> new DocumentIterator(content, kinds, names);
+    }
+
+    private Map<String, Object> readDocument(Iterator<Event> events) {
+        Event root = events.next();
+        if (!isMapping(root)) {
+            throw new FallbackException();
+        }
+        Manifest manifest = new Manifest(new HashMap<>(), false);
+        readEntries(events, manifest, null, null);
+        next(events, Event.ID.DocumentEnd);
+        return manifest.sections;
+    }
+
+    /**
+     * Reads the entries of a manifest mapping up to its end, or up to the start of the items sequence of a container.
+     *
+     * @return true if reading stopped at the start of container items
+     */
+    private boolean readEntries(Iterator<Event> events, Manifest manifest, Predicate<Object> kinds, Predicate<Object> names) {
+        Event key = events.next();
+        while (!key.is(Event.ID.MappingEnd)) {
+            if (!key.is(Event.ID.Scalar)) {
+                throw new FallbackException();
+            }
+            String name = ((ScalarEvent) key).getValue();
+            Event value = events.next();
+            if (SELECTED_KEYS.contains(name)) {
+                manifest.sections.put(name, new SubtreeConstructor().construct(compose(value, events, manifest.anchors)));
+                if (ConfigParser.KEY_KIND.equals(name) && !manifest.isContainerKind() && kinds != null
+                        && !kinds.test(manifest.getKind())) {
+                    return reject(events, manifest);
+                }
+            } else if (isMerge((ScalarEvent) key)) {
+                throw new FallbackException();
+            } else if (KEY_ITEMS.equals(name) && manifest.isContainerKind() && value.is(Event.ID.SequenceStart)) {
+                if (!isDefaultTag(((CollectionStartEvent) value).getTag())) {
+                    throw new FallbackException();
+                }
+                manifest.container = true;
+                return true;
+            } else if (KEY_ITEMS.equals(name) && manifest.topLevel && manifest.getKind() == null) {
+                // whether these are manifests depends on a kind not read yet, a container is streamed again once it is
+                manifest.deferred = true;
+                skip(value, events);
+            } else if (KEY_METADATA.equals(name) && names != null && value.is(Event.ID.MappingStart)) {
+                manifest.name = readName(events);
+                if ((!manifest.topLevel || manifest.isKnownKind()) && !names.test(manifest.name)) {
+                    return reject(events, manifest);
+                }
+            } else {
+                skip(value, events);
+            }
+            key = events.next();
+        }
+        if (names != null && !manifest.container && !names.test(manifest.name)) {
+            manifest.rejected = true;
+        }
+        return false;
+    }
+
+    private boolean reject(Iterator<Event> events, Manifest manifest) {
+        Event key = events.next();
+        while (!key.is(Event.ID.MappingEnd)) {
+            skip(key, events);
+            skip(events.next(), events);
+            key = events.next();
+        }
+        manifest.rejected = true;
+        return false;
+    }
+
+    private Object readName(Iterator<Event> events) {
+        Object name = null;
+        Event key = events.next();
+        while (!key.is(Event.ID.MappingEnd)) {
+            if (!key.is(Event.ID.Scalar)) {
+                throw new FallbackException();
+            }
+            Event value = events.next();
+            if (KEY_NAME.equals(((ScalarEvent) key).getValue()) && value.is(Event.ID.Scalar)) {
+                name = ((ScalarEvent) value).getValue();
+            } else {
+                skip(value, events);
+            }
+            key = events.next();
+        }
+        return name;
+    }
+
+    private Node compose(Event event, Iterator<Event> events, Map<String, Node> anchors) {
+        if (event.is(Event.ID.Alias)) {
+            Node node = anchors.get(((AliasEvent) event).getAnchor());
+            if (node == null) {
+                throw new FallbackException();
+            }
+            return node;
+        }
+        Node node;
+        if (event.is(Event.ID.Scalar)) {
+            ScalarEvent scalar = (ScalarEvent) event;
+            boolean resolved = isDefaultTag(scalar.getTag());
+            Tag tag = resolved
+                    ? resolver.resolve(NodeId.scalar, scalar.getValue(), scalar.getImplicit().canOmitTagInPlainScalar())
+                    : new Tag(scalar.getTag());
+            node = new ScalarNode(tag, resolved, scalar.getValue(), scalar.getStartMark(), scalar.getEndMark(), scalar.getScalarStyle());
+            register(scalar, node, anchors);
+        } else if (event.is(Event.ID.SequenceStart)) {
+            CollectionStartEvent start = (CollectionStartEvent) event;
+            boolean resolved = isDefaultTag(start.getTag());
+            Tag tag = resolved ? resolver.resolve(NodeId.sequence, null, start.getImplicit()) : new Tag(start.getTag());
+            List<Node> items = new ArrayList<>();
+            SequenceNode sequence = new SequenceNode(tag, resolved, items, start.getStartMark(), null, start.getFlowStyle());
+            register(start, sequence, anchors);
+            Event item = events.next();
+            while (!item.is(Event.ID.SequenceEnd)) {
+                items.add(compose(item, events, anchors));
+                item = events.next();
+            }
+            sequence.setEndMark(item.getEndMark());
+            node = sequence;
+        } else {
+            CollectionStartEvent start = (CollectionStartEvent) event;
+            boolean resolved = isDefaultTag(start.getTag());
+            Tag tag = resolved ? resolver.resolve(NodeId.mapping, null, start.getImplicit()) : new Tag(start.getTag());
+            List<NodeTuple> tuples = new ArrayList<>();
+            MappingNode mapping = new MappingNode(tag, resolved, tuples, start.getStartMark(), null, start.getFlowStyle());
+            register(start, mapping, anchors);
+            Event key = events.next();
+            while (!key.is(Event.ID.MappingEnd)) {
+                Node keyNode = compose(key, events, anchors);
+                if (Tag.MERGE.equals(keyNode.getTag())) {
+                    mapping.setMerged(true);
+                }
+                tuples.add(new NodeTuple(keyNode, compose(events.next(), events, anchors)));
+                key = events.next();
+            }
+            mapping.setEndMark(key.getEndMark());
+            node = mapping;
+        }
+        return node;
+    }
+
+    private void skip(Event event, Iterator<Event> events) {
+        int depth = event.is(Event.ID.SequenceStart) || event.is(Event.ID.MappingStart) ? 1 : 0;
+        while (depth > 0) {
+            Event next = events.next();
+            if (next.is(Event.ID.SequenceStart) || next.is(Event.ID.MappingStart)) {
+                depth++;
+            } else if (next.is(Event.ID.SequenceEnd) || next.is(Event.ID.MappingEnd)) {
+                depth--;
+            }
+        }
+    }
+
+    private void skipDocument(Iterator<Event> events) {
+        Event event = events.next();
+        while (!event.is(Event.ID.DocumentEnd)) {
+            event = events.next();
+        }
+    }
+
+    private void register(NodeEvent event, Node node, Map<String, Node> anchors) {
+        if (event.getAnchor() != null) {
+            anchors.put(event.getAnchor(), node);
+        }
+    }
+
+    private boolean isMerge(ScalarEvent event) {
+        return isDefaultTag(event.getTag())
+                && Tag.MERGE.equals(resolver.resolve(NodeId.scalar, event.getValue(), event.getImplicit().canOmitTagInPlainScalar()));
+    }
+
+    private static boolean isMapping(Event event) {
+        return event.is(Event.ID.MappingStart) && isDefaultTag(((CollectionStartEvent) event).getTag());
+    }
+
+    private static boolean isAccepted(Map<String, Object> document, Predicate<Object> kinds, Predicate<Object> names) {
+        return !document.isEmpty()
+                && (kinds == null || !document.containsKey(ConfigParser.KEY_KIND) || kinds.test(document.get(ConfigParser.KEY_KIND)))
+                && (names == null || names.test(getName(document)));
+    }
+
+    /**
+     * @param document manifest returned by {@link #readAll(byte[], Predicate, Predicate)} with a name filter
+     * @return {@code metadata.name} of the manifest, or null if it has none
+     */
+    static Object getName(Map<String, Object> document) {
+        Object metadata = document.get(KEY_METADATA);
+        return metadata instanceof Map ? ((Map<?, ?>) metadata).get(KEY_NAME) : null;
+    }
+
+    private static boolean isListKind(Object kind) {
+        return kind instanceof String && ((String) kind).endsWith(KIND_LIST);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> toManifest(Object item) {
+        if (!(item instanceof Map)) {
+            throw new IllegalArgumentException(MSG_NOT_MAPPING);
+        }
+        return (Map<String, Object>) item;
+    }
+
+    private static boolean isDefaultTag(String tag) {
+        return tag == null || "!".equals(tag);
+    }
+
+    private static void next(Iterator<Event> events, Event.ID expected) {
+        if (!events.next().is(expected)) {
+            throw new FallbackException();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> load(byte[] content) {
+        Object document = new Yaml().load(new ByteArrayInputStream(content));
+        if (document != null && !(document instanceof Map)) {
+            throw new IllegalArgumentException(MSG_NOT_MAPPING);
+        }
+        return (Map<String, Object>) document;
+    }
+
+    /**
+     * Loads a single document of a stream in full, composing but not constructing the documents preceding it.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> load(byte[] content, int index) {
+        Iterator<Node> nodes = new Yaml().composeAll(new UnicodeReader(new ByteArrayInputStream(content))).iterator();
+        for (int i = 0; i < index && nodes.hasNext(); i++) {
+            nodes.next();
+        }
+        Node node = nodes.hasNext() ? nodes.next() : null;
+        Object document = node == null ? null : new SubtreeConstructor().construct(node);
+        if (document != null && !(document instanceof Map)) {
+            throw new IllegalArgumentException(MSG_NOT_MAPPING);
+        }
+        return (Map<String, Object>) document;
+    }
+
+    /**
+     * Sections of a single manifest, extracted while its events are streamed.
+     */
+    private static class Manifest {
+
+        private final Map<String, Object> sections = new LinkedHashMap<>();
+        private final Map<String, Node> anchors;
+        private final boolean topLevel;
+        private Object name;
+        private boolean container;
+        private boolean deferred;
+        private boolean rejected;
+
+        Manifest(Map<String, Node> anchors, boolean topLevel) {
+            this.anchors = anchors;
+            this.topLevel = topLevel;
+        }
+
+        Object getKind() {
+            return sections.get(ConfigParser.KEY_KIND);
+        }
+
+        boolean isContainerKind() {
+            return topLevel && isListKind(getKind());
+        }
+
+        boolean isKnownKind() {
+            return sections.containsKey(ConfigParser.KEY_KIND) && !isContainerKind();
+        }
+
+        Map<String, Object> getResult() {
+            if (rejected || container || sections.isEmpty()) {
+                return null;
+            }
+            if (name != null) {
+                sections.put(KEY_METADATA, Collections.singletonMap(KEY_NAME, name));
+            }
+            return sections;
+        }
+
+    }
+
+    /**
+     * Reads the manifests of a stream on demand.
+     * <p>
+     * Container items are streamed from the event stream one at a time. If a container needs a full load, its remaining items
+     * are served from the loaded document instead.
+     * </p>
+     */
+    private class DocumentIterator implements Iterator<Map<String, Object>> {
+
+        private final byte[] content;
+        private final Predicate<Object> kinds;
+        private final Predicate<Object> names;
+        private Iterator<Event> events;
+        private Map<String, Object> next;
+        private Iterator<Map<String, Object>> loaded;
+        private Manifest container;
+        private int index = -1;
+        private int item;
+        private boolean done;
+
+        DocumentIterator(byte[] content, Predicate<Object> kinds, Predicate<Object> names) {
+            this.content = content;
+            this.kinds = kinds;
+            this.names = names;
+            this.events = new Yaml().parse(new UnicodeReader(new ByteArrayInputStream(content))).iterator();
+            this.events.next();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !done) {
+                advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public Map<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map<String, Object> result = next;
+            next = null;
+            return result;
+        }
+
+        private void advance() {
+            if (loaded != null) {
+                if (loaded.hasNext()) {
+                    next = loaded.next();
+                } else {
+                    loaded = null;
+                }
+                return;
+            }
+            try {
+                if (container != null) {
+                    advanceItem();
+                } else if (events.next().is(Event.ID.StreamEnd)) {
+                    done = true;
+                } else {
+                    index++;
+                    item = 0;
+                    if (!isMapping(events.next())) {
+                        throw new FallbackException();
+                    }
+                    Manifest manifest = new Manifest(new HashMap<>(), true);
+                    boolean streaming = readEntries(events, manifest, kinds, names);
+                    if (manifest.deferred && manifest.isContainerKind()) {
+                        manifest = restart(manifest.getKind());
+                        streaming = readEntries(events, manifest, kinds, names);
+                    }
+                    if (streaming) {
+                        container = manifest;
+                    } else {
+                        finish(manifest);
+                    }
+                }
+            } catch (FallbackException e) {
+                skipDocument(events);
+                loaded = getLoaded(load(content, index));
+                container = null;
+            }
+        }
+
+        private void advanceItem() {
+            Event event = events.next();
+            if (event.is(Event.ID.SequenceEnd)) {
+                if (!readEntries(events, container, kinds, names)) {
+                    Manifest manifest = container;
+                    container = null;
+                    finish(manifest);
+                }
+                return;
+            }
+            if (!isMapping(event)) {
+                throw new FallbackException();
+            }
+            Manifest manifest = new Manifest(container.anchors, false);
+            readEntries(events, manifest, kinds, names);
+            item++;
+            next = manifest.getResult();
+        }
+
+        /**
+         * Streams the current document again from its start, for a container whose items were skipped before its kind was read.
+         *
+         * @param kind container kind
+         * @return manifest of the document, already holding its kind
+         */
+        private Manifest restart(Object kind) {
+            events = new Yaml().parse(new UnicodeReader(new ByteArrayInputStream(content))).iterator();
+            events.next();
+            for (int i = 0; i < index; i++) {
+                events.next();
+                skipDocument(events);
+            }
+            events.next();
+            if (!isMapping(events.next())) {
+                throw new FallbackException();
+            }
+            Manifest manifest = new Manifest(new HashMap<>(), true);
+            manifest.sections.put(ConfigParser.KEY_KIND, kind);
+            return manifest;
+        }
+
+        private void finish(Manifest manifest) {
+            ManifestReader.next(events, Event.ID.DocumentEnd);
+            next = manifest.getResult();
+        }
+
+        private Iterator<Map<String, Object>> getLoaded(Map<String, Object> document) {
+            if (document == null) {
+                return Collections.emptyIterator();
+            }
+            Object items = document.get(KEY_ITEMS);
+            if (items instanceof List && isListKind(document.get(ConfigParser.KEY_KIND))) {
+                List<?> list = (List<?>) items;
+                return list.subList(Math.min(item, list.size()), list.size()).stream()
+                        .map(ManifestReader::toManifest)
+                        .filter(manifest -> isAccepted(manifest, kinds, names))
+                        .iterator();
+            }
+            return isAccepted(document, kinds, names)
+                    ? Collections.singletonList(document).iterator()
+                    : Collections.emptyIterator();
+        }
+
+    }
+
+    /**
+     * Constructs composed subtrees with the same constructor {@link Yaml#load} uses.
+     */
+    private static class SubtreeConstructor extends Constructor {
+
+        Object construct(Node node) {
+            return constructDocument(node);
+        }
+
+    }
+
+    /**
+     * Signals that a document must be loaded in full to be read faithfully.
+     */
+    private static class FallbackException extends RuntimeException {
+
+        FallbackException() {
+            super(null, null, false, false);
+        }
+
+    }
+
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Unmodifiable key/value pairs of a Secret whose encoded values are decoded on first access.
+ * <p>
+ * Looking up a key decodes only that value, so values that are overridden by a later layer are never decoded when layers are
+ * merged through {@link ConfigLayers}. Values that are binary data rather than UTF-8 text are not part of the map, they are
+ * only detected once decoded. Iterating the map or asking for its size decodes every value. Invalid base64 raises an
+ * {@link IllegalArgumentException} naming the key when the value is first decoded, {@link #verify()} checks every value
+ * upfront.
+ * </p>
+ * <p>
+ * Secrets of a cached layer can keep their large encoded and decoded values in a {@link ValueArena}, see {@link #moveOffHeap}.
+ * </p>
+ */
+public final class SecretData extends AbstractMap<String, String> {
+
+    private static final Object BINARY = new Object();
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private final Map<String, Object> encoded;
+    private final Map<String, String> plain;
+    private final Map<String, Object> decoded = new ConcurrentHashMap<>();
+    private final ValueArena arena;
+    private final int threshold;
+    private volatile Set<String> candidates;
+    private volatile Map<String, String> materialized;
+    private volatile boolean verified;
+
+    /**
+     * @param encoded base64 encoded values, values for keys that also have a plain value are ignored
+     * @param plain   plain values taking precedence over encoded ones
+     */
+    public SecretData(Map<String, Object> encoded, Map<String, String> plain) {
+        this(encoded, plain, null, 0);
+    }
+
+    private SecretData(Map<String, Object> encoded, Map<String, String> plain, @Nullable ValueArena arena, int threshold) {
+        this.encoded = encoded;
+        this.plain = plain;
+        this.arena = arena;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Copies the Secret, moving encoded and plain values of at least the threshold in bytes into an arena. Values decoded later
+     * are moved into the arena as well. Values are still decoded on first access.
+     *
+     * @param arena     arena of the layer the Secret is cached as
+     * @param threshold minimum size in bytes of a moved value
+     * @return Secret holding the moved values
+     */
+    public SecretData moveOffHeap(ValueArena arena, int threshold) {
+        Map<String, Object> moved = new HashMap<>(encoded.size() * 2);
+        for (Map.Entry<String, Object> entry : encoded.entrySet()) {
+            Object value = arena.store(entry.getValue(), threshold);
+            // slices left on the heap would keep the whole source buffer of the file alive
+            moved.put(entry.getKey(), value instanceof ByteSlice ? value.toString() : value);
+        }
+        return new SecretData(moved, CompactMap.copyOf(plain).moveOffHeap(arena, threshold), arena, threshold);
+    }
+
+    /**
+     * Copies the Secret, copying encoded values that are views of the source buffer of a file into buffers of their own. A
+     * cached Secret would otherwise keep the whole source buffer alive. Values stay encoded and are still decoded on first
+     * access.
+     *
+     * @return Secret holding no view of a source buffer, this Secret if it holds none
+     */
+    public SecretData detach() {
+        Map<String, Object> copied = null;
+        for (Map.Entry<String, Object> entry : encoded.entrySet()) {
+            if (entry.getValue() instanceof ByteSlice && ((ByteSlice) entry.getValue()).isView()) {
+                if (copied == null) {
+                    copied = new HashMap<>(encoded);
+                }
+                copied.put(entry.getKey(), ((ByteSlice) entry.getValue()).copy());
+            }
+        }
+        return copied == null ? this : new SecretData(copied, plain, arena, threshold);
+    }
+
+    /**
+     * @return true if the values of the Secret were moved into an arena that has since been released
+     */
+    public boolean isReleased() {
+        return arena != null && arena.isReleased();
+    }
+
+    /**
+     * @return encoded values as provided, including values overridden by plain ones
+     */
+    public Map<String, Object> getEncoded() {
+        return Collections.unmodifiableMap(encoded);
+    }
+
+    /**
+     * @return plain values
+     */
+    public Map<String, String> getPlain() {
+        return Collections.unmodifiableMap(plain);
+    }
+
+    /**
+     * Retrieves every key that may have a value without decoding any value. Keys of binary values are included.
+     *
+     * @return unmodifiable set of keys
+     */
+    public Set<String> getCandidateKeys() {
+        Set<String> keys = candidates;
+        if (keys == null) {
+            keys = new HashSet<>(encoded.keySet());
+            keys.addAll(plain.keySet());
+            candidates = keys = Collections.unmodifiableSet(keys);
+        }
+        return keys;
+    }
+
+    @Override
+    public String get(Object key) {
+        return CompactMap.read(getSlot(key));
+    }
+
+    /**
+     * Looks up a value, decoding it if needed, without copying an off-heap value into a string.
+     *
+     * @param key key to look up
+     * @return string, off-heap value, or null if the key has no text value
+     */
+    @Nullable
+    Object getSlot(Object key) {
+        Object value = plain instanceof CompactMap ? ((CompactMap) plain).getSlot(key) : plain.get(key);
+        if (value != null || plain.containsKey(key) || !encoded.containsKey(key)) {
+            return value;
+        }
+        Object result = decoded.get(key);
+        if (result == null) {
+            result = decode((String) key, encoded.get(key), SecretDecoder.current());
+            decoded.put((String) key, result);
+        }
+        return result == BINARY ? null : result;
+    }
+
+    /**
+     * Checks that every encoded value is valid base64 without keeping the decoded values, so a broken value is reported even if
+     * it would be overridden by a later layer.
+     *
+     * @throws IllegalArgumentException naming the key of the first value that is not valid base64
+     */
+    public void verify() {
+        if (verified) {
+            return;
+        }
+        SecretDecoder decoder = SecretDecoder.current();
+        for (Entry<String, Object> entry : encoded.entrySet()) {
+            if (!plain.containsKey(entry.getKey()) && !decoded.containsKey(entry.getKey())) {
+                try {
+                    SecretParser.decode(decoder, entry.getKey(), entry.getValue());
+                } finally {
+                    decoder.trim();
+                }
+            }
+        }
+        verified = true;
+    }
+
+    /**
+     * Writes the bytes of a value to a channel, plain values as UTF-8 and encoded values as their decoded bytes. Encoded values
+     * are decoded straight into the channel, binary values included, without being converted to text.
+     *
+     * @param key     key of the value
+     * @param channel channel to write to
+     * @return false if the key has no value
+     * @throws IOException              if the channel cannot be written
+     * @throws IllegalArgumentException naming the key if the value is not valid base64
+     */
+    public boolean transferTo(String key, WritableByteChannel channel) throws IOException {
+        String value = plain.get(key);
+        if (value != null || !encoded.containsKey(key)) {
+            if (value != null) {
+                write(StandardCharsets.UTF_8.encode(value), channel);
+            }
+            return value != null;
+        }
+        SecretDecoder decoder = SecretDecoder.current();
+        try {
+            SecretParser.decode(decoder, key, encoded.get(key));
+            write(decoder.getBuffer(), channel);
+            return true;
+        } finally {
+            decoder.trim();
+        }
+    }
+
+    /**
+     * Computes a digest of the source of a value without decoding it, so a changed value can be detected without holding on
+     * to the value. Plain and encoded values never share a digest.
+     *
+     * @param key key of the value
+     * @return SHA-256 digest of the plain value or of the encoded value as provided, or null if the key has no value
+     */
+    @Nullable
+    public byte[] digest(String key) {
+        Object value = plain instanceof CompactMap ? ((CompactMap) plain).getSlot(key) : plain.get(key);
+        boolean isEncoded = value == null && !plain.containsKey(key);
+        if (isEncoded) {
+            value = encoded.get(key);
+        }
+        if (value == null) {
+            return null;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update((byte) (isEncoded ? 'e' : 'p'));
+        if (value instanceof ByteSlice) {
+            digest.update(((ByteSlice) value).toByteBuffer());
+        } else if (value instanceof ValueArena.Value) {
+            ((ValueArena.Value) value).forEachByte(b -> digest.update((byte) b));
+        } else {
+            digest.update(value.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return digest.digest();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @NotNull
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return materialize().entrySet();
+    }
+
+    @Override
+    public int size() {
+        return materialize().size();
+    }
+
+    private Map<String, String> materialize() {
+        Map<String, String> result = materialized;
+        if (result == null) {
+            CompactMap.Builder builder = new CompactMap.Builder(getCandidateKeys().size());
+            for (String key : getCandidateKeys()) {
+                Object value = getSlot(key);
+                if (value != null) {
+                    builder.putSlot(key, value);
+                }
+            }
+            materialized = result = builder.build();
+        }
+        return result;
+    }
+
+    private static void write(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private Object decode(String key, Object value, SecretDecoder decoder) {
+        try {
+            SecretParser.decode(decoder, key, value);
+            if (decoder.isText()) {
+                return arena == null ? decoder.getText() : arena.store(decoder.getText(), threshold);
+            }
+            SecretParser.logBinary(key);
+            return BINARY;
+        } finally {
+            decoder.trim();
+        }
+    }
+
+}
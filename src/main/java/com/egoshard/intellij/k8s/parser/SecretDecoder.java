@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Decodes base64 encoded secret values into a reusable buffer.
+ * <p>
+ * Values are decoded straight from their source characters, or from the source bytes of a {@link ByteSlice} or off-heap
+ * {@link ValueArena} value, without an intermediate string. ASCII whitespace is ignored so line wrapped values such as certificate chains decode as a whole, and
+ * padding is optional as with {@link java.util.Base64#getDecoder()}. Decoded bytes are validated as UTF-8 explicitly, values
+ * that are not valid UTF-8 text or contain NUL characters are reported as binary instead of being decoded into a mangled string.
+ * </p>
+ * <p>
+ * A decoder is not thread safe, parsers create one per parsed source and lazily decoded values share one decoder per thread.
+ * </p>
+ */
+final class SecretDecoder {
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int RETAINED_CAPACITY = 64 * 1024;
+    private static final ThreadLocal<SecretDecoder> decoders = ThreadLocal.withInitial(SecretDecoder::new);
+    private static final byte[] ALPHABET = new byte[128];
+
+    static {
+        Arrays.fill(ALPHABET, (byte) -1);
+        String characters = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < characters.length(); i++) {
+            ALPHABET[characters.charAt(i)] = (byte) i;
+        }
+    }
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int length;
+    private int bits;
+    private int pending;
+    private int padding;
+    private boolean valid;
+
+    /**
+     * @return decoder of the current thread
+     */
+    static SecretDecoder current() {
+        return decoders.get();
+    }
+
+    /**
+     * Decodes a value into the buffer, replacing the previously decoded value.
+     *
+     * @param value base64 encoded value, null values decode to an empty value
+     * @return true if the value is valid base64
+     */
+    boolean decode(Object value) {
+        length = 0;
+        bits = 0;
+        pending = 0;
+        padding = 0;
+        valid = true;
+        if (value instanceof ByteSlice) {
+            ((ByteSlice) value).forEachByte(this::accept);
+        } else if (value instanceof ValueArena.Value) {
+            ((ValueArena.Value) value).forEachByte(this::accept);
+        } else if (value != null) {
+            CharSequence characters = value instanceof CharSequence ? (CharSequence) value : String.valueOf(value);
+            for (int i = 0, n = characters.length(); i < n && valid; i++) {
+                accept(characters.charAt(i));
+            }
+        }
+        return finish();
+    }
+
+    /**
+     * @return true if the decoded value is valid UTF-8 without NUL characters
+     */
+    boolean isText() {
+        return isText(buffer, length);
+    }
+
+    /**
+     * @param bytes  encoded text
+     * @param length number of bytes to check
+     * @return true if the bytes are valid UTF-8 without NUL characters
+     */
+    static boolean isText(byte[] bytes, int length) {
+        int i = 0;
+        while (i < length) {
+            int lead = bytes[i] & 0xFF;
+            if (lead < 0x80) {
+                if (lead == 0) {
+                    return false;
+                }
+                i++;
+                continue;
+            }
+            int continuation;
+            if (lead >= 0xC2 && lead <= 0xDF) {
+                continuation = 1;
+            } else if (lead >= 0xE0 && lead <= 0xEF) {
+                continuation = 2;
+            } else if (lead >= 0xF0 && lead <= 0xF4) {
+                continuation = 3;
+            } else {
+                return false;
+            }
+            if (i + continuation >= length) {
+                return false;
+            }
+            int second = bytes[i + 1] & 0xFF;
+            if ((lead == 0xE0 && second < 0xA0)
+                    || (lead == 0xED && second > 0x9F)
+                    || (lead == 0xF0 && second < 0x90)
+                    || (lead == 0xF4 && second > 0x8F)) {
+                return false;
+            }
+            for (int k = 1; k <= continuation; k++) {
+                if ((bytes[i + k] & 0xC0) != 0x80) {
+                    return false;
+                }
+            }
+            i += continuation + 1;
+        }
+        return true;
+    }
+
+    /**
+     * @return decoded value as text, only meaningful if {@link #isText()}
+     */
+    String getText() {
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return copy of the decoded bytes
+     */
+    byte[] getBytes() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * @return read-only view of the decoded bytes, valid until the next value is decoded
+     */
+    ByteBuffer getBuffer() {
+        return ByteBuffer.wrap(buffer, 0, length).asReadOnlyBuffer();
+    }
+
+    /**
+     * Releases a buffer grown beyond the retained capacity, so a single large value is not kept alive by a thread local decoder.
+     */
+    void trim() {
+        if (buffer.length > RETAINED_CAPACITY) {
+            buffer = new byte[INITIAL_CAPACITY];
+            length = 0;
+        }
+    }
+
+    private void accept(int character) {
+        if (!valid || character == ' ' || character == '\n' || character == '\r' || character == '\t') {
+            return;
+        }
+        if (character == '=') {
+            valid = pending >= 2;
+            padding++;
+            return;
+        }
+        if (padding > 0 || character < 0 || character >= ALPHABET.length || ALPHABET[character] < 0) {
+            valid = false;
+            return;
+        }
+        bits = bits << 6 | ALPHABET[character];
+        if (++pending == 4) {
+            ensureCapacity(3);
+            buffer[length++] = (byte) (bits >> 16);
+            buffer[length++] = (byte) (bits >> 8);
+            buffer[length++] = (byte) bits;
+            bits = 0;
+            pending = 0;
+        }
+    }
+
+    private boolean finish() {
+        if (!valid || (padding > 0 && pending + padding != 4)) {
+            return false;
+        }
+        switch (pending) {
+            case 0:
+                return true;
+            case 2:
+                ensureCapacity(1);
+                buffer[length++] = (byte) (bits >> 4);
+                return true;
+            case 3:
+                ensureCapacity(2);
+                buffer[length++] = (byte) (bits >> 10);
+                buffer[length++] = (byte) (bits >> 2);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void ensureCapacity(int additional) {
+        if (length + additional > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + additional));
+        }
+    }
+
+}
@@ -15,23 +15,26 @@
  */
 package com.egoshard.intellij.k8s.parser;
 
-import java.util.Map;
-import java.util.stream.Collectors;
+import com.intellij.openapi.diagnostic.Logger;
 
-import static java.util.Base64.Decoder;
-import static java.util.Base64.getDecoder;
+import java.util.Map;
 
 /**
  * Parses secret configuration files into discrete environment variable key/value pairs.
  */
 public class SecretParser extends AbstractParser {
 
-    private static final String KEY_STRING_DATA = "stringData";
+    static final String KEY_STRING_DATA = "stringData";
+    private static final Logger logger = Logger.getInstance(SecretParser.class);
+    private static final String MSG_INVALID_BASE64 = "The provided secret cannot be parsed. The value of key [%s] is not valid base64.";
+    private static final String MSG_BINARY_VALUE = "The secret value of key [%s] is binary data and is not injected as an environment variable.";
 
     /**
      * Parses a source map matching the YAML structure of a Kubernetes secret configuration file.
      * <p>
-     * This parser supports both secret encoded data and stringData models.
+     * This parser supports both secret encoded data and stringData models. Encoded data is decoded as UTF-8 when a value is
+     * first read from the result, so values that are overridden by later layers are never decoded. Values that are not valid
+     * UTF-8 text are binary data and are left out of the result, see {@link #parseVolume(Map)}.
      * </p>
      *
      * @param source configuration map
@@ -39,18 +42,20 @@ public class SecretParser extends AbstractParser {
      */
     @Override
     public Map<String, String> parse(Map<String, Object> source) {
-        Map<String, String> result;
         Map<String, Object> data = super.getData(source, KEY_DATA);
-        Map<String, Object> stringData = super.getData(source, KEY_STRING_DATA);
-
-        Decoder decoder = getDecoder();
-        result = data.keySet().stream().collect(
-                Collectors.toMap(
-                        s -> s,
-                        s -> new String(decoder.decode(String.valueOf(data.get(s)))), (a, b) -> b));
-        stringData.keySet().forEach(key -> result.put(key, String.valueOf(stringData.get(key))));
+        return new SecretData(data, toCompactMap(super.getData(source, KEY_STRING_DATA)));
+    }
 
-        return result;
+    /**
+     * Parses a source map into the files a volume mount of the secret would hold. Unlike environment variables, binary data values
+     * are part of a volume.
+     *
+     * @param source configuration map
+     * @return plain stringData and encoded data by key
+     */
+    @Override
+    public SecretData parseVolume(Map<String, Object> source) {
+        return (SecretData) parse(source);
     }
 
     /**
@@ -63,4 +68,22 @@ public class SecretParser extends AbstractParser {
         return Kind.SECRET;
     }
 
+    /**
+     * Decodes an encoded value into a decoder.
+     *
+     * @param decoder decoder to decode into
+     * @param key     key of the value
+     * @param value   base64 encoded value
+     * @throws IllegalArgumentException naming the key if the value is not valid base64
+     */
+    static void decode(SecretDecoder decoder, String key, Object value) {
+        if (!decoder.decode(value)) {
+            throw new IllegalArgumentException(String.format(MSG_INVALID_BASE64, key));
+        }
+    }
+
+    static void logBinary(String key) {
+        logger.debug(String.format(MSG_BINARY_VALUE, key));
+    }
+
 }
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Off-heap storage for the large values of a cached layer.
+ * <p>
+ * Values are copied as UTF-8 into direct buffers outside the IDE heap and are only copied back into strings when read. An arena
+ * belongs to a single cached layer and is released when the layer is evicted. Reading a value of a released arena raises a
+ * {@link ReleasedException}. Holders of a layer check {@link ConfigLayers#isReleased(java.util.Map)} before serving it and parse
+ * again instead.
+ * </p>
+ * <p>
+ * The buffers come from a {@link Pool} that holds equal content only once, so a large value such as a CA bundle that appears in
+ * several cached layers takes its off-heap memory only once. A buffer is zeroed as soon as no arena references it any more,
+ * because the values are often secrets. The native memory itself is returned once the zeroed buffers are garbage collected.
+ * </p>
+ * <p>
+ * Arenas are thread safe, reads and the release of an arena never overlap.
+ * </p>
+ */
+public final class ValueArena {
+
+    private static final int ZERO_CHUNK = 8192;
+
+    private final Pool pool;
+    private final List<Value> values = new ArrayList<>();
+    private long size;
+    private boolean released;
+
+    /**
+     * Creates an arena that shares no buffers with other arenas.
+     */
+    public ValueArena() {
+        this(new Pool());
+    }
+
+    /**
+     * @param pool pool sharing buffers of equal content between arenas
+     */
+    public ValueArena(Pool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Copies a value into the arena if it is text of at least the threshold in bytes. Values are kept as they are if direct memory
+     * is exhausted.
+     *
+     * @param value     string, {@link ByteSlice} or other parsed value
+     * @param threshold minimum size in bytes of a stored value
+     * @return off-heap value, or the value itself if it is not stored
+     */
+    Object store(Object value, int threshold) {
+        // a character takes at most three UTF-8 bytes, slices know their size without being decoded
+        if (value instanceof ByteSlice ? ((ByteSlice) value).byteLength() < threshold
+                : !(value instanceof String) || ((String) value).length() * 3L < threshold) {
+            return value;
+        }
+        ByteBuffer bytes = value instanceof ByteSlice
+                ? ((ByteSlice) value).toByteBuffer()
+                : StandardCharsets.UTF_8.encode((String) value);
+        if (bytes.remaining() < threshold) {
+            return value;
+        }
+        try {
+            synchronized (this) {
+                ByteBuffer buffer = released ? null : pool.acquire(bytes);
+                if (buffer == null) {
+                    return value;
+                }
+                Value result = new Value(this, buffer);
+                values.add(result);
+                size += buffer.capacity();
+                return result;
+            }
+        } finally {
+            zero(bytes);
+        }
+    }
+
+    /**
+     * Drops every value, later reads raise a {@link ReleasedException}. Buffers no other arena references are zeroed.
+     */
+    public synchronized void release() {
+        for (Value value : values) {
+            pool.release(value.buffer);
+            value.buffer = null;
+        }
+        values.clear();
+        size = 0;
+        released = true;
+    }
+
+    public synchronized boolean isReleased() {
+        return released;
+    }
+
+    /**
+     * @return number of bytes held off-heap for the values of the arena, including buffers shared with other arenas
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    private static void zero(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            Arrays.fill(buffer.array(), buffer.arrayOffset(), buffer.arrayOffset() + buffer.limit(), (byte) 0);
+            return;
+        }
+        ByteBuffer target = buffer.duplicate();
+        target.clear();
+        byte[] zeros = new byte[Math.min(ZERO_CHUNK, target.capacity())];
+        while (target.hasRemaining()) {
+            target.put(zeros, 0, Math.min(zeros.length, target.remaining()));
+        }
+    }
+
+    /**
+     * UTF-8 text held in a direct buffer of an arena.
+     */
+    static final class Value {
+
+        private final ValueArena arena;
+        private ByteBuffer buffer;
+
+        private Value(ValueArena arena, ByteBuffer buffer) {
+            this.arena = arena;
+            this.buffer = buffer;
+        }
+
+        boolean isReleased() {
+            return arena.isReleased();
+        }
+
+        /**
+         * @return copy of the value as a string
+         * @throws ReleasedException if the arena was released
+         */
+        String read() {
+            byte[] bytes;
+            synchronized (arena) {
+                bytes = new byte[getBuffer().capacity()];
+                buffer.duplicate().get(bytes);
+            }
+            try {
+                return new String(bytes, StandardCharsets.UTF_8);
+            } finally {
+                Arrays.fill(bytes, (byte) 0);
+            }
+        }
+
+        /**
+         * Passes each encoded byte to a consumer without copying the value.
+         *
+         * @param consumer byte consumer, bytes are passed as signed values
+         * @throws ReleasedException if the arena was released
+         */
+        void forEachByte(IntConsumer consumer) {
+            synchronized (arena) {
+                ByteBuffer source = getBuffer().duplicate();
+                while (source.hasRemaining()) {
+                    consumer.accept(source.get());
+                }
+            }
+        }
+
+        private ByteBuffer getBuffer() {
+            if (buffer == null) {
+                throw new ReleasedException();
+            }
+            return buffer;
+        }
+
+    }
+
+    /**
+     * Direct buffers shared by several arenas, one per distinct content and reference counted by the values using it.
+     * <p>
+     * Buffers are looked up by their content, which never changes while a buffer is in the pool. Lookups hash the whole value,
+     * which is no more than copying it. Arenas call into their pool while holding their own lock, never the other way around.
+     * </p>
+     */
+    public static final class Pool {
+
+        private final Map<ByteBuffer, Block> blocks = new HashMap<>();
+        private long size;
+
+        /**
+         * References a buffer holding the provided content, copying it into a new buffer if the pool holds none.
+         *
+         * @param bytes content, read from its position to its limit without moving either
+         * @return shared buffer, which must not be modified, or null if direct memory is exhausted
+         */
+        synchronized ByteBuffer acquire(ByteBuffer bytes) {
+            Block block = blocks.get(bytes);
+            if (block == null) {
+                ByteBuffer buffer;
+                try {
+                    buffer = ByteBuffer.allocateDirect(bytes.remaining());
+                } catch (OutOfMemoryError e) {
+                    // direct memory is limited separately from the heap, values that do not fit stay where they are
+                    return null;
+                }
+                buffer.put(bytes.duplicate()).flip();
+                block = new Block(buffer);
+                blocks.put(buffer, block);
+                size += buffer.capacity();
+            }
+            block.references++;
+            return block.buffer;
+        }
+
+        /**
+         * Drops a reference to a buffer, zeroing it once it is no longer referenced.
+         */
+        synchronized void release(ByteBuffer buffer) {
+            Block block = blocks.get(buffer);
+            if (block == null || block.buffer != buffer || --block.references > 0) {
+                return;
+            }
+            blocks.remove(buffer);
+            size -= buffer.capacity();
+            zero(buffer);
+        }
+
+        /**
+         * @return number of bytes held off-heap, each distinct content counted once
+         */
+        public synchronized long getSize() {
+            return size;
+        }
+
+    }
+
+    private static final class Block {
+
+        private final ByteBuffer buffer;
+        private int references;
+
+        Block(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+    }
+
+    /**
+     * Raised when a value is read after its arena was released.
+     */
+    public static class ReleasedException extends IllegalStateException {
+
+        private static final String MSG_RELEASED = "The cached value was released, the configuration has to be parsed again.";
+
+        ReleasedException() {
+            super(MSG_RELEASED);
+        }
+
+    }
+
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.support;
+
+import com.egoshard.intellij.k8s.parser.ConfigParser;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.reader.UnicodeReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Project level catalog of the ConfigMaps and Secrets declared in YAML files of the project, indexed by kind and
+ * {@code metadata.name}.
+ * <p>
+ * The files declaring ConfigMaps or Secrets are listed through the {@link ConfigResourceIndex} on first use, while the index
+ * is being updated the whole project content is listed instead. Afterwards only files reported changed by the VFS are checked
+ * again and only those whose modification stamp moved are parsed again. Files are listed again after files are created, moved,
+ * renamed or deleted, or when a YAML file outside the catalog changes. Files that do not mention a supported kind are not
+ * parsed at all and files that cannot be parsed are left out of the catalog.
+ * </p>
+ * <p>
+ * Namespaces are not known locally, when several files declare a resource of the same name the file closest to the referencing
+ * file wins.
+ * </p>
+ */
+public class ConfigCatalog {
+
+    private static final Logger logger = Logger.getInstance(ConfigCatalog.class);
+    private static final String MSG_FILE_IGNORED = "Unable to index K8s config file, [%s], it is left out of the catalog.";
+    private static final String KEY_ITEMS = "items";
+    private static final String KEY_METADATA = "metadata";
+    private static final String KEY_NAME = "name";
+    private static final String KIND_LIST = "List";
+    private static final List<String> KINDS = Collections.unmodifiableList(Arrays.asList(
+            ConfigParser.Kind.CONFIGMAP.getKey(), ConfigParser.Kind.SECRET.getKey()));
+    private static final List<byte[]> MARKERS = Collections.unmodifiableList(Arrays.asList(
+            ConfigParser.Kind.CONFIGMAP.getKey().getBytes(StandardCharsets.UTF_8),
+            ConfigParser.Kind.SECRET.getKey().getBytes(StandardCharsets.UTF_8)));
+
+    private final FileSource source;
+    private final Map<String, Record> records = new HashMap<>();
+    private final Map<String, Set<String>> index = new HashMap<>();
+    private final Set<String> dirty = new HashSet<>();
+    private boolean relist = true;
+    private long version;
+
+    public ConfigCatalog(Project project) {
+        this(new ProjectFileSource(project));
+        project.getMessageBus().connect(project).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                invalidate(events);
+            }
+        });
+    }
+
+    ConfigCatalog(FileSource source) {
+        this.source = source;
+    }
+
+    /**
+     * @param project project the run configuration belongs to
+     * @return catalog of the project, or null if there is no open project
+     */
+    @Nullable
+    public static ConfigCatalog getInstance(@Nullable Project project) {
+        return project == null || project.isDisposed() ? null : ServiceManager.getService(project, ConfigCatalog.class);
+    }
+
+    /**
+     * Finds the resources of a kind and name. Resources of the same name in one file are returned in document order, later
+     * resources taking precedence, when several files declare the name only those of the file closest to a given file are.
+     *
+     * @param kind resource kind
+     * @param name resource {@code metadata.name}
+     * @param near path of the referencing file
+     * @return resources of the closest file, empty if there is none
+     */
+    public synchronized List<Resource> find(ConfigParser.Kind kind, String name, String near) {
+        refresh();
+        String key = getKey(kind.getKey(), name);
+        Set<String> paths = index.get(key);
+        if (paths == null || paths.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String closest = null;
+        int closestDistance = Integer.MAX_VALUE;
+        for (String path : new TreeSet<>(paths)) {
+            int distance = getDistance(near, path);
+            if (distance < closestDistance) {
+                closest = path;
+                closestDistance = distance;
+            }
+        }
+        return records.get(closest).resources.stream()
+                .filter(resource -> key.equals(resource.key))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return version of the catalog, which changes whenever a resource is added, removed or moved to another file
+     */
+    public synchronized long getVersion() {
+        refresh();
+        return version;
+    }
+
+    /**
+     * Marks files affected by VFS changes for checking, structural changes have the project content listed again.
+     *
+     * @param events VFS change events
+     */
+    synchronized void invalidate(List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+            if (event instanceof VFileContentChangeEvent && records.containsKey(event.getPath())) {
+                dirty.add(event.getPath());
+            } else if (event instanceof VFileContentChangeEvent) {
+                relist |= ConfigResourceIndex.isManifestFile(((VFileContentChangeEvent) event).getFile());
+            } else {
+                relist = true;
+            }
+        }
+    }
+
+    /**
+     * Marks a file for checking.
+     *
+     * @param path file path
+     */
+    synchronized void invalidate(String path) {
+        dirty.add(path);
+    }
+
+    /**
+     * Has the project content listed again.
+     */
+    synchronized void invalidateAll() {
+        relist = true;
+    }
+
+    private void refresh() {
+        if (relist) {
+            relist = false;
+            dirty.clear();
+            Set<String> listed = new HashSet<>(source.list());
+            for (String path : new ArrayList<>(records.keySet())) {
+                if (!listed.contains(path)) {
+                    update(path, null);
+                }
+            }
+            listed.forEach(this::check);
+        } else if (!dirty.isEmpty()) {
+            List<String> paths = new ArrayList<>(dirty);
+            dirty.clear();
+            paths.stream().filter(records::containsKey).forEach(this::check);
+        }
+    }
+
+    private void check(String path) {
+        Record record = records.get(path);
+        long stamp = source.getStamp(path);
+        if (record != null && record.stamp == stamp && stamp != ConfigFileUtil.STAMP_UNKNOWN) {
+            return;
+        }
+        update(path, new Record(stamp, read(path)));
+    }
+
+    private void update(String path, @Nullable Record record) {
+        Record previous = record == null ? records.remove(path) : records.put(path, record);
+        List<String> previousKeys = previous == null ? Collections.emptyList() : previous.getKeys();
+        List<String> keys = record == null ? Collections.emptyList() : record.getKeys();
+        if (previousKeys.equals(keys)) {
+            return;
+        }
+        previousKeys.forEach(key -> index.computeIfPresent(key, (k, paths) -> {
+            paths.remove(path);
+            return paths.isEmpty() ? null : paths;
+        }));
+        keys.forEach(key -> index.computeIfAbsent(key, k -> new HashSet<>()).add(path));
+        version++;
+    }
+
+    private List<Resource> read(String path) {
+        try {
+            byte[] content = source.load(path);
+            if (content == null || MARKERS.stream().noneMatch(marker -> contains(content, marker))) {
+                return Collections.emptyList();
+            }
+            List<Resource> result = new ArrayList<>();
+            for (Object document : new Yaml(new SafeConstructor()).loadAll(new UnicodeReader(new ByteArrayInputStream(content)))) {
+                for (Map<?, ?> manifest : getManifests(document)) {
+                    add(result, path, manifest);
+                }
+            }
+            return result;
+        } catch (IOException | YAMLException | ClassCastException e) {
+            logger.debug(String.format(MSG_FILE_IGNORED, path), e);
+            return Collections.emptyList();
+        }
+    }
+
+    private static void add(List<Resource> resources, String path, Map<?, ?> manifest) {
+        Object kind = manifest.get(ConfigParser.KEY_KIND);
+        Object metadata = manifest.get(KEY_METADATA);
+        Object name = metadata instanceof Map ? ((Map<?, ?>) metadata).get(KEY_NAME) : null;
+        if (name == null || !(ConfigParser.Kind.CONFIGMAP.getKey().equals(kind) || ConfigParser.Kind.SECRET.getKey().equals(kind))) {
+            return;
+        }
+        Map<String, Object> sections = new LinkedHashMap<>();
+        manifest.forEach((key, value) -> sections.put(String.valueOf(key), value));
+        sections.remove(KEY_METADATA);
+        resources.add(new Resource(getKey(String.valueOf(kind), String.valueOf(name)), path, sections));
+    }
+
+    private static List<Map<?, ?>> getManifests(Object document) {
+        if (!(document instanceof Map)) {
+            return Collections.emptyList();
+        }
+        Map<?, ?> manifest = (Map<?, ?>) document;
+        if (!KIND_LIST.equals(manifest.get(ConfigParser.KEY_KIND)) || !(manifest.get(KEY_ITEMS) instanceof List)) {
+            return Collections.singletonList(manifest);
+        }
+        return ((List<?>) manifest.get(KEY_ITEMS)).stream()
+                .filter(item -> item instanceof Map)
+                .map(item -> (Map<?, ?>) item)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return number of path segments separating two files
+     */
+    static int getDistance(String from, String to) {
+        String[] source = from.split("/");
+        String[] target = to.split("/");
+        int common = 0;
+        while (common < source.length - 1 && common < target.length - 1 && source[common].equals(target[common])) {
+            common++;
+        }
+        return source.length + target.length - 2 * common;
+    }
+
+    private static boolean contains(byte[] content, byte[] marker) {
+        outer:
+        for (int i = 0; i <= content.length - marker.length; i++) {
+            for (int j = 0; j < marker.length; j++) {
+                if (content[i + j] != marker[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static String getKey(String kind, String name) {
+        return kind + '\0' + name;
+    }
+
+    /**
+     * Source of the files indexed by the catalog.
+     */
+    interface FileSource {
+
+        /**
+         * @return paths of the candidate files
+         */
+        Collection<String> list();
+
+        /**
+         * @param path file path
+         * @return modification stamp, or {@link ConfigFileUtil#STAMP_UNKNOWN} if the file cannot be resolved
+         */
+        long getStamp(String path);
+
+        /**
+         * @param path file path
+         * @return file content, or null if the file does not exist
+         */
+        @Nullable
+        byte[] load(String path) throws IOException;
+
+    }
+
+    /**
+     * ConfigMap or Secret declared in a project file.
+     */
+    public static final class Resource {
+
+        private final String key;
+        private final String path;
+        private final Map<String, Object> source;
+
+        Resource(String key, String path, Map<String, Object> source) {
+            this.key = key;
+            this.path = path;
+            this.source = Collections.unmodifiableMap(source);
+        }
+
+        /**
+         * @return path of the declaring file
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return top level sections of the resource, without its metadata
+         */
+        public Map<String, Object> getSource() {
+            return source;
+        }
+
+    }
+
+    /**
+     * Resources of a file at a specific modification stamp.
+     */
+    private static final class Record {
+
+        private final long stamp;
+        private final List<Resource> resources;
+
+        Record(long stamp, List<Resource> resources) {
+            this.stamp = stamp;
+            this.resources = resources;
+        }
+
+        List<String> getKeys() {
+            return resources.stream().map(resource -> resource.key).distinct().sorted().collect(Collectors.toList());
+        }
+
+    }
+
+    /**
+     * Lists the files declaring ConfigMaps or Secrets through the resource index, or all YAML files of the project content while
+     * the index is being updated, and reads them from the VFS.
+     */
+    private static final class ProjectFileSource implements FileSource {
+
+        private final Project project;
+
+        ProjectFileSource(Project project) {
+            this.project = project;
+        }
+
+        @Override
+        public Collection<String> list() {
+            Set<VirtualFile> files = ConfigResourceIndex.getFiles(project, KINDS);
+            if (files != null) {
+                return files.stream().map(VirtualFile::getPath).collect(Collectors.toList());
+            }
+            return ReadAction.compute(() -> {
+                List<String> result = new ArrayList<>();
+                ProjectFileIndex.getInstance(project).iterateContent(file -> {
+                    if (ConfigResourceIndex.isManifestFile(file)) {
+                        result.add(file.getPath());
+                    }
+                    return true;
+                });
+                return result;
+            });
+        }
+
+        @Override
+        public long getStamp(String path) {
+            VirtualFile file = LocalFileSystem.getInstance().findFileByPath(path);
+            return file == null ? ConfigFileUtil.STAMP_UNKNOWN : file.getModificationStamp();
+        }
+
+        @Nullable
+        @Override
+        public byte[] load(String path) throws IOException {
+            VirtualFile file = LocalFileSystem.getInstance().findFileByPath(path);
+            return file == null ? null : file.contentsToByteArray();
+        }
+
+    }
+
+}
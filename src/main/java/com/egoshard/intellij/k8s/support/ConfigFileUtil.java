@@ -16,40 +16,301 @@
 package com.egoshard.intellij.k8s.support;
 
 import com.intellij.execution.configurations.RunConfigurationBase;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.RefreshQueue;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.io.File;
-import java.io.FileInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Utility for file handling
+ * <p>
+ * Files are resolved through the IntelliJ virtual file system and their content is served from VFS caches. Resolved files are
+ * remembered until a VFS event moves, renames, creates or deletes a file, content changes are tracked through the VFS
+ * modification stamp of the resolved file.
+ * </p>
+ * <p>
+ * The VFS listener lives as long as the utility, dispose it to disconnect it.
+ * </p>
  */
-public class ConfigFileUtil {
+public class ConfigFileUtil implements Disposable {
+
+    /**
+     * Modification stamp reported for files that cannot be resolved.
+     */
+    public static final long STAMP_UNKNOWN = 0;
 
     private static final Logger logger = Logger.getInstance(ConfigFileUtil.class);
+    private static final String MSG_FILE_NOT_FOUND = "Unable to resolve K8s config file, [%s].";
+    private static final String CACHE_DIRECTORY = "k8s-config-cache";
+    private static final String VOLUME_DIRECTORY = "k8s-config-volumes";
+    private static final int VOLUME_ID_LENGTH = 16;
+    private static final long CACHE_MAX_BYTES = 64L * 1024 * 1024;
+
+    private final Map<String, VirtualFile> resolved = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private PersistentParseCache persistentCache;
 
-    private File getFile(RunConfigurationBase config, String path) {
+    public ConfigFileUtil() {
+        Application application = ApplicationManager.getApplication();
+        if (application != null) {
+            application.getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+                @Override
+                public void after(@NotNull List<? extends VFileEvent> events) {
+                    invalidate(events);
+                }
+            });
+        }
+    }
 
+    @Nullable
+    private VirtualFile getFile(RunConfigurationBase config, String path) {
+        if (path == null) {
+            return null;
+        }
+        boolean absolute = FileUtil.isAbsolute(path);
+        String key = absolute ? path : config.getProject().getBasePath() + "/" + path;
+        VirtualFile file = resolved.get(key);
+        if (file != null && file.isValid()) {
+            return file;
+        }
         logger.debug("Retrieving K8s config file, {}", path);
-        if (!FileUtil.isAbsolute(path)) {
-            VirtualFile virtual = config.getProject().getBaseDir().findFileByRelativePath(path);
-            if (virtual != null) {
-                return new File(virtual.getPath());
-            }
+        file = absolute
+                ? LocalFileSystem.getInstance().findFileByPath(FileUtil.toSystemIndependentName(path))
+                : config.getProject().getBaseDir().findFileByRelativePath(path);
+        if (file == null) {
+            // files created outside the IDE, for instance by a script just before a launch, are only found after a refresh
+            refreshLater(FileUtil.toCanonicalPath(FileUtil.toSystemIndependentName(key)));
+        }
+        if (file == null || file.isDirectory()) {
+            resolved.remove(key);
+            return null;
+        }
+        resolved.put(key, file);
+        return file;
+    }
+
+    /**
+     * Schedules an asynchronous VFS refresh of the closest existing directory of a file that cannot be resolved.
+     * <p>
+     * A synchronous refresh needs the event dispatch thread, which may itself be waiting for this lookup. The missing file is
+     * reported as not found, the VFS events fired by the refresh then invalidate the resolved files so that the next validation
+     * or launch finds it.
+     * </p>
+     *
+     * @param path system independent path of the missing file
+     */
+    private void refreshLater(String path) {
+        if (ApplicationManager.getApplication() == null || !refreshing.add(path)) {
+            return;
         }
-        return new File(path);
+        LocalFileSystem fileSystem = LocalFileSystem.getInstance();
+        VirtualFile directory = null;
+        int missing = 0;
+        String parent = path;
+        while (directory == null && parent.lastIndexOf('/') > 0) {
+            parent = parent.substring(0, parent.lastIndexOf('/'));
+            missing++;
+            directory = fileSystem.findFileByPath(parent);
+        }
+        if (directory == null || !directory.isDirectory()) {
+            refreshing.remove(path);
+            return;
+        }
+        boolean recursive = missing > 1;
+        VfsUtil.markDirty(recursive, true, directory);
+        RefreshQueue.getInstance().refresh(true, recursive, () -> refreshing.remove(path), directory);
     }
 
-    public InputStream getStream(RunConfigurationBase config, String path) throws FileNotFoundException {
-        return new FileInputStream(getFile(config, path));
+    public InputStream getStream(RunConfigurationBase config, String path) throws IOException {
+        VirtualFile file = getFile(config, path);
+        if (file == null) {
+            throw new FileNotFoundException(String.format(MSG_FILE_NOT_FOUND, path));
+        }
+        return new ByteArrayInputStream(file.contentsToByteArray());
     }
 
     public boolean exists(RunConfigurationBase config, String path) {
-        return getFile(config, path).exists();
+        return getFile(config, path) != null;
+    }
+
+    /**
+     * Retrieves the VFS modification stamp of a configuration file. The stamp changes whenever the file content changes and can
+     * be compared without reading the file.
+     *
+     * @param config run configuration
+     * @param path   configuration file path
+     * @return modification stamp, or {@link #STAMP_UNKNOWN} if the file cannot be resolved
+     */
+    public long getModificationStamp(RunConfigurationBase config, String path) {
+        VirtualFile file = getFile(config, path);
+        return file == null ? STAMP_UNKNOWN : file.getModificationStamp();
+    }
+
+    /**
+     * Fingerprints the content of a configuration file by its resolved location, modification time and content hash.
+     *
+     * @param config  run configuration
+     * @param path    configuration file path
+     * @param content content read from the file
+     * @return content fingerprint
+     */
+    public ConfigFingerprint getFingerprint(RunConfigurationBase config, String path, byte[] content) {
+        VirtualFile file = getFile(config, path);
+        return file == null
+                ? ConfigFingerprint.of(path, 0, content)
+                : ConfigFingerprint.of(file.getPath(), file.getTimeStamp(), content);
+    }
+
+    /**
+     * Resolves a configuration file path, relative paths being relative to the project base directory.
+     *
+     * @param config run configuration
+     * @param path   configuration file path
+     * @return system independent path of the resolved file, or null if the file cannot be resolved
+     */
+    @Nullable
+    public String getResolvedPath(RunConfigurationBase config, String path) {
+        VirtualFile file = getFile(config, path);
+        return file == null ? null : file.getPath();
+    }
+
+    /**
+     * Checks through the {@link ConfigResourceIndex} whether a configuration file declares a manifest of a name, without reading
+     * the file.
+     *
+     * @param config run configuration
+     * @param path   configuration file path
+     * @param kinds  accepted manifest kinds
+     * @param name   manifest {@code metadata.name}
+     * @return false if the file cannot be resolved or is indexed without such a manifest, true otherwise, including while the
+     * index is being updated
+     */
+    public boolean mayDeclare(RunConfigurationBase config, String path, Collection<String> kinds, String name) {
+        VirtualFile file = getFile(config, path);
+        if (file == null) {
+            return false;
+        }
+        for (String kind : kinds) {
+            Map<VirtualFile, List<ConfigResourceIndex.Resource>> found = ConfigResourceIndex.find(config.getProject(), kind, name);
+            if (found == null || found.containsKey(file)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks through the {@link ConfigResourceIndex} whether a configuration file declares any manifest of a kind, without
+     * reading the file.
+     *
+     * @param config run configuration
+     * @param path   configuration file path
+     * @param kind   manifest kind
+     * @return false if the file is indexed without a manifest of the kind, true otherwise, including if the file cannot be
+     * resolved or while the index is being updated
+     */
+    public boolean mayDeclareKind(RunConfigurationBase config, String path, String kind) {
+        VirtualFile file = getFile(config, path);
+        if (file == null) {
+            return true;
+        }
+        Set<VirtualFile> files = ConfigResourceIndex.getFiles(config.getProject(), Collections.singleton(kind));
+        return files == null || files.contains(file);
+    }
+
+    /**
+     * Retrieves the catalog of ConfigMaps and Secrets declared in the project of a run configuration.
+     *
+     * @param config run configuration, null outside a run configuration
+     * @return project catalog, or null if there is no open project
+     */
+    @Nullable
+    public ConfigCatalog getCatalog(@Nullable RunConfigurationBase config) {
+        return config == null ? null : ConfigCatalog.getInstance(config.getProject());
+    }
+
+    /**
+     * Retrieves the cache sharing parsed layers between the run configurations of a project.
+     *
+     * @param config run configuration, null outside a run configuration
+     * @return project layer cache, or null if there is no open project
+     */
+    @Nullable
+    public ConfigLayerCache getLayerCache(@Nullable RunConfigurationBase config) {
+        return config == null ? null : ConfigLayerCache.getInstance(config.getProject());
+    }
+
+    /**
+     * Retrieves the on-disk parse cache shared by all projects, located under the IDE system directory.
+     *
+     * @return persistent parse cache, or null when running without an IDE application
+     */
+    @Nullable
+    public synchronized PersistentParseCache getPersistentCache() {
+        if (persistentCache == null && ApplicationManager.getApplication() != null) {
+            persistentCache = new PersistentParseCache(Paths.get(PathManager.getSystemPath(), CACHE_DIRECTORY), CACHE_MAX_BYTES);
+        }
+        return persistentCache;
+    }
+
+    /**
+     * Retrieves the directory a volume of a run configuration is projected into, located under the IDE system directory. Each
+     * run configuration has a directory of its own holding one directory per volume.
+     *
+     * @param config run configuration
+     * @param name   volume name
+     * @return volume directory, which may not exist yet
+     */
+    public Path getVolumeDirectory(RunConfigurationBase config, String name) {
+        String owner = config.getProject().getBasePath() + '\0' + config.getName();
+        String id = ConfigFingerprint.hash(owner.getBytes(StandardCharsets.UTF_8)).substring(0, VOLUME_ID_LENGTH);
+        return Paths.get(PathManager.getSystemPath(), VOLUME_DIRECTORY, id, name.replaceAll("[^-_a-zA-Z0-9]", "_"));
+    }
+
+    @Override
+    public void dispose() {
+        resolved.clear();
+    }
+
+    /**
+     * Forgets resolved files affected by structural VFS changes. Content changes keep their resolution, they are detected by
+     * modification stamp.
+     *
+     * @param events VFS change events
+     */
+    void invalidate(List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+            if (!(event instanceof VFileContentChangeEvent)) {
+                resolved.clear();
+                return;
+            }
+        }
     }
 
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.support;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Identifies a specific revision of a configuration file by its resolved path, size, modification time and content hash.
+ */
+public final class ConfigFingerprint {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String path;
+    private final long length;
+    private final long timestamp;
+    private final String hash;
+
+    public ConfigFingerprint(String path, long length, long timestamp, String hash) {
+        this.path = path;
+        this.length = length;
+        this.timestamp = timestamp;
+        this.hash = hash;
+    }
+
+    /**
+     * Creates a fingerprint for file content read from a resolved path.
+     *
+     * @param path      resolved file path
+     * @param timestamp file modification time
+     * @param content   file content
+     * @return content fingerprint
+     */
+    public static ConfigFingerprint of(String path, long timestamp, byte[] content) {
+        return new ConfigFingerprint(path, content.length, timestamp, hash(content));
+    }
+
+    /**
+     * Creates a fingerprint for a configuration built from several files, such as a kustomization and the files it references.
+     * The hash covers the path and content of every input in order, so adding, removing or changing an input changes it.
+     *
+     * @param path   configuration file path
+     * @param inputs content of every file the configuration was built from by path
+     * @return content fingerprint, with a modification time of zero
+     */
+    public static ConfigFingerprint of(String path, Map<String, byte[]> inputs) {
+        MessageDigest digest = getDigest();
+        long length = 0;
+        for (Map.Entry<String, byte[]> input : inputs.entrySet()) {
+            byte[] content = input.getValue();
+            digest.update(input.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(Long.toString(content.length).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(content);
+            length += content.length;
+        }
+        return new ConfigFingerprint(path, length, 0, hex(digest.digest()));
+    }
+
+    /**
+     * Derives a fingerprint that also covers values a configuration took from the environment of the IDE, so a result parsed
+     * under one environment is never served for another.
+     *
+     * @param environment environment values by key, in a stable order
+     * @return fingerprint with a hash covering the environment values, or this fingerprint if there are none
+     */
+    public ConfigFingerprint withEnvironment(Map<String, String> environment) {
+        if (environment.isEmpty()) {
+            return this;
+        }
+        MessageDigest digest = getDigest();
+        digest.update(hash.getBytes(StandardCharsets.UTF_8));
+        for (Map.Entry<String, String> entry : environment.entrySet()) {
+            digest.update((byte) 0);
+            digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(entry.getValue().getBytes(StandardCharsets.UTF_8));
+        }
+        return new ConfigFingerprint(path, length, timestamp, hex(digest.digest()));
+    }
+
+    /**
+     * Computes a hex encoded SHA-256 digest of file content.
+     *
+     * @param content file content
+     * @return content hash
+     */
+    public static String hash(byte[] content) {
+        return hex(getDigest().digest(content));
+    }
+
+    private static MessageDigest getDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String hex(byte[] bytes) {
+        char[] result = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            result[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            result[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(result);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ConfigFingerprint that = (ConfigFingerprint) o;
+        return length == that.length
+                && timestamp == that.timestamp
+                && Objects.equals(path, that.path)
+                && Objects.equals(hash, that.hash);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(path, length, timestamp, hash);
+    }
+
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.support;
+
+import com.egoshard.intellij.k8s.parser.CompactMap;
+import com.egoshard.intellij.k8s.parser.SecretData;
+import com.egoshard.intellij.k8s.parser.ValueArena;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.LowMemoryWatcher;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Project level cache sharing parsed layers between the entries of all run configurations.
+ * <p>
+ * Layers are keyed by the fingerprint of the content they were parsed from and the resource name filter, so run configurations
+ * referencing the same file revision share a single parsed map. Lookups and insertions go through a concurrent map and never
+ * take a lock. Each layer is weighted by the size of its source content and once the total weight exceeds the limit the least
+ * recently used layers are evicted, by a single thread at a time. The whole cache is dropped when the IDE signals low memory.
+ * </p>
+ * <p>
+ * Values of at least {@value #OFF_HEAP_THRESHOLD} bytes, or the size set by the {@value #PROPERTY_OFF_HEAP_THRESHOLD} system
+ * property, are moved out of the IDE heap into a {@link ValueArena} owned by the layer. The arenas of all layers share one
+ * {@link ValueArena.Pool}, so a value found in several files is held off-heap once. The arena is released when the layer is
+ * evicted or dropped, entries still holding the layer parse their file again. A threshold of zero or less keeps all values on
+ * the heap.
+ * </p>
+ */
+public class ConfigLayerCache {
+
+    private static final long MAX_WEIGHT = 32L * 1024 * 1024;
+    private static final int ENTRY_WEIGHT = 64;
+    static final String PROPERTY_OFF_HEAP_THRESHOLD = "k8s.config.offHeapThreshold";
+    static final int OFF_HEAP_THRESHOLD = 256 * 1024;
+
+    private final Map<Key, Node> layers = new ConcurrentHashMap<>();
+    private final AtomicLong weight = new AtomicLong();
+    private final AtomicLong clock = new AtomicLong();
+    private final ValueArena.Pool pool = new ValueArena.Pool();
+    private final ReentrantLock eviction = new ReentrantLock();
+    private final long maxWeight;
+    private final int offHeapThreshold;
+
+    public ConfigLayerCache(Project project) {
+        this(MAX_WEIGHT, Integer.getInteger(PROPERTY_OFF_HEAP_THRESHOLD, OFF_HEAP_THRESHOLD));
+        LowMemoryWatcher.register(this::clear, project);
+    }
+
+    ConfigLayerCache(long maxWeight, int offHeapThreshold) {
+        this.maxWeight = maxWeight;
+        this.offHeapThreshold = offHeapThreshold;
+    }
+
+    /**
+     * @param project project the run configuration belongs to
+     * @return layer cache of the project, or null if there is no open project
+     */
+    @Nullable
+    public static ConfigLayerCache getInstance(@Nullable Project project) {
+        return project == null || project.isDisposed() ? null : ServiceManager.getService(project, ConfigLayerCache.class);
+    }
+
+    /**
+     * @param fingerprint fingerprint of the source content
+     * @param filter      resource name filter the layer was parsed with, null if unfiltered
+     * @return shared layer, or null if none was parsed from the content or it was evicted
+     */
+    @Nullable
+    public Map<String, String> get(ConfigFingerprint fingerprint, @Nullable String filter) {
+        Node node = layers.get(new Key(fingerprint, filter));
+        if (node == null) {
+            return null;
+        }
+        node.access = clock.incrementAndGet();
+        return node.layer;
+    }
+
+    /**
+     * Shares a parsed layer. The layer must not be modified afterwards.
+     *
+     * @param fingerprint fingerprint of the source content
+     * @param filter      resource name filter the layer was parsed with, null if unfiltered
+     * @param layer       unmodifiable parsed layer
+     * @return the layer shared for the content, which is an earlier layer if another entry shared one first. Large values of the
+     * shared layer may be held off-heap.
+     */
+    public Map<String, String> put(ConfigFingerprint fingerprint, @Nullable String filter, Map<String, String> layer) {
+        ValueArena arena = new ValueArena(pool);
+        Node node = new Node(moveOffHeap(layer, arena), arena, ENTRY_WEIGHT + fingerprint.getLength(), clock.incrementAndGet());
+        Node previous = layers.putIfAbsent(new Key(fingerprint, filter), node);
+        if (previous != null) {
+            arena.release();
+            previous.access = node.access;
+            return previous.layer;
+        }
+        if (weight.addAndGet(node.weight) > maxWeight) {
+            evict();
+        }
+        return node.layer;
+    }
+
+    /**
+     * Drops all shared layers.
+     */
+    public void clear() {
+        layers.forEach((key, node) -> remove(key, node));
+    }
+
+    /**
+     * @return total weight of the shared layers
+     */
+    long getWeight() {
+        return weight.get();
+    }
+
+    /**
+     * @return number of bytes held off-heap by the shared layers, values found in several layers counted once
+     */
+    long getOffHeapSize() {
+        return pool.getSize();
+    }
+
+    private Map<String, String> moveOffHeap(Map<String, String> layer, ValueArena arena) {
+        if (offHeapThreshold <= 0) {
+            return layer;
+        } else if (layer instanceof SecretData) {
+            return ((SecretData) layer).moveOffHeap(arena, offHeapThreshold);
+        }
+        return layer instanceof CompactMap ? ((CompactMap) layer).moveOffHeap(arena, offHeapThreshold) : layer;
+    }
+
+    /**
+     * Evicts least recently used layers until the total weight is within the limit. Threads finding another thread evicting
+     * leave the work to it, the evicting thread checks the weight again after releasing the lock to pick up their insertions.
+     */
+    private void evict() {
+        while (weight.get() > maxWeight && eviction.tryLock()) {
+            try {
+                List<Map.Entry<Key, Node>> candidates = new ArrayList<>(layers.entrySet());
+                candidates.sort(Comparator.comparingLong(entry -> entry.getValue().access));
+                for (Map.Entry<Key, Node> candidate : candidates) {
+                    if (weight.get() <= maxWeight) {
+                        break;
+                    }
+                    remove(candidate.getKey(), candidate.getValue());
+                }
+            } finally {
+                eviction.unlock();
+            }
+        }
+    }
+
+    private void remove(Key key, Node node) {
+        if (layers.remove(key, node)) {
+            weight.addAndGet(-node.weight);
+            node.arena.release();
+        }
+    }
+
+    /**
+     * Source content and name filter of a layer.
+     */
+    private static final class Key {
+
+        private final ConfigFingerprint fingerprint;
+        private final String filter;
+
+        Key(ConfigFingerprint fingerprint, @Nullable String filter) {
+            this.fingerprint = fingerprint;
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key that = (Key) o;
+            return fingerprint.getPath().equals(that.fingerprint.getPath())
+                    && fingerprint.getHash().equals(that.fingerprint.getHash())
+                    && Objects.equals(filter, that.filter);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fingerprint.getPath(), fingerprint.getHash(), filter);
+        }
+
+    }
+
+    /**
+     * Shared layer with the arena of its off-heap values, its weight and last access time.
+     */
+    private static final class Node {
+
+        private final Map<String, String> layer;
+        private final ValueArena arena;
+        private final long weight;
+        private volatile long access;
+
+        Node(Map<String, String> layer, ValueArena arena, long weight, long access) {
+            this.layer = layer;
+            this.arena = arena;
+            this.weight = weight;
+            this.access = access;
+        }
+
+    }
+
+}
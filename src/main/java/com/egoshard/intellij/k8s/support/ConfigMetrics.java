@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.support;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Plugin wide performance metrics.
+ * <p>
+ * Values are recorded into lock free histograms with power of two buckets, so recording costs a handful of atomic operations
+ * and percentiles are reported as the upper bound of their bucket. Metrics are kept since startup and can be rendered as a text
+ * summary or written as a JSON dump.
+ * </p>
+ */
+public final class ConfigMetrics {
+
+    public static final String ENTRY_PARSE = "entry.parse.nanos";
+    public static final String ENTRY_BYTES = "entry.bytes";
+    public static final String ENTRY_DOCUMENTS = "entry.documents";
+    public static final String ENTRY_KEYS = "entry.keys";
+    public static final String EDITOR_PARSE = "editor.parse.nanos";
+    public static final String EDITOR_VALIDATE = "editor.validate.nanos";
+    public static final String INJECT = "inject.nanos";
+
+    private static final String SUFFIX_NANOS = ".nanos";
+    private static final String MSG_SUMMARY = "%s: count=%d, mean=%s, p50=%s, p90=%s, p99=%s, max=%s%n";
+    private static final String MSG_CACHE = "%s cache: hits=%d, misses=%d, hit rate=%.1f%%%n";
+    private static final String JSON_HISTOGRAM = "\"%s\":{\"count\":%d,\"sum\":%d,\"max\":%d,\"p50\":%d,\"p90\":%d,\"p99\":%d}";
+    private static final String JSON_CACHE = "\"%s\":{\"hits\":%d,\"misses\":%d}";
+
+    private static final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    private ConfigMetrics() {
+    }
+
+    /**
+     * @param name metric name
+     * @return histogram of the metric, created on first use
+     */
+    public static Histogram get(String name) {
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**
+     * Records a value into a metric.
+     *
+     * @param name  metric name
+     * @param value recorded value, negative values are recorded as zero
+     */
+    public static void record(String name, long value) {
+        get(name).record(value);
+    }
+
+    /**
+     * @return start time to be passed to {@link #stop(String, long)}
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the time elapsed since a start time into a metric.
+     *
+     * @param name  metric name
+     * @param start value returned by {@link #start()}
+     */
+    public static void stop(String name, long start) {
+        record(name, System.nanoTime() - start);
+    }
+
+    /**
+     * Discards all recorded values.
+     */
+    public static void reset() {
+        histograms.clear();
+    }
+
+    /**
+     * Renders a human readable summary, durations are reported in milliseconds.
+     *
+     * @param persistentCache persistent parse cache to report hit rates for, null if there is none
+     * @return summary text
+     */
+    public static String getSummary(@Nullable PersistentParseCache persistentCache) {
+        StringBuilder builder = new StringBuilder();
+        getSnapshot().forEach((name, histogram) -> builder.append(String.format(Locale.ROOT, MSG_SUMMARY,
+                name,
+                histogram.getCount(),
+                format(name, histogram.getCount() == 0 ? 0 : histogram.getSum() / histogram.getCount()),
+                format(name, histogram.getPercentile(0.5)),
+                format(name, histogram.getPercentile(0.9)),
+                format(name, histogram.getPercentile(0.99)),
+                format(name, histogram.getMax()))));
+        appendCache(builder, "Memory", ParseCache.getHitCount(), ParseCache.getMissCount());
+        if (persistentCache != null) {
+            appendCache(builder, "Persistent", persistentCache.getHitCount(), persistentCache.getMissCount());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Renders a machine readable JSON dump, durations are reported in nanoseconds.
+     *
+     * @param persistentCache persistent parse cache to report hit rates for, null if there is none
+     * @return JSON document
+     */
+    public static String toJson(@Nullable PersistentParseCache persistentCache) {
+        StringBuilder builder = new StringBuilder("{\"timestamp\":").append(System.currentTimeMillis()).append(",\"metrics\":{");
+        String separator = "";
+        for (Map.Entry<String, Histogram> entry : getSnapshot().entrySet()) {
+            Histogram histogram = entry.getValue();
+            builder.append(separator).append(String.format(Locale.ROOT, JSON_HISTOGRAM,
+                    entry.getKey(),
+                    histogram.getCount(),
+                    histogram.getSum(),
+                    histogram.getMax(),
+                    histogram.getPercentile(0.5),
+                    histogram.getPercentile(0.9),
+                    histogram.getPercentile(0.99)));
+            separator = ",";
+        }
+        builder.append("},\"caches\":{")
+                .append(String.format(Locale.ROOT, JSON_CACHE, "memory", ParseCache.getHitCount(), ParseCache.getMissCount()));
+        if (persistentCache != null) {
+            builder.append(',').append(String.format(Locale.ROOT, JSON_CACHE, "persistent",
+                    persistentCache.getHitCount(), persistentCache.getMissCount()));
+        }
+        return builder.append("}}").toString();
+    }
+
+    /**
+     * Writes the JSON dump to a file, replacing any previous dump.
+     *
+     * @param file            dump file
+     * @param persistentCache persistent parse cache to report hit rates for, null if there is none
+     * @throws IOException if the file cannot be written
+     */
+    public static void dump(Path file, @Nullable PersistentParseCache persistentCache) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), null);
+        try {
+            Files.write(temp, toJson(persistentCache).getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static Map<String, Histogram> getSnapshot() {
+        return new TreeMap<>(histograms);
+    }
+
+    private static void appendCache(StringBuilder builder, String name, long hits, long misses) {
+        long total = hits + misses;
+        builder.append(String.format(Locale.ROOT, MSG_CACHE, name, hits, misses, total == 0 ? 0.0 : hits * 100.0 / total));
+    }
+
+    private static String format(String name, long value) {
+        return name.endsWith(SUFFIX_NANOS) ? String.format(Locale.ROOT, "%.3fms", value / 1e6) : Long.toString(value);
+    }
+
+    /**
+     * Histogram of non-negative values with one bucket per power of two.
+     */
+    public static final class Histogram {
+
+        private static final int BUCKETS = Long.SIZE;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        Histogram() {
+        }
+
+        /**
+         * @param value recorded value, negative values are recorded as zero
+         */
+        public void record(long value) {
+            long bounded = Math.max(0, value);
+            buckets.incrementAndGet(getBucket(bounded));
+            count.increment();
+            sum.add(bounded);
+            max.accumulate(bounded);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getSum() {
+            return sum.sum();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * @param quantile quantile between 0 and 1
+         * @return upper bound of the bucket holding the quantile, never more than the maximum recorded value
+         */
+        public long getPercentile(double quantile) {
+            long total = getCount();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(getUpperBound(i), getMax());
+                }
+            }
+            return getMax();
+        }
+
+        private static int getBucket(long value) {
+            return value == 0 ? 0 : BUCKETS - Long.numberOfLeadingZeros(value) - 1;
+        }
+
+        private static long getUpperBound(int bucket) {
+            return bucket >= BUCKETS - 2 ? Long.MAX_VALUE : (2L << bucket) - 1;
+        }
+
+    }
+
+}
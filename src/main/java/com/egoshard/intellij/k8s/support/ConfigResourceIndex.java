@@ -0,0 +1,363 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.support;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileBasedIndexExtension;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.reader.UnicodeReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * File based index of the Kubernetes manifests declared in YAML files.
+ * <p>
+ * Every manifest document, including the documents of multi-document files and the items of {@code kind: List} files, is
+ * indexed by its kind and by its kind and {@code metadata.name}. Each entry records the namespace, name, data keys and document
+ * position of the manifest, so finding the files that declare a resource does not read any file. Files that cannot be parsed
+ * are indexed as empty.
+ * </p>
+ * <p>
+ * The index is maintained by the IDE in the background and cannot be queried while it is being updated, queries return null
+ * then and callers fall back to reading files.
+ * </p>
+ */
+public class ConfigResourceIndex extends FileBasedIndexExtension<String, List<ConfigResourceIndex.Resource>> {
+
+    public static final ID<String, List<Resource>> NAME = ID.create("com.egoshard.intellij.k8s.resources");
+
+    private static final Logger logger = Logger.getInstance(ConfigResourceIndex.class);
+    private static final String MSG_FILE_IGNORED = "Unable to index K8s manifest file, [%s], it is indexed as empty.";
+    private static final int VERSION = 1;
+    private static final String KEY_KIND = "kind";
+    private static final String KEY_ITEMS = "items";
+    private static final String KEY_METADATA = "metadata";
+    private static final String KEY_NAME = "name";
+    private static final String KEY_NAMESPACE = "namespace";
+    private static final String KIND_LIST = "List";
+    private static final List<String> EXTENSIONS = Collections.unmodifiableList(Arrays.asList("yaml", "yml"));
+    private static final List<String> DATA_SECTIONS = Collections.unmodifiableList(Arrays.asList(
+            "data", "stringData", "binaryData"));
+
+    @NotNull
+    @Override
+    public ID<String, List<Resource>> getName() {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, List<Resource>, FileContent> getIndexer() {
+        return content -> index(content.getContent(), content.getFile().getPath());
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public DataExternalizer<List<Resource>> getValueExternalizer() {
+        return new ResourceExternalizer();
+    }
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return ConfigResourceIndex::isManifestFile;
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    /**
+     * @param file candidate file
+     * @return true if the file may hold manifests and is indexed
+     */
+    public static boolean isManifestFile(VirtualFile file) {
+        return !file.isDirectory() && EXTENSIONS.contains(file.getExtension());
+    }
+
+    /**
+     * Finds the project files declaring manifests of some kinds.
+     *
+     * @param project project to search
+     * @param kinds   manifest kinds
+     * @return declaring files, or null while the index is being updated
+     */
+    @Nullable
+    public static Set<VirtualFile> getFiles(Project project, Collection<String> kinds) {
+        return ReadAction.compute(() -> {
+            if (DumbService.isDumb(project)) {
+                return null;
+            }
+            Set<VirtualFile> result = new LinkedHashSet<>();
+            GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+            kinds.forEach(kind -> result.addAll(FileBasedIndex.getInstance().getContainingFiles(NAME, kind, scope)));
+            return result;
+        });
+    }
+
+    /**
+     * Finds the project manifests of a kind and name.
+     *
+     * @param project project to search
+     * @param kind    manifest kind
+     * @param name    manifest {@code metadata.name}
+     * @return manifests by declaring file, or null while the index is being updated
+     */
+    @Nullable
+    public static Map<VirtualFile, List<Resource>> find(Project project, String kind, String name) {
+        return ReadAction.compute(() -> {
+            if (DumbService.isDumb(project)) {
+                return null;
+            }
+            Map<VirtualFile, List<Resource>> result = new LinkedHashMap<>();
+            FileBasedIndex.getInstance().processValues(NAME, getKey(kind, name), null, (file, resources) -> {
+                result.computeIfAbsent(file, key -> new ArrayList<>()).addAll(resources);
+                return true;
+            }, GlobalSearchScope.projectScope(project));
+            return result;
+        });
+    }
+
+    /**
+     * Indexes the manifests of a file.
+     *
+     * @param content file content
+     * @param path    file path, only used for logging
+     * @return manifests by kind key and by kind and name key
+     */
+    static Map<String, List<Resource>> index(byte[] content, String path) {
+        Map<String, List<Resource>> result = new HashMap<>();
+        try {
+            int document = 0;
+            for (Object loaded : new Yaml(new SafeConstructor()).loadAll(new UnicodeReader(new ByteArrayInputStream(content)))) {
+                for (Map<?, ?> manifest : getManifests(loaded)) {
+                    Resource resource = getResource(manifest, document);
+                    if (resource != null) {
+                        result.computeIfAbsent(resource.kind, key -> new ArrayList<>()).add(resource);
+                        if (resource.name != null) {
+                            result.computeIfAbsent(getKey(resource.kind, resource.name), key -> new ArrayList<>()).add(resource);
+                        }
+                    }
+                }
+                document++;
+            }
+            return result;
+        } catch (YAMLException e) {
+            logger.debug(String.format(MSG_FILE_IGNORED, path), e);
+            return Collections.emptyMap();
+        }
+    }
+
+    static String getKey(String kind, String name) {
+        return kind + '\0' + name;
+    }
+
+    @Nullable
+    private static Resource getResource(Map<?, ?> manifest, int document) {
+        Object kind = manifest.get(KEY_KIND);
+        if (!(kind instanceof String)) {
+            return null;
+        }
+        Map<?, ?> metadata = getMap(manifest.get(KEY_METADATA));
+        Set<String> keys = new LinkedHashSet<>();
+        DATA_SECTIONS.forEach(section -> getMap(manifest.get(section)).keySet().forEach(key -> keys.add(String.valueOf(key))));
+        return new Resource((String) kind, getString(metadata.get(KEY_NAMESPACE)), getString(metadata.get(KEY_NAME)),
+                new ArrayList<>(keys), document);
+    }
+
+    private static List<Map<?, ?>> getManifests(Object document) {
+        Map<?, ?> manifest = getMap(document);
+        if (!KIND_LIST.equals(manifest.get(KEY_KIND)) || !(manifest.get(KEY_ITEMS) instanceof List)) {
+            return manifest.isEmpty() ? Collections.emptyList() : Collections.singletonList(manifest);
+        }
+        return ((List<?>) manifest.get(KEY_ITEMS)).stream()
+                .map(ConfigResourceIndex::getMap)
+                .filter(item -> !item.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    private static Map<?, ?> getMap(@Nullable Object value) {
+        return value instanceof Map ? (Map<?, ?>) value : Collections.emptyMap();
+    }
+
+    @Nullable
+    private static String getString(@Nullable Object value) {
+        return value == null ? null : String.valueOf(value);
+    }
+
+    /**
+     * Indexed manifest.
+     */
+    public static final class Resource {
+
+        private final String kind;
+        private final String namespace;
+        private final String name;
+        private final List<String> keys;
+        private final int document;
+
+        Resource(String kind, @Nullable String namespace, @Nullable String name, List<String> keys, int document) {
+            this.kind = kind;
+            this.namespace = namespace;
+            this.name = name;
+            this.keys = Collections.unmodifiableList(keys);
+            this.document = document;
+        }
+
+        public String getKind() {
+            return kind;
+        }
+
+        /**
+         * @return {@code metadata.namespace}, or null if the manifest does not set one
+         */
+        @Nullable
+        public String getNamespace() {
+            return namespace;
+        }
+
+        /**
+         * @return {@code metadata.name}, or null if the manifest has no name
+         */
+        @Nullable
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return keys of the {@code data}, {@code stringData} and {@code binaryData} sections in declaration order
+         */
+        public List<String> getKeys() {
+            return keys;
+        }
+
+        /**
+         * @return zero based position of the YAML document declaring the manifest
+         */
+        public int getDocument() {
+            return document;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Resource that = (Resource) o;
+            return document == that.document
+                    && kind.equals(that.kind)
+                    && Objects.equals(namespace, that.namespace)
+                    && Objects.equals(name, that.name)
+                    && keys.equals(that.keys);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, namespace, name, keys, document);
+        }
+
+    }
+
+    /**
+     * Writes indexed manifests, absent namespaces and names are written as empty strings.
+     */
+    static final class ResourceExternalizer implements DataExternalizer<List<Resource>> {
+
+        @Override
+        public void save(@NotNull DataOutput out, List<Resource> value) throws IOException {
+            DataInputOutputUtil.writeINT(out, value.size());
+            for (Resource resource : value) {
+                IOUtil.writeUTF(out, resource.kind);
+                IOUtil.writeUTF(out, resource.namespace == null ? "" : resource.namespace);
+                IOUtil.writeUTF(out, resource.name == null ? "" : resource.name);
+                DataInputOutputUtil.writeINT(out, resource.document);
+                DataInputOutputUtil.writeINT(out, resource.keys.size());
+                for (String key : resource.keys) {
+                    IOUtil.writeUTF(out, key);
+                }
+            }
+        }
+
+        @Override
+        public List<Resource> read(@NotNull DataInput in) throws IOException {
+            int size = DataInputOutputUtil.readINT(in);
+            List<Resource> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                String kind = IOUtil.readUTF(in);
+                String namespace = IOUtil.readUTF(in);
+                String name = IOUtil.readUTF(in);
+                int document = DataInputOutputUtil.readINT(in);
+                int count = DataInputOutputUtil.readINT(in);
+                List<String> keys = new ArrayList<>(count);
+                for (int j = 0; j < count; j++) {
+                    keys.add(IOUtil.readUTF(in));
+                }
+                result.add(new Resource(kind, namespace.isEmpty() ? null : namespace, name.isEmpty() ? null : name, keys, document));
+            }
+            return result;
+        }
+
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.support;
+
+import com.egoshard.intellij.k8s.parser.SecretData;
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Projects configuration keys into a directory the way a Kubernetes volume mount does, one file per key.
+ * <p>
+ * Updates are incremental. A digest of the source value of every written key is remembered, never the value itself, and only
+ * keys whose digest changed are written again, each through a temporary file that is atomically renamed into place so a running process never reads a partially
+ * written file. Keys that no longer exist are deleted. Encoded values are decoded straight into the file channel, binary data
+ * is never held as text. Files found in the directory when it is first updated in a session are written again.
+ * </p>
+ */
+public class ConfigVolume {
+
+    private static final Logger logger = Logger.getInstance(ConfigVolume.class);
+    private static final String TEMP_PREFIX = "..";
+    private static final Pattern KEY_PATTERN = Pattern.compile("[-._a-zA-Z0-9]+");
+    private static final String MSG_INVALID_KEY = "The key [%s] is not a valid file name and is not projected into the volume.";
+
+    private static final Map<Path, ConfigVolume> volumes = new ConcurrentHashMap<>();
+
+    private final Path directory;
+    private Map<String, Source> written;
+
+    ConfigVolume(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param directory volume directory
+     * @return volume projected into the directory, shared by every caller using the same directory
+     */
+    public static ConfigVolume get(Path directory) {
+        return volumes.computeIfAbsent(directory.toAbsolutePath().normalize(), ConfigVolume::new);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Brings the files of the volume up to date.
+     *
+     * @param layers volume layers from generic to specific, later layers taking precedence
+     * @return number of files written
+     * @throws IOException              if the directory or a file cannot be written
+     * @throws IllegalArgumentException naming the key if an encoded value is not valid base64
+     */
+    public synchronized int update(List<SecretData> layers) throws IOException {
+        Map<String, SecretData> winners = new HashMap<>();
+        for (SecretData layer : layers) {
+            layer.getCandidateKeys().forEach(key -> winners.put(key, layer));
+        }
+        Files.createDirectories(directory);
+        Map<String, Source> previous = written == null ? list() : written;
+        Map<String, Source> current = new HashMap<>(Math.max(16, winners.size() * 2));
+        written = null;
+        int count = 0;
+        for (Map.Entry<String, SecretData> winner : winners.entrySet()) {
+            String key = winner.getKey();
+            if (!isValidKey(key)) {
+                logger.warn(String.format(MSG_INVALID_KEY, key));
+                continue;
+            }
+            Source source = Source.of(winner.getValue(), key);
+            Path file = directory.resolve(key);
+            if (!source.equals(previous.get(key)) || !Files.exists(file)) {
+                write(file, winner.getValue(), key);
+                count++;
+            }
+            current.put(key, source);
+        }
+        for (String key : previous.keySet()) {
+            if (!current.containsKey(key)) {
+                Files.deleteIfExists(directory.resolve(key));
+            }
+        }
+        written = current;
+        return count;
+    }
+
+    private Map<String, Source> list() throws IOException {
+        Map<String, Source> result = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String key = file.getFileName().toString();
+                if (key.startsWith(TEMP_PREFIX)) {
+                    Files.deleteIfExists(file);
+                } else if (Files.isRegularFile(file)) {
+                    result.put(key, new Source(null));
+                }
+            }
+        }
+        return result;
+    }
+
+    private void write(Path file, SecretData layer, String key) throws IOException {
+        Path temp = directory.resolve(TEMP_PREFIX + key);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                layer.transferTo(key, channel);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Keys must be valid Kubernetes configuration keys, which also makes them safe file names inside the volume directory.
+     */
+    static boolean isValidKey(String key) {
+        return KEY_PATTERN.matcher(key).matches() && !key.equals(".") && !key.startsWith(TEMP_PREFIX);
+    }
+
+    /**
+     * Digest of the source value of a written key, compared to tell whether the file needs to be written again. Files of
+     * unknown content have no digest and never match.
+     */
+    private static final class Source {
+
+        private final byte[] digest;
+
+        Source(byte[] digest) {
+            this.digest = digest;
+        }
+
+        static Source of(SecretData layer, String key) {
+            return new Source(layer.digest(key));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Source that = (Source) o;
+            return digest != null && Arrays.equals(digest, that.digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(digest);
+        }
+
+    }
+
+}
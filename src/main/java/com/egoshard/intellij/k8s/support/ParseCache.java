@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.support;
+
+import com.egoshard.intellij.k8s.parser.ConfigInterner;
+import com.egoshard.intellij.k8s.parser.ConfigLayers;
+import com.egoshard.intellij.k8s.parser.SecretData;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the parsed result of a single configuration entry against the fingerprint of the file it was parsed from.
+ * <p>
+ * The VFS modification stamp of the file is remembered alongside the fingerprint so an unchanged file can be recognised without
+ * reading its content. A result whose off-heap values were released by the {@link ConfigLayerCache} is no longer served.
+ * </p>
+ */
+public class ParseCache {
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private long stamp = ConfigFileUtil.STAMP_UNKNOWN;
+    private ConfigFingerprint fingerprint;
+    private Map<String, String> result;
+
+    /**
+     * Retrieves the cached result if the file has not been modified since it was parsed.
+     *
+     * @param stamp current modification stamp of the file
+     * @return cached key/value pairs or null if the file may have changed
+     */
+    @Nullable
+    public synchronized Map<String, String> get(long stamp) {
+        if (stamp != ConfigFileUtil.STAMP_UNKNOWN && stamp == this.stamp && isAvailable()) {
+            hits.incrementAndGet();
+            return result;
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the cached result if it was parsed from a file matching the provided fingerprint.
+     *
+     * @param stamp       current modification stamp of the file
+     * @param fingerprint fingerprint of the current file content, null if the file could not be fingerprinted
+     * @return cached key/value pairs or null if the cache does not hold a result for the fingerprint
+     */
+    @Nullable
+    public synchronized Map<String, String> get(long stamp, @Nullable ConfigFingerprint fingerprint) {
+        if (fingerprint != null && fingerprint.equals(this.fingerprint) && isAvailable()) {
+            this.stamp = stamp;
+            hits.incrementAndGet();
+            return result;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores a parsed result against the fingerprint of the file it was parsed from.
+     *
+     * @param stamp       modification stamp of the parsed file
+     * @param fingerprint fingerprint of the parsed file content, results without a fingerprint are not cached
+     * @param result      parsed key/value pairs
+     * @return an unmodifiable copy of the result holding canonical keys and large values, see {@link ConfigInterner}. Lazily
+     * decoded Secret data is kept encoded so it is only decoded when read, but detached from the source buffer of the file
+     */
+    public synchronized Map<String, String> put(long stamp, @Nullable ConfigFingerprint fingerprint, Map<String, String> result) {
+        Map<String, String> value = result instanceof SecretData
+                ? ((SecretData) result).detach()
+                : ConfigInterner.canonicalize(result);
+        if (fingerprint != null) {
+            this.stamp = stamp;
+            this.fingerprint = fingerprint;
+            this.result = value;
+        }
+        return value;
+    }
+
+    /**
+     * Stores a result shared through the {@link ConfigLayerCache} as is, so entries of the same content hold the same map.
+     *
+     * @param stamp       modification stamp of the parsed file
+     * @param fingerprint fingerprint of the parsed file content
+     * @param result      unmodifiable shared key/value pairs
+     * @return the result
+     */
+    public synchronized Map<String, String> putShared(long stamp, ConfigFingerprint fingerprint, Map<String, String> result) {
+        this.stamp = stamp;
+        this.fingerprint = fingerprint;
+        this.result = result;
+        return result;
+    }
+
+    private boolean isAvailable() {
+        return result != null && !ConfigLayers.isReleased(result);
+    }
+
+    /**
+     * Discards any cached result.
+     */
+    public synchronized void invalidate() {
+        this.stamp = ConfigFileUtil.STAMP_UNKNOWN;
+        this.fingerprint = null;
+        this.result = null;
+    }
+
+    /**
+     * @return number of lookups answered from cache since startup.
+     */
+    public static long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of lookups that required a file to be parsed since startup.
+     */
+    public static long getMissCount() {
+        return misses.get();
+    }
+
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.support;
+
+import com.egoshard.intellij.k8s.parser.ConfigParser;
+import com.egoshard.intellij.k8s.parser.SecretData;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches parsed configuration entries on disk so they survive IDE restarts.
+ * <p>
+ * Entries are keyed by the content hash of the parsed file, the resource name filter of the entry and the
+ * {@link ConfigParser#RESULT_VERSION}, so every project that references the same manifest shares a single cache entry and
+ * results of an older parser are never read back, they age out of the cache instead. Each entry is stored as one AES-GCM encrypted file, which is
+ * memory-mapped when read. The encryption key is derived from the content hash, which is never written to disk, so cached
+ * values are only readable by someone who already holds the manifest they were parsed from. Lazily decoded Secret values are
+ * stored still encoded and stay lazy when read back. The cache is bounded in total size and evicts the least recently used
+ * entries first. Temporary files left behind by a session that ended while writing an entry are deleted when the cache is
+ * first used.
+ * </p>
+ */
+public class PersistentParseCache {
+
+    private static final Logger logger = Logger.getInstance(PersistentParseCache.class);
+    private static final String MSG_READ_FAIL = "Discarding unreadable K8s config cache entry, [%s].";
+    private static final String MSG_WRITE_FAIL = "Unable to write K8s config cache entry, [%s].";
+    private static final String MSG_INDEX_FAIL = "Unable to index K8s config cache directory, [%s].";
+
+    private static final int MAGIC = 0x4B38534C;
+    private static final byte VERSION = 2;
+    private static final int IV_LENGTH = 12;
+    private static final int KEY_LENGTH = 16;
+    private static final int TAG_BITS = 128;
+    private static final int HEADER_LENGTH = Integer.BYTES + 1 + IV_LENGTH;
+    private static final String CIPHER = "AES/GCM/NoPadding";
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final String DOMAIN_FILE = "k8s-config-cache/file/v1";
+    private static final String DOMAIN_KEY = "k8s-config-cache/key/v1";
+    private static final String SUFFIX = ".bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final SecureRandom random = new SecureRandom();
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final long created = System.currentTimeMillis();
+    private boolean indexed;
+    private long size;
+
+    /**
+     * @param directory directory holding the cache files, created on first write
+     * @param maxBytes  maximum total size of the cache files
+     */
+    public PersistentParseCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Retrieves the cached result for file content with the provided hash.
+     *
+     * @param hash content hash of the parsed file
+     * @param name resource name filter of the entry, null if the entry is not filtered by name
+     * @return cached key/value pairs or null if the cache does not hold a readable result
+     */
+    @Nullable
+    public Map<String, String> get(String hash, @Nullable String name) {
+        String file = getFileName(hash, name);
+        synchronized (this) {
+            loadIndex();
+            if (index.get(file) == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+        }
+        Path path = directory.resolve(file);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Map<String, String> result = decode(decrypt(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), hash, file));
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            hits.incrementAndGet();
+            return result;
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            logger.debug(String.format(MSG_READ_FAIL, path), e);
+            remove(file);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Stores a parsed result for file content with the provided hash, evicting least recently used entries if the cache grows
+     * beyond its maximum size.
+     *
+     * @param hash   content hash of the parsed file
+     * @param name   resource name filter of the entry, null if the entry is not filtered by name
+     * @param result parsed key/value pairs
+     */
+    public void put(String hash, @Nullable String name, Map<String, String> result) {
+        String file = getFileName(hash, name);
+        Path path = directory.resolve(file);
+        try {
+            byte[] content = encrypt(encode(result), hash, file);
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, file, TEMP_SUFFIX);
+            try {
+                Files.write(temp, content);
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            synchronized (this) {
+                loadIndex();
+                Long previous = index.put(file, (long) content.length);
+                size += content.length - (previous == null ? 0 : previous);
+                evict();
+            }
+        } catch (IOException | GeneralSecurityException e) {
+            logger.warn(String.format(MSG_WRITE_FAIL, path), e);
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return total size of the cache files in bytes
+     */
+    public synchronized long getSize() {
+        loadIndex();
+        return size;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> eldest = index.entrySet().iterator();
+        while (size > maxBytes && index.size() > 1 && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            eldest.remove();
+            size -= entry.getValue();
+            delete(entry.getKey());
+        }
+    }
+
+    private synchronized void remove(String file) {
+        Long previous = index.remove(file);
+        if (previous != null) {
+            size -= previous;
+        }
+        delete(file);
+    }
+
+    private void delete(String file) {
+        try {
+            Files.deleteIfExists(directory.resolve(file));
+        } catch (IOException e) {
+            logger.debug(String.format(MSG_WRITE_FAIL, file), e);
+        }
+    }
+
+    /**
+     * Indexes the files written by earlier sessions, oldest access first, the first time the cache is used. Temporary files
+     * older than the cache are orphans of a session that ended while writing and are deleted.
+     */
+    private void loadIndex() {
+        if (indexed) {
+            return;
+        }
+        indexed = true;
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            Map<Path, Long> accessed = new HashMap<>();
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    if (Files.getLastModifiedTime(file).toMillis() < created) {
+                        Files.deleteIfExists(file);
+                    }
+                } else if (name.endsWith(SUFFIX)) {
+                    files.add(file);
+                    accessed.put(file, Files.getLastModifiedTime(file).toMillis());
+                }
+            }
+            files.sort(Comparator.comparing(accessed::get));
+            for (Path file : files) {
+                long length = Files.size(file);
+                index.put(file.getFileName().toString(), length);
+                size += length;
+            }
+        } catch (IOException e) {
+            logger.warn(String.format(MSG_INDEX_FAIL, directory), e);
+        }
+    }
+
+    private byte[] encrypt(byte[] plain, String hash, String file) throws GeneralSecurityException {
+        byte[] iv = new byte[IV_LENGTH];
+        random.nextBytes(iv);
+        Cipher cipher = getCipher(Cipher.ENCRYPT_MODE, hash, file, iv);
+        ByteBuffer result = ByteBuffer.allocate(HEADER_LENGTH + cipher.getOutputSize(plain.length));
+        result.putInt(MAGIC).put(VERSION).put(iv);
+        cipher.doFinal(ByteBuffer.wrap(plain), result);
+        return result.array();
+    }
+
+    private ByteBuffer decrypt(ByteBuffer content, String hash, String file) throws GeneralSecurityException {
+        if (content.remaining() < HEADER_LENGTH || content.getInt() != MAGIC || content.get() != VERSION) {
+            throw new GeneralSecurityException(String.format(MSG_READ_FAIL, file));
+        }
+        byte[] iv = new byte[IV_LENGTH];
+        content.get(iv);
+        Cipher cipher = getCipher(Cipher.DECRYPT_MODE, hash, file, iv);
+        ByteBuffer result = ByteBuffer.allocate(cipher.getOutputSize(content.remaining()));
+        cipher.doFinal(content, result);
+        result.flip();
+        return result;
+    }
+
+    private static Cipher getCipher(int mode, String hash, String file, byte[] iv) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(CIPHER);
+        byte[] key = Arrays.copyOf(digest(DOMAIN_KEY, hash), KEY_LENGTH);
+        cipher.init(mode, new SecretKeySpec(key, "AES"), new GCMParameterSpec(TAG_BITS, iv));
+        cipher.updateAAD(file.getBytes(StandardCharsets.UTF_8));
+        return cipher;
+    }
+
+    private static byte[] encode(Map<String, String> result) throws IOException {
+        Map<String, String> plain = result instanceof SecretData ? ((SecretData) result).getPlain() : result;
+        Map<String, Object> encoded = result instanceof SecretData ? ((SecretData) result).getEncoded() : Collections.emptyMap();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeInt(plain.size());
+            for (Map.Entry<String, String> entry : plain.entrySet()) {
+                writeString(output, entry.getKey());
+                writeString(output, entry.getValue());
+            }
+            output.writeInt(encoded.size());
+            for (Map.Entry<String, Object> entry : encoded.entrySet()) {
+                writeString(output, entry.getKey());
+                writeString(output, entry.getValue() == null ? null : entry.getValue().toString());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static Map<String, String> decode(ByteBuffer content) {
+        int count = content.getInt();
+        Map<String, String> plain = new HashMap<>(Math.max(16, count * 2));
+        for (int i = 0; i < count; i++) {
+            plain.put(readString(content), readString(content));
+        }
+        count = content.getInt();
+        if (count == 0) {
+            return plain;
+        }
+        Map<String, Object> encoded = new HashMap<>(Math.max(16, count * 2));
+        for (int i = 0; i < count; i++) {
+            encoded.put(readString(content), readString(content));
+        }
+        return new SecretData(encoded, plain);
+    }
+
+    private static String readString(ByteBuffer content) {
+        int length = content.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(content.array(), content.arrayOffset() + content.position(), length, StandardCharsets.UTF_8);
+        content.position(content.position() + length);
+        return value;
+    }
+
+    private static String getFileName(String hash, @Nullable String name) {
+        String version = Integer.toString(ConfigParser.RESULT_VERSION);
+        return ConfigFingerprint.hex(name == null ? digest(DOMAIN_FILE, version, hash) : digest(DOMAIN_FILE, version, hash, name))
+                + SUFFIX;
+    }
+
+    private static byte[] digest(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            for (String part : parts) {
+                digest.update(part.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -16,9 +16,11 @@
 package com.egoshard.intellij.k8s.ui;
 
 import com.egoshard.intellij.k8s.ConfigEntry;
+import com.intellij.icons.AllIcons;
 import com.intellij.ui.JBColor;
 import com.intellij.ui.components.JBTextField;
 import com.intellij.util.ui.ColumnInfo;
+import com.intellij.util.ui.ListTableModel;
 import com.intellij.util.ui.UIUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -27,18 +29,27 @@ import javax.swing.*;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.TableCellEditor;
 import javax.swing.table.TableCellRenderer;
+import javax.swing.table.TableModel;
 import java.awt.*;
 
 /**
  * IntelliJ UI column for rendering config entries.
+ * <p>
+ * File statuses are looked up from a {@link ConfigStatusCache} so painting never touches the file system.
+ * </p>
  */
 class ConfigColumn extends ColumnInfo<ConfigEntry, String> {
 
     private static final String MSG_FILE_NOT_FOUND = "File not found.";
+    private static final String MSG_PARSE_ERROR = "Unable to parse file. %s";
     private static final String MSG_PATH = "Path";
 
-    ConfigColumn() {
+    private final ConfigStatusCache statuses;
+    private final TableCellRenderer renderer = new StatusRenderer();
+
+    ConfigColumn(ConfigStatusCache statuses) {
         super(MSG_PATH);
+        this.statuses = statuses;
     }
 
     @Override
@@ -72,30 +83,54 @@ class ConfigColumn extends ColumnInfo<ConfigEntry, String> {
      */
     @Override
     public TableCellRenderer getRenderer(final ConfigEntry entry) {
-        return new DefaultTableCellRenderer() {
-            @NotNull
-            @Override
-            public Component getTableCellRendererComponent(@NotNull JTable table,
-                                                           Object value,
-                                                           boolean isSelected,
-                                                           boolean hasFocus,
-                                                           int row,
-                                                           int column) {
-                final Component renderer = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
-                setBorder(null);
-                if (entry.getPath() == null) {
-                    setText("<>");
-                    setForeground(UIUtil.getLabelDisabledForeground());
-                } else {
-                    setText(entry.getPath());
-                    if (!entry.validate()) {
-                        setForeground(JBColor.YELLOW);
-                        setToolTipText(MSG_FILE_NOT_FOUND);
-                    }
-                }
+        return renderer;
+    }
+
+    /**
+     * Renders the path of the entry in a row with a badge for its last known file status.
+     */
+    private class StatusRenderer extends DefaultTableCellRenderer {
+
+        @NotNull
+        @Override
+        @SuppressWarnings("unchecked")
+        public Component getTableCellRendererComponent(@NotNull JTable table,
+                                                       Object value,
+                                                       boolean isSelected,
+                                                       boolean hasFocus,
+                                                       int row,
+                                                       int column) {
+            final Component renderer = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            setBorder(null);
+            setIcon(null);
+            setToolTipText(null);
+            TableModel model = table.getModel();
+            ConfigEntry entry = model instanceof ListTableModel
+                    ? ((ListTableModel<ConfigEntry>) model).getItem(table.convertRowIndexToModel(row))
+                    : null;
+            if (entry == null || entry.getPath() == null) {
+                setText("<>");
+                setForeground(UIUtil.getLabelDisabledForeground());
                 return renderer;
             }
-        };
+            setText(entry.getPath());
+            ConfigStatusCache.Status status = statuses.get(entry);
+            switch (status.getState()) {
+                case NOT_FOUND:
+                    setForeground(JBColor.YELLOW);
+                    setIcon(AllIcons.General.Warning);
+                    setToolTipText(MSG_FILE_NOT_FOUND);
+                    break;
+                case INVALID:
+                    setIcon(AllIcons.General.Error);
+                    setToolTipText(String.format(MSG_PARSE_ERROR, status.getMessage()));
+                    break;
+                default:
+                    break;
+            }
+            return renderer;
+        }
+
     }
 
 }
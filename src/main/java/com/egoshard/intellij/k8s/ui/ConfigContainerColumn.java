@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.ui;
+
+import com.egoshard.intellij.k8s.ConfigEntry;
+import com.intellij.ui.components.JBTextField;
+import com.intellij.util.ui.ColumnInfo;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import javax.swing.table.TableCellEditor;
+
+/**
+ * IntelliJ UI column for the optional container of config entries. When set the entry file holds a workload and the environment
+ * of the named container is resolved.
+ */
+class ConfigContainerColumn extends ColumnInfo<ConfigEntry, String> {
+
+    private static final String MSG_CONTAINER = "Container";
+
+    ConfigContainerColumn() {
+        super(MSG_CONTAINER);
+    }
+
+    @Override
+    public boolean isCellEditable(ConfigEntry entry) {
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public TableCellEditor getEditor(ConfigEntry entry) {
+        return new DefaultCellEditor(new JBTextField());
+    }
+
+    @Override
+    public void setValue(ConfigEntry entry, String value) {
+        entry.setContainer(value == null || value.trim().isEmpty() ? null : value.trim());
+    }
+
+    @Nullable
+    @Override
+    public String valueOf(ConfigEntry entry) {
+        return entry.getContainer();
+    }
+
+}
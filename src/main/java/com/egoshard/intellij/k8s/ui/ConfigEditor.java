@@ -17,24 +17,40 @@ package com.egoshard.intellij.k8s.ui;
 
 import com.egoshard.intellij.k8s.ConfigEntry;
 import com.egoshard.intellij.k8s.ConfigFileException;
+import com.egoshard.intellij.k8s.ConfigReport;
+import com.egoshard.intellij.k8s.ConfigResolver;
 import com.egoshard.intellij.k8s.ConfigSettings;
+import com.egoshard.intellij.k8s.parser.ConfigLayers;
 import com.egoshard.intellij.k8s.parser.ConfigMapParser;
 import com.egoshard.intellij.k8s.parser.ConfigParser;
+import com.egoshard.intellij.k8s.parser.SecretData;
 import com.egoshard.intellij.k8s.parser.SecretParser;
 import com.egoshard.intellij.k8s.support.ConfigFileUtil;
+import com.egoshard.intellij.k8s.support.ConfigMetrics;
+import com.egoshard.intellij.k8s.support.ConfigVolume;
+import com.egoshard.intellij.k8s.support.ParseCache;
 import com.google.common.collect.ImmutableMap;
 import com.intellij.execution.ExecutionException;
 import com.intellij.execution.configurations.RunConfigurationBase;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.options.SettingsEditor;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.JDOMExternalizerUtil;
 import com.intellij.openapi.util.Key;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import org.jdom.Element;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * User interface editor provider.
@@ -52,31 +68,57 @@ public class ConfigEditor<T extends RunConfigurationBase> extends SettingsEditor
     private static final String ELEMENT_ENTRY = "entry";
     private static final String FIELD_ENABLED = "ENABLED";
     private static final String FIELD_PATH = "path";
+    private static final String FIELD_NAME = "name";
+    private static final String FIELD_MOUNT = "mount";
+    private static final String FIELD_CONTAINER = "container";
     private static final Map<String, ConfigParser> PARSERS = ImmutableMap.of(
             ConfigParser.Kind.CONFIGMAP.getKey(), new ConfigMapParser(),
             ConfigParser.Kind.SECRET.getKey(), new SecretParser()
     );
     private static final String MSG_PATH_INVALID = "Kubernetes configuration has an invalid path, [%s]. This may have been caused by using shared configuration files in conjunction with a missing Yaml configuration file.";
     private static final String MSG_PARSE_FAIL = "Unable to parse configuration file, [%s]. %s";
+    private static final String MSG_CACHE_STATS = "Kubernetes configuration parse cache hits: %d, misses: %d.";
+    private static final String MSG_SNAPSHOT = "Kubernetes configuration served from a pre-resolved snapshot.";
+    private static final String MSG_MOUNT_FAIL = "Unable to project Kubernetes configuration into volume [%s]. %s";
+    private static final String MSG_MOUNTED = "Kubernetes configuration volume [%s] projected into [%s], %d files written.";
+    private static final String MSG_PARSE_INTERRUPTED = "Kubernetes configuration parsing was interrupted.";
+    private static final String POOL_NAME = "K8s Config Parser";
+    private static final int POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
 
     private static ConfigFileUtil fileUtil;
+    private static ExecutorService parsePool;
     private final ConfigPanel panel;
 
     public ConfigEditor(ConfigPanelFactory<T> factory, T config) {
         this.panel = factory.getPanel(PARSERS, getFileUtil(), config);
+        Disposer.register(this, this.panel);
     }
 
-    static ConfigFileUtil getFileUtil() {
+    static synchronized ConfigFileUtil getFileUtil() {
         if (fileUtil == null) {
             fileUtil = new ConfigFileUtil();
+            Application application = ApplicationManager.getApplication();
+            if (application != null) {
+                Disposer.register(application, fileUtil);
+            }
         }
         return fileUtil;
     }
 
-    static void setFileUtil(ConfigFileUtil fileUtil) {
+    static synchronized void setFileUtil(ConfigFileUtil fileUtil) {
+        if (ConfigEditor.fileUtil != null && ConfigEditor.fileUtil != fileUtil) {
+            Disposer.dispose(ConfigEditor.fileUtil);
+        }
         ConfigEditor.fileUtil = fileUtil;
     }
 
+    private static synchronized ExecutorService getParsePool() {
+        if (parsePool == null) {
+            parsePool = AppExecutorUtil.createBoundedApplicationPoolExecutor(POOL_NAME, POOL_SIZE);
+        }
+        return parsePool;
+    }
+
     public static String getTitle() {
         return TITLE;
     }
@@ -85,6 +127,15 @@ public class ConfigEditor<T extends RunConfigurationBase> extends SettingsEditor
         return SERIALIZATION_ID;
     }
 
+    /**
+     * @param config run configuration
+     * @return settings of this extension, or null if the run configuration has none
+     */
+    @Nullable
+    public static ConfigSettings getSettings(RunConfigurationBase config) {
+        return config.getUserData(SETTING_KEY);
+    }
+
     /**
      * Saves the settings of this extension to the run configuration XML element.
      *
@@ -101,6 +152,16 @@ public class ConfigEditor<T extends RunConfigurationBase> extends SettingsEditor
                 if (path != null) {
                     entryElement.setAttribute(FIELD_PATH, entry.getPath());
                 }
+                String name = entry.getName();
+                if (name != null && !name.isEmpty()) {
+                    entryElement.setAttribute(FIELD_NAME, name);
+                }
+                if (entry.isWorkload()) {
+                    entryElement.setAttribute(FIELD_CONTAINER, entry.getContainer());
+                }
+                if (entry.isMounted()) {
+                    entryElement.setAttribute(FIELD_MOUNT, entry.getMount());
+                }
                 entriesElement.addContent(entryElement);
             }
             element.addContent(entriesElement);
@@ -120,7 +181,13 @@ public class ConfigEditor<T extends RunConfigurationBase> extends SettingsEditor
         List<ConfigEntry> entries = new ArrayList<>();
         Optional.ofNullable(element.getChild(ELEMENT_ENTRIES))
                 .ifPresent(entry -> entry.getChildren(ELEMENT_ENTRY).stream()
-                        .map(child -> new ConfigEntry(PARSERS, getFileUtil(), config, child.getAttributeValue(FIELD_PATH)))
+                        .map(child -> {
+                            ConfigEntry configEntry = new ConfigEntry(PARSERS, getFileUtil(), config,
+                                    child.getAttributeValue(FIELD_PATH), child.getAttributeValue(FIELD_NAME));
+                            configEntry.setContainer(child.getAttributeValue(FIELD_CONTAINER));
+                            configEntry.setMount(child.getAttributeValue(FIELD_MOUNT));
+                            return configEntry;
+                        })
                         .forEach(entries::add));
         config.putUserData(
                 SETTING_KEY,
@@ -136,36 +203,201 @@ public class ConfigEditor<T extends RunConfigurationBase> extends SettingsEditor
      * @param config the run configuration being validated.
      */
     public static void validate(RunConfigurationBase config) {
-        Optional.ofNullable(config.getUserData(SETTING_KEY)).ifPresent(settings -> {
-            if (settings.isEnabled()) {
-                settings.getEntries().stream().filter(entry -> !entry.validate()).findFirst()
-                        .ifPresent(entry -> logger.warn(String.format(MSG_PATH_INVALID, entry.getPath())));
-            }
-        });
+        long start = ConfigMetrics.start();
+        try {
+            Optional.ofNullable(config.getUserData(SETTING_KEY)).ifPresent(settings -> {
+                if (settings.isEnabled()) {
+                    settings.getEntries().stream().filter(entry -> !entry.validate()).findFirst()
+                            .ifPresent(entry -> logger.warn(String.format(MSG_PATH_INVALID, entry.getPath())));
+                }
+            });
+        } finally {
+            ConfigMetrics.stop(ConfigMetrics.EDITOR_VALIDATE, start);
+        }
     }
 
 
     /**
      * Parses all configuration entries in settings and builds a variable map.
+     * <p>
+     * A current snapshot from the {@link ConfigResolver} is used when one exists, otherwise the entries are resolved
+     * synchronously. Mounted entries are projected into their volume directories, see {@link #mount}.
+     * </p>
      *
      * @param config run configuration
      * @param params parameter map returned if settings are disable or null
      * @return configuration map
      */
     public static Map<String, String> parse(RunConfigurationBase config, Map<String, String> params) throws ExecutionException {
-        ConfigSettings settings = config.getUserData(SETTING_KEY);
-        if (settings != null && settings.isEnabled()) {
-            Map<String, String> result = new HashMap<>();
-            for (ConfigEntry entry : settings.getEntries()) {
+        ConfigReport report = inject(config);
+        return report == null ? params : report.getEnvironment();
+    }
+
+    /**
+     * Parses all configuration entries in settings exactly as {@link #parse} does, keeping the parsed layers in a report of
+     * where each variable came from. The report is only resolved when it is rendered.
+     *
+     * @param config run configuration
+     * @return injection report holding the configuration map, or null if settings are disabled or null
+     */
+    @Nullable
+    public static ConfigReport inject(RunConfigurationBase config) throws ExecutionException {
+        long start = ConfigMetrics.start();
+        try {
+            ConfigSettings settings = config.getUserData(SETTING_KEY);
+            if (settings == null || !settings.isEnabled()) {
+                return null;
+            }
+            ConfigResolver resolver = ConfigResolver.getInstance(config.getProject());
+            ConfigResolver.Snapshot snapshot = resolver == null ? null : resolver.getCurrent(settings);
+            List<ConfigEntry> entries = settings.getEntries();
+            if (snapshot != null) {
+                logger.debug(MSG_SNAPSHOT);
+                return new ConfigReport(entries, snapshot.getLayers(), mount(config, entries, snapshot.getEnvironment()));
+            }
+            List<Map<String, String>> layers = parseLayers(entries);
+            return new ConfigReport(entries, layers, mount(config, entries, merge(entries, layers)));
+        } finally {
+            ConfigMetrics.stop(ConfigMetrics.EDITOR_PARSE, start);
+        }
+    }
+
+    /**
+     * Parses configuration entries and merges them into a variable map.
+     * <p>
+     * Entries are parsed concurrently but merged strictly in list order, so values from later entries override earlier ones
+     * exactly as they would when parsed one at a time. The first entry in list order that fails to parse is reported. The
+     * winning entry of each key is resolved before values are read, so overridden Secret values are never decoded.
+     * </p>
+     *
+     * @param entries configuration entries in merge order
+     * @return configuration map
+     */
+    public static Map<String, String> resolve(List<ConfigEntry> entries) throws ExecutionException {
+        return merge(entries, parseLayers(entries));
+    }
+
+    private static Map<String, String> merge(List<ConfigEntry> entries, List<Map<String, String>> layers) throws ExecutionException {
+        try {
+            return ConfigLayers.merge(layers);
+        } catch (ConfigLayers.MergeException ex) {
+            throw new ExecutionException(String.format(MSG_PARSE_FAIL, entries.get(ex.getLayer()).getPath(), ex.getMessage()), ex);
+        }
+    }
+
+    /**
+     * Projects mounted entries into volume directories and injects the directory of each volume as the environment variable
+     * named by its entries. Entries sharing a variable are projected into one volume, later entries taking precedence.
+     *
+     * @param config      run configuration owning the volumes
+     * @param entries     configuration entries in merge order
+     * @param environment resolved environment variables
+     * @return environment variables including volume directories
+     */
+    static Map<String, String> mount(RunConfigurationBase config, List<ConfigEntry> entries, Map<String, String> environment)
+            throws ExecutionException {
+        Map<String, List<ConfigEntry>> volumes = new LinkedHashMap<>();
+        entries.stream().filter(ConfigEntry::isMounted)
+                .forEach(entry -> volumes.computeIfAbsent(entry.getMount(), key -> new ArrayList<>()).add(entry));
+        if (volumes.isEmpty()) {
+            return environment;
+        }
+        Map<String, String> result = new HashMap<>(environment);
+        for (Map.Entry<String, List<ConfigEntry>> volume : volumes.entrySet()) {
+            List<SecretData> layers = new ArrayList<>();
+            for (ConfigEntry entry : volume.getValue()) {
                 try {
-                    result.putAll(entry.parse());
+                    layers.addAll(entry.parseVolume());
                 } catch (IllegalArgumentException | IOException | ConfigFileException ex) {
                     throw new ExecutionException(String.format(MSG_PARSE_FAIL, entry.getPath(), ex.getMessage()), ex);
                 }
             }
-            return result;
+            Path directory = getFileUtil().getVolumeDirectory(config, volume.getKey());
+            try {
+                int count = ConfigVolume.get(directory).update(layers);
+                logger.debug(String.format(MSG_MOUNTED, volume.getKey(), directory, count));
+            } catch (IllegalArgumentException | IOException ex) {
+                throw new ExecutionException(String.format(MSG_MOUNT_FAIL, volume.getKey(), ex.getMessage()), ex);
+            }
+            result.put(volume.getKey(), directory.toString());
+        }
+        return result;
+    }
+
+    /**
+     * Parses the environment layer of an entry. Mounted entries are projected into a volume instead and have no environment
+     * variables of their own.
+     *
+     * @param entry configuration entry
+     * @return parsed layer
+     */
+    public static Map<String, String> parseLayer(ConfigEntry entry) throws IOException, ConfigFileException {
+        return entry.isMounted() ? Collections.emptyMap() : entry.parse();
+    }
+
+    /**
+     * Parses configuration entries concurrently without merging them.
+     * <p>
+     * The event dispatch thread parses inline instead, it may not wait for pool workers which can themselves need it. Layers
+     * left unparsed after a failure are cancelled without interrupting their workers, an interrupt would close the file
+     * channels shared with other readers.
+     * </p>
+     *
+     * @param entries configuration entries in merge order
+     * @return parsed layers in entry order
+     */
+    public static List<Map<String, String>> parseLayers(List<ConfigEntry> entries) throws ExecutionException {
+        boolean inline = entries.size() == 1 || isDispatchThread();
+        List<Future<Map<String, String>>> layers = new ArrayList<>(entries.size());
+        try {
+            for (ConfigEntry entry : entries) {
+                layers.add(inline ? parseNow(entry) : getParsePool().submit(() -> parseLayer(entry)));
+            }
+            List<Map<String, String>> parsed = new ArrayList<>(entries.size());
+            for (int i = 0; i < entries.size(); i++) {
+                parsed.add(getLayer(entries.get(i), layers.get(i)));
+            }
+            logger.debug(String.format(MSG_CACHE_STATS, ParseCache.getHitCount(), ParseCache.getMissCount()));
+            return parsed;
+        } finally {
+            layers.forEach(layer -> layer.cancel(false));
+        }
+    }
+
+    private static boolean isDispatchThread() {
+        Application application = ApplicationManager.getApplication();
+        return application != null && application.isDispatchThread();
+    }
+
+    private static Future<Map<String, String>> parseNow(ConfigEntry entry) {
+        CompletableFuture<Map<String, String>> layer = new CompletableFuture<>();
+        try {
+            layer.complete(parseLayer(entry));
+        } catch (Exception ex) {
+            layer.completeExceptionally(ex);
+        }
+        return layer;
+    }
+
+    private static Map<String, String> getLayer(ConfigEntry entry, Future<Map<String, String>> layer) throws ExecutionException {
+        try {
+            return layer.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ExecutionException(MSG_PARSE_INTERRUPTED, ex);
+        } catch (java.util.concurrent.ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IllegalArgumentException || cause instanceof IOException || cause instanceof ConfigFileException) {
+                throw new ExecutionException(String.format(MSG_PARSE_FAIL, entry.getPath(), cause.getMessage()), cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new ExecutionException(cause);
         }
-        return params;
     }
 
     @Override
@@ -175,7 +407,10 @@ public class ConfigEditor<T extends RunConfigurationBase> extends SettingsEditor
 
     @Override
     protected void applyEditorTo(@NotNull T configuration) {
-        configuration.putUserData(SETTING_KEY, this.panel.getSettings());
+        ConfigSettings settings = this.panel.getSettings();
+        configuration.putUserData(SETTING_KEY, settings);
+        Optional.ofNullable(ConfigResolver.getInstance(configuration.getProject()))
+                .ifPresent(resolver -> resolver.schedule(settings));
     }
 
     @NotNull
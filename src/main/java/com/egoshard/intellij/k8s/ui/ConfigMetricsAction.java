@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.ui;
+
+import com.egoshard.intellij.k8s.support.ConfigMetrics;
+import com.egoshard.intellij.k8s.support.PersistentParseCache;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.ui.Messages;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * IDE action showing the plugin performance metrics and writing them to a JSON dump file in the IDE log directory.
+ */
+public class ConfigMetricsAction extends AnAction {
+
+    private static final Logger logger = Logger.getInstance(ConfigMetricsAction.class);
+    private static final String TITLE = "K8s Config Metrics";
+    private static final String DUMP_FILE = "k8s-config-metrics.json";
+    private static final String MSG_DUMP = "%s%nWritten to %s";
+    private static final String MSG_DUMP_FAIL = "Unable to write K8s config metrics, [%s].";
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent event) {
+        PersistentParseCache persistentCache = ConfigEditor.getFileUtil().getPersistentCache();
+        String summary = ConfigMetrics.getSummary(persistentCache);
+        Path file = Paths.get(PathManager.getLogPath(), DUMP_FILE);
+        try {
+            ConfigMetrics.dump(file, persistentCache);
+            Messages.showInfoMessage(event.getProject(), String.format(MSG_DUMP, summary, file), TITLE);
+        } catch (IOException e) {
+            logger.warn(String.format(MSG_DUMP_FAIL, file), e);
+            Messages.showErrorDialog(event.getProject(), String.format(MSG_DUMP_FAIL, file), TITLE);
+        }
+    }
+
+}
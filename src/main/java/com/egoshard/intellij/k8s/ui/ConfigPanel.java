@@ -18,11 +18,17 @@ package com.egoshard.intellij.k8s.ui;
 import com.egoshard.intellij.k8s.ConfigEntry;
 import com.egoshard.intellij.k8s.ConfigSettings;
 import com.egoshard.intellij.k8s.parser.ConfigParser;
+import com.egoshard.intellij.k8s.parser.ContainerEnvironment;
+import com.egoshard.intellij.k8s.parser.KustomizationReader;
 import com.egoshard.intellij.k8s.support.ConfigFileUtil;
+import com.egoshard.intellij.k8s.support.ConfigResourceIndex;
 import com.intellij.execution.configurations.RunConfigurationBase;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.fileChooser.FileChooser;
 import com.intellij.openapi.fileChooser.FileChooserDescriptor;
 import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.ui.AnActionButtonUpdater;
 import com.intellij.ui.ToolbarDecorator;
@@ -34,12 +40,14 @@ import com.intellij.util.ui.ListTableModel;
 import javax.swing.*;
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
-class ConfigPanel<T extends RunConfigurationBase> extends JPanel {
+class ConfigPanel<T extends RunConfigurationBase> extends JPanel implements Disposable {
 
     private static final String MSG_NO_FILE_SELECTED = "No file selected";
-    private static final String MSG_SELECT_K8S_FILE = "Select Kubernetes ConfigMap or Secret File";
+    private static final String MSG_SELECT_K8S_FILE = "Select Kubernetes ConfigMap, Secret or Env File";
     private static final String MSG_ENABLE = "Enable";
     private final Map<String, ConfigParser> parsers;
     private final ConfigFileUtil fileUtil;
@@ -47,6 +55,7 @@ class ConfigPanel<T extends RunConfigurationBase> extends JPanel {
     private final JCheckBox checkBox;
     private final ListTableModel<ConfigEntry> files;
     private final TableView<ConfigEntry> table;
+    private final ConfigStatusCache statuses;
 
     ConfigPanel(Map<String, ConfigParser> parsers, ConfigFileUtil fileUtil, T config) {
 
@@ -55,10 +64,15 @@ class ConfigPanel<T extends RunConfigurationBase> extends JPanel {
         this.config = config;
 
         // data model
-        ColumnInfo<ConfigEntry, String> file = new ConfigColumn();
+        statuses = new ConfigStatusCache(this::repaintTable);
+        Disposer.register(this, statuses);
+        ColumnInfo<ConfigEntry, String> file = new ConfigColumn(statuses);
+        ColumnInfo<ConfigEntry, String> name = new ConfigNameColumn();
+        ColumnInfo<ConfigEntry, String> container = new ConfigContainerColumn();
+        ColumnInfo<ConfigEntry, String> mount = new ConfigMountColumn();
 
         // generate table
-        files = new ListTableModel<>(file);
+        files = new ListTableModel<>(file, name, container, mount);
         table = new TableView<>(files);
         table.getEmptyText().setText(MSG_NO_FILE_SELECTED);
         table.setColumnSelectionAllowed(false);
@@ -97,9 +111,15 @@ class ConfigPanel<T extends RunConfigurationBase> extends JPanel {
 
     private void doAddAction(final TableView<ConfigEntry> table, final ListTableModel<ConfigEntry> model) {
 
+        Set<VirtualFile> manifests = ConfigResourceIndex.getFiles(config.getProject(), getSelectableKinds());
+        ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(config.getProject());
+        // only files in project content are indexed, files elsewhere cannot be ruled out
         final FileChooserDescriptor chooserDescriptor = FileChooserDescriptorFactory
                 .createSingleFileNoJarsDescriptor()
-                .withTitle(MSG_SELECT_K8S_FILE);
+                .withTitle(MSG_SELECT_K8S_FILE)
+                .withFileFilter(file -> manifests == null || !ConfigResourceIndex.isManifestFile(file)
+                        || !fileIndex.isInContent(file) || KustomizationReader.isKustomization(file.getPath())
+                        || manifests.contains(file));
 
         VirtualFile path = FileChooser.chooseFile(chooserDescriptor, config.getProject(), null);
         if (path != null) {
@@ -120,6 +140,26 @@ class ConfigPanel<T extends RunConfigurationBase> extends JPanel {
         }
     }
 
+    /**
+     * @return kinds of manifests an entry can be added for, files of the resource index declaring none are not offered
+     */
+    private Set<String> getSelectableKinds() {
+        Set<String> kinds = new HashSet<>(parsers.keySet());
+        kinds.addAll(ContainerEnvironment.getWorkloadKinds());
+        return kinds;
+    }
+
+    private void repaintTable() {
+        if (table != null) {
+            table.repaint();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        // status cache is registered as a child and disposed by Disposer
+    }
+
     ConfigSettings getSettings() {
         return new ConfigSettings(checkBox.isSelected(), files.getItems());
     }
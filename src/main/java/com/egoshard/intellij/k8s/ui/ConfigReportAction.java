@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.ui;
+
+import com.egoshard.intellij.k8s.ConfigReport;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * IDE action showing where each variable of the last injection in the project came from. Secret values are masked until they
+ * are revealed explicitly.
+ */
+public class ConfigReportAction extends AnAction {
+
+    private static final String TITLE = "K8s Config Injection Report";
+    private static final String MSG_NO_REPORT = "No Kubernetes configuration has been injected in this project yet.";
+    private static final String REVEAL = "Reveal Secrets";
+    private static final String CLOSE = "Close";
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent event) {
+        Project project = event.getProject();
+        ConfigReport report = ConfigReport.getLast(project);
+        if (report == null) {
+            Messages.showInfoMessage(project, MSG_NO_REPORT, TITLE);
+            return;
+        }
+        if (Messages.showOkCancelDialog(project, report.render(false), TITLE, REVEAL, CLOSE, Messages.getInformationIcon())
+                == Messages.OK) {
+            Messages.showInfoMessage(project, report.render(true), TITLE);
+        }
+    }
+
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.ui;
+
+import com.egoshard.intellij.k8s.ConfigEntry;
+import com.egoshard.intellij.k8s.parser.SecretData;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Caches the file status of config entries for rendering.
+ * <p>
+ * Statuses are computed on a background thread, the first lookup of an entry or of a changed path reports a pending status and
+ * schedules the check. Known statuses are checked again after VFS changes and stay visible until the new status is known. The
+ * repaint callback runs whenever a status changes.
+ * </p>
+ */
+class ConfigStatusCache implements Disposable {
+
+    private static final String POOL_NAME = "K8s Config Status";
+
+    private final Map<ConfigEntry, Status> statuses = Collections.synchronizedMap(new WeakHashMap<>());
+    private final Set<ConfigEntry> pending = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private final Executor executor;
+    private final Runnable repaint;
+    private volatile boolean disposed;
+
+    ConfigStatusCache(Runnable repaint) {
+        this(AppExecutorUtil.createBoundedApplicationPoolExecutor(POOL_NAME, 1), repaint);
+        Application application = ApplicationManager.getApplication();
+        if (application != null) {
+            application.getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+                @Override
+                public void after(@NotNull List<? extends VFileEvent> events) {
+                    invalidate();
+                }
+            });
+        }
+    }
+
+    ConfigStatusCache(Executor executor, Runnable repaint) {
+        this.executor = executor;
+        this.repaint = repaint;
+    }
+
+    /**
+     * Retrieves the last known status of an entry without blocking, scheduling a check if it is unknown or out of date.
+     *
+     * @param entry config entry
+     * @return entry status
+     */
+    @NotNull
+    Status get(ConfigEntry entry) {
+        Status status = statuses.get(entry);
+        if (status == null || !status.matches(entry)) {
+            schedule(entry);
+            return Status.PENDING;
+        }
+        return status;
+    }
+
+    /**
+     * Checks all known entries again, keeping their current status until the new one is known.
+     */
+    void invalidate() {
+        List<ConfigEntry> entries;
+        synchronized (statuses) {
+            entries = new ArrayList<>(statuses.keySet());
+        }
+        entries.forEach(this::schedule);
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+    }
+
+    private void schedule(ConfigEntry entry) {
+        if (disposed || !pending.add(entry)) {
+            return;
+        }
+        executor.execute(() -> {
+            pending.remove(entry);
+            if (disposed) {
+                return;
+            }
+            Status status = Status.of(entry);
+            if (!status.equals(statuses.put(entry, status))) {
+                repaint.run();
+            }
+        });
+    }
+
+    /**
+     * File status of a config entry at a specific path, name, container and mount.
+     */
+    static final class Status {
+
+        static final Status PENDING = new Status(State.PENDING, null, null);
+
+        private final State state;
+        private final String path;
+        private final String name;
+        private final String container;
+        private final String mount;
+        private final String message;
+
+        private Status(State state, ConfigEntry entry, String message) {
+            this.state = state;
+            this.path = entry == null ? null : entry.getPath();
+            this.name = entry == null ? null : entry.getName();
+            this.container = entry == null ? null : entry.getContainer();
+            this.mount = entry == null ? null : entry.getMount();
+            this.message = message;
+        }
+
+        /**
+         * Checks whether the file of an entry exists and parses the way it is injected, this may block on file system access.
+         * Encoded values of entries that may supply Secrets are all checked, including values a later layer overrides.
+         *
+         * @param entry config entry
+         * @return entry status
+         */
+        static Status of(ConfigEntry entry) {
+            try {
+                if (entry.getPath() == null || !entry.validate()) {
+                    return new Status(State.NOT_FOUND, entry, null);
+                }
+                if (entry.isMounted()) {
+                    entry.parseVolume().forEach(SecretData::verify);
+                } else {
+                    entry.parse();
+                    if (entry.maySupplySecrets()) {
+                        entry.parseVolume().forEach(SecretData::verify);
+                    }
+                }
+                return new Status(State.VALID, entry, null);
+            } catch (Exception e) {
+                return new Status(State.INVALID, entry, e.getMessage());
+            }
+        }
+
+        State getState() {
+            return state;
+        }
+
+        String getMessage() {
+            return message;
+        }
+
+        boolean matches(ConfigEntry entry) {
+            return Objects.equals(path, entry.getPath())
+                    && Objects.equals(name, entry.getName())
+                    && Objects.equals(container, entry.getContainer())
+                    && Objects.equals(mount, entry.getMount());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Status that = (Status) o;
+            return state == that.state
+                    && Objects.equals(path, that.path)
+                    && Objects.equals(name, that.name)
+                    && Objects.equals(container, that.container)
+                    && Objects.equals(mount, that.mount)
+                    && Objects.equals(message, that.message);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(state, path, name, container, mount, message);
+        }
+
+    }
+
+    enum State {
+        PENDING,
+        VALID,
+        NOT_FOUND,
+        INVALID
+    }
+
+}
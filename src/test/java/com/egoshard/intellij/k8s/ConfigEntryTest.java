@@ -19,7 +19,12 @@ import com.egoshard.intellij.k8s.parser.AbstractParser;
 import com.egoshard.intellij.k8s.parser.ConfigMapParser;
 import com.egoshard.intellij.k8s.parser.ConfigParser;
 import com.egoshard.intellij.k8s.parser.SecretParser;
+import com.egoshard.intellij.k8s.support.ConfigCatalog;
 import com.egoshard.intellij.k8s.support.ConfigFileUtil;
+import com.egoshard.intellij.k8s.support.ConfigFingerprint;
+import com.egoshard.intellij.k8s.support.ConfigLayerCache;
+import com.egoshard.intellij.k8s.support.ParseCache;
+import com.egoshard.intellij.k8s.support.PersistentParseCache;
 import com.google.common.collect.ImmutableMap;
 import com.intellij.execution.configurations.RunConfigurationBase;
 import org.junit.jupiter.api.BeforeEach;
@@ -29,13 +34,23 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 @DisplayName("Tests ConfigEntry functionality")
@@ -47,10 +62,15 @@ class ConfigEntryTest {
     private static final String MSG_SOURCE_INVALID = TestUtils.getFinalStaticString(ConfigEntry.class, "MSG_SOURCE_INVALID");
     private static final String MSG_SOURCE_WRONGKIND = TestUtils.getFinalStaticString(ConfigEntry.class, "MSG_SOURCE_WRONGKIND");
     private static final String MSG_SOURCE_NULL = TestUtils.getFinalStaticString(ConfigEntry.class, "MSG_SOURCE_NULL");
+    private static final String MSG_SOURCE_NO_MATCH = TestUtils.getFinalStaticString(ConfigEntry.class, "MSG_SOURCE_NO_MATCH");
     private static final String PATH = "path";
     private static final String YAML_VALUE = "{\"%s\":\"%s\",\"%s\":{\"test_key\":\"test_data\"}}";
     private static final String YAML_EMPTY = "{}";
     private static final String YAML_INVALID = "test";
+    private static final String YAML_BUNDLE = "kind: Deployment\nspec:\n  replicas: 1\n---\n"
+            + "kind: ConfigMap\ndata:\n  A: first\n  B: first\n---\n"
+            + "kind: Service\n---\n"
+            + "kind: Secret\ndata:\n  B: c2Vjb25k\n";
     private ConfigEntry entry;
 
     @Mock
@@ -81,6 +101,20 @@ class ConfigEntryTest {
         entry.validate();
     }
 
+    @DisplayName("Tests named entry validation against the resource index")
+    @Test
+    void testValidateNamed() {
+        doReturn(true).when(mockFileUtil).exists(any(RunConfigurationBase.class), anyString());
+        entry = new ConfigEntry(getParsers(), mockFileUtil, mockRunconfiguration, PATH, "app");
+        assertFalse(entry.validate());
+
+        doReturn(true).when(mockFileUtil).mayDeclare(mockRunconfiguration, PATH, getParsers().keySet(), "app");
+        assertTrue(entry.validate());
+
+        entry.setPath("kustomization.yaml");
+        assertTrue(entry.validate());
+    }
+
     @DisplayName("Tests entry validation with null file utility")
     @Test
     void testValidateNullFileUtil() {
@@ -111,7 +145,7 @@ class ConfigEntryTest {
 
     @DisplayName("Tests parse, class cast")
     @Test
-    void testParseClassCast() throws FileNotFoundException {
+    void testParseClassCast() throws IOException {
         doReturn(new ByteArrayInputStream(YAML_INVALID.getBytes()))
                 .when(mockFileUtil).getStream(any(RunConfigurationBase.class), anyString());
         entry = new ConfigEntry(mockConfigParsers, mockFileUtil, mockRunconfiguration, PATH);
@@ -130,7 +164,7 @@ class ConfigEntryTest {
 
     @DisplayName("Tests parse, missing parser")
     @Test
-    void testParseInvalidKind() throws FileNotFoundException {
+    void testParseInvalidKind() throws IOException {
         doReturn(getTestYamlStream(YAML_INVALID))
                 .when(mockFileUtil).getStream(any(RunConfigurationBase.class), anyString());
         entry = new ConfigEntry(mockConfigParsers, mockFileUtil, mockRunconfiguration, PATH);
@@ -168,11 +202,257 @@ class ConfigEntryTest {
         verify(mockSecretParser).parse(anyMap());
     }
 
+    @DisplayName("Tests parse, unchanged file is returned from cache")
+    @Test
+    void testParseCached() throws IOException, ConfigFileException {
+        Map<String, ConfigParser> parsers = ImmutableMap.of(ConfigParser.Kind.CONFIGMAP.getKey(), mockConfigMapParser);
+        ConfigFingerprint fingerprint = new ConfigFingerprint(PATH, 1, 1, "hash");
+        doReturn(fingerprint).when(mockFileUtil).getFingerprint(any(RunConfigurationBase.class), anyString(), any(byte[].class));
+        doReturn(ImmutableMap.of("test_key", "test_data")).when(mockConfigMapParser).parse(anyMap());
+        when(mockFileUtil.getStream(any(RunConfigurationBase.class), anyString()))
+                .thenReturn(getTestYamlStream(ConfigParser.Kind.CONFIGMAP.getKey()))
+                .thenReturn(getTestYamlStream(ConfigParser.Kind.CONFIGMAP.getKey()));
+        entry = new ConfigEntry(parsers, mockFileUtil, mockRunconfiguration, PATH);
+
+        long hits = ParseCache.getHitCount();
+        Map<String, String> first = entry.parse();
+        Map<String, String> second = entry.parse();
+
+        assertEquals(first, second);
+        assertEquals(hits + 1, ParseCache.getHitCount());
+        verify(mockConfigMapParser, times(1)).parse(anyMap());
+    }
+
+    @DisplayName("Tests parse, entries of other run configurations share the layer parsed from the same content")
+    @Test
+    void testParseShared() throws IOException, ConfigFileException {
+        Map<String, ConfigParser> parsers = ImmutableMap.of(ConfigParser.Kind.CONFIGMAP.getKey(), mockConfigMapParser);
+        Map<Object, Map<String, String>> layers = new HashMap<>();
+        ConfigLayerCache mockLayerCache = mock(ConfigLayerCache.class);
+        doAnswer(invocation -> layers.get(invocation.getArgument(1))).when(mockLayerCache).get(any(), any());
+        doAnswer(invocation -> layers.computeIfAbsent(invocation.getArgument(1), key -> invocation.getArgument(2)))
+                .when(mockLayerCache).put(any(), any(), anyMap());
+        doReturn(mockLayerCache).when(mockFileUtil).getLayerCache(any(RunConfigurationBase.class));
+        doReturn(new ConfigFingerprint(PATH, 1, 1, "hash"))
+                .when(mockFileUtil).getFingerprint(any(RunConfigurationBase.class), anyString(), any(byte[].class));
+        doReturn(ImmutableMap.of("test_key", "test_data")).when(mockConfigMapParser).parse(anyMap());
+        when(mockFileUtil.getStream(any(RunConfigurationBase.class), anyString()))
+                .thenReturn(getTestYamlStream(ConfigParser.Kind.CONFIGMAP.getKey()))
+                .thenReturn(getTestYamlStream(ConfigParser.Kind.CONFIGMAP.getKey()));
+
+        Map<String, String> first = new ConfigEntry(parsers, mockFileUtil, mockRunconfiguration, PATH).parse();
+        Map<String, String> second = new ConfigEntry(parsers, mockFileUtil, mock(RunConfigurationBase.class), PATH).parse();
+
+        assertSame(first, second);
+        verify(mockConfigMapParser, times(1)).parse(anyMap());
+    }
+
+    @DisplayName("Tests parse, changed file is parsed again")
+    @Test
+    void testParseCacheChanged() throws IOException, ConfigFileException {
+        Map<String, ConfigParser> parsers = ImmutableMap.of(ConfigParser.Kind.CONFIGMAP.getKey(), mockConfigMapParser);
+        when(mockFileUtil.getFingerprint(any(RunConfigurationBase.class), anyString(), any(byte[].class)))
+                .thenReturn(new ConfigFingerprint(PATH, 1, 1, "hash"))
+                .thenReturn(new ConfigFingerprint(PATH, 1, 2, "hash"));
+        doReturn(ImmutableMap.of("test_key", "test_data")).when(mockConfigMapParser).parse(anyMap());
+        when(mockFileUtil.getStream(any(RunConfigurationBase.class), anyString()))
+                .thenReturn(getTestYamlStream(ConfigParser.Kind.CONFIGMAP.getKey()))
+                .thenReturn(getTestYamlStream(ConfigParser.Kind.CONFIGMAP.getKey()));
+        entry = new ConfigEntry(parsers, mockFileUtil, mockRunconfiguration, PATH);
+
+        entry.parse();
+        entry.parse();
+
+        verify(mockConfigMapParser, times(2)).parse(anyMap());
+    }
+
+    @DisplayName("Tests parse, unmodified file is returned from cache without being read")
+    @Test
+    void testParseCachedStamp() throws IOException, ConfigFileException {
+        Map<String, ConfigParser> parsers = ImmutableMap.of(ConfigParser.Kind.CONFIGMAP.getKey(), mockConfigMapParser);
+        doReturn(1L).when(mockFileUtil).getModificationStamp(any(RunConfigurationBase.class), anyString());
+        doReturn(new ConfigFingerprint(PATH, 1, 1, "hash"))
+                .when(mockFileUtil).getFingerprint(any(RunConfigurationBase.class), anyString(), any(byte[].class));
+        doReturn(ImmutableMap.of("test_key", "test_data")).when(mockConfigMapParser).parse(anyMap());
+        doReturn(getTestYamlStream(ConfigParser.Kind.CONFIGMAP.getKey()))
+                .when(mockFileUtil).getStream(any(RunConfigurationBase.class), anyString());
+        entry = new ConfigEntry(parsers, mockFileUtil, mockRunconfiguration, PATH);
+
+        entry.parse();
+        entry.parse();
+
+        verify(mockFileUtil, times(1)).getStream(any(RunConfigurationBase.class), anyString());
+        verify(mockConfigMapParser, times(1)).parse(anyMap());
+    }
+
+    @DisplayName("Tests parse, multi-document files skip unsupported kinds and merge in document order")
+    @Test
+    void testParseMultiDocument() throws IOException, ConfigFileException {
+        doReturn(new ByteArrayInputStream(YAML_BUNDLE.getBytes()))
+                .when(mockFileUtil).getStream(any(RunConfigurationBase.class), anyString());
+        entry = new ConfigEntry(getParsers(), mockFileUtil, mockRunconfiguration, PATH);
+
+        assertEquals(ImmutableMap.of("A", "first", "B", "second"), entry.parse());
+    }
+
+    @DisplayName("Tests parse, multi-document files without a supported kind")
+    @Test
+    void testParseMultiDocumentInvalidKind() throws IOException {
+        doReturn(new ByteArrayInputStream("kind: Deployment\n---\nkind: Service\n".getBytes()))
+                .when(mockFileUtil).getStream(any(RunConfigurationBase.class), anyString());
+        entry = new ConfigEntry(mockConfigParsers, mockFileUtil, mockRunconfiguration, PATH);
+        ConfigFileException exception = assertThrows(ConfigFileException.class, () -> entry.parse());
+        assertEquals(String.format(MSG_SOURCE_WRONGKIND, "Deployment"), exception.getMessage());
+    }
+
+    @DisplayName("Tests parse, List items are merged in order")
+    @Test
+    void testParseList() throws IOException, ConfigFileException {
+        doReturn(ClassLoader.getSystemResourceAsStream("TestList.yml"))
+                .when(mockFileUtil).getStream(any(RunConfigurationBase.class), anyString());
+        entry = new ConfigEntry(getParsers(), mockFileUtil, mockRunconfiguration, PATH);
+
+        assertEquals(ImmutableMap.of("SHARED", "third", "FIRST_ONLY", "value"), entry.parse());
+    }
+
+    @DisplayName("Tests parse, List items are filtered by name")
+    @Test
+    void testParseListNamed() throws IOException, ConfigFileException {
+        doReturn(ClassLoader.getSystemResourceAsStream("TestList.yml"))
+                .when(mockFileUtil).getStream(any(RunConfigurationBase.class), anyString());
+        entry = new ConfigEntry(getParsers(), mockFileUtil, mockRunconfiguration, PATH, "second-secret");
+
+        assertEquals(ImmutableMap.of("SHARED", "second"), entry.parse());
+    }
+
+    @DisplayName("Tests parse, no resource matches the name")
+    @Test
+    void testParseListNoMatch() throws IOException {
+        doReturn(ClassLoader.getSystemResourceAsStream("TestList.yml"))
+                .when(mockFileUtil).getStream(any(RunConfigurationBase.class), anyString());
+        entry = new ConfigEntry(getParsers(), mockFileUtil, mockRunconfiguration, PATH, "missing");
+        ConfigFileException exception = assertThrows(ConfigFileException.class, () -> entry.parse());
+        assertEquals(String.format(MSG_SOURCE_NO_MATCH, "missing"), exception.getMessage());
+    }
+
+    @DisplayName("Tests parse, content parsed by another entry is returned from the persistent cache")
+    @Test
+    void testParsePersistentCached() throws IOException, ConfigFileException {
+        Path directory = Files.createTempDirectory("k8s-config-cache");
+        try {
+            Map<String, ConfigParser> parsers = ImmutableMap.of(ConfigParser.Kind.CONFIGMAP.getKey(), mockConfigMapParser);
+            doReturn(new PersistentParseCache(directory, Long.MAX_VALUE)).when(mockFileUtil).getPersistentCache();
+            doReturn(new ConfigFingerprint(PATH, 1, 1, "hash"))
+                    .when(mockFileUtil).getFingerprint(any(RunConfigurationBase.class), anyString(), any(byte[].class));
+            doReturn(ImmutableMap.of("test_key", "test_data")).when(mockConfigMapParser).parse(anyMap());
+            when(mockFileUtil.getStream(any(RunConfigurationBase.class), anyString()))
+                    .thenReturn(getTestYamlStream(ConfigParser.Kind.CONFIGMAP.getKey()))
+                    .thenReturn(getTestYamlStream(ConfigParser.Kind.CONFIGMAP.getKey()));
+
+            new ConfigEntry(parsers, mockFileUtil, mockRunconfiguration, PATH).parse();
+            Map<String, String> result = new ConfigEntry(parsers, mockFileUtil, mockRunconfiguration, PATH).parse();
+
+            assertEquals(ImmutableMap.of("test_key", "test_data"), result);
+            verify(mockConfigMapParser, times(1)).parse(anyMap());
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    @DisplayName("Tests parse, kustomizations are built locally and cached until one of their inputs changes")
+    @Test
+    void testParseKustomization() throws IOException, ConfigFileException {
+        Map<String, String> files = ImmutableMap.of(
+                "dev/kustomization.yaml", "resources:\n- ../base\nconfigMapGenerator:\n- name: app\n  envs:\n  - app.env\n",
+                "base/kustomization.yaml", "resources:\n- config.yaml\n",
+                "base/config.yaml", "kind: ConfigMap\nmetadata:\n  name: app\ndata:\n  A: base\n  B: base\n",
+                "dev/app.env", "B=dev\n");
+        doAnswer(invocation -> files.containsKey(invocation.<String>getArgument(1)))
+                .when(mockFileUtil).exists(any(RunConfigurationBase.class), anyString());
+        doAnswer(invocation -> new ByteArrayInputStream(files.get(invocation.<String>getArgument(1)).getBytes()))
+                .when(mockFileUtil).getStream(any(RunConfigurationBase.class), anyString());
+        doReturn(1L).when(mockFileUtil).getModificationStamp(any(RunConfigurationBase.class), anyString());
+        entry = new ConfigEntry(getParsers(), mockFileUtil, mockRunconfiguration, "dev/kustomization.yaml");
+
+        assertEquals(ImmutableMap.of("A", "base", "B", "dev"), entry.parse());
+        entry.parse();
+        long stamp = entry.getModificationStamp();
+        clearInvocations(mockFileUtil);
+        assertEquals(ImmutableMap.of("A", "base", "B", "dev"), entry.parse());
+        verify(mockFileUtil, never()).getStream(any(RunConfigurationBase.class), anyString());
+
+        doReturn(2L).when(mockFileUtil).getModificationStamp(any(RunConfigurationBase.class), eq("dev/app.env"));
+        assertNotEquals(stamp, entry.getModificationStamp());
+        entry.parse();
+        verify(mockFileUtil, times(4)).getStream(any(RunConfigurationBase.class), anyString());
+    }
+
+    @DisplayName("Tests parse, env files are read as KEY=VALUE layers")
+    @Test
+    void testParseEnvFile() throws IOException, ConfigFileException {
+        doReturn(new ByteArrayInputStream("# overrides\nA=1\nB=\"two\"\n".getBytes()))
+                .when(mockFileUtil).getStream(any(RunConfigurationBase.class), anyString());
+        entry = new ConfigEntry(getParsers(), mockFileUtil, mockRunconfiguration, "config/dev.env");
+
+        assertEquals(ImmutableMap.of("A", "1", "B", "\"two\""), entry.parse());
+    }
+
+    @DisplayName("Tests parse, invalid env file keys are reported")
+    @Test
+    void testParseEnvFileInvalid() throws IOException {
+        doReturn(new ByteArrayInputStream("NOT A KEY=1\n".getBytes()))
+                .when(mockFileUtil).getStream(any(RunConfigurationBase.class), anyString());
+        entry = new ConfigEntry(getParsers(), mockFileUtil, mockRunconfiguration, ".env");
+
+        assertThrows(ConfigFileException.class, () -> entry.parse());
+    }
+
+    @DisplayName("Tests parse, container environments are resolved through the project catalog and cached by its version")
+    @Test
+    void testParseWorkload() throws IOException, ConfigFileException {
+        ConfigCatalog mockCatalog = mock(ConfigCatalog.class);
+        doReturn(mockCatalog).when(mockFileUtil).getCatalog(any(RunConfigurationBase.class));
+        doReturn(1L).when(mockFileUtil).getModificationStamp(any(RunConfigurationBase.class), anyString());
+        doAnswer(invocation -> new ByteArrayInputStream(("kind: Pod\nspec:\n  containers:\n  - name: app\n    envFrom:\n"
+                + "    - configMapRef:\n        name: absent\n        optional: true\n    env:\n    - name: A\n      value: '1'\n")
+                .getBytes()))
+                .when(mockFileUtil).getStream(any(RunConfigurationBase.class), anyString());
+        entry = new ConfigEntry(getParsers(), mockFileUtil, mockRunconfiguration, "deploy.yaml");
+        entry.setContainer("app");
+
+        assertEquals(ImmutableMap.of("A", "1"), entry.parse());
+        entry.parse();
+        clearInvocations(mockFileUtil);
+        entry.parse();
+        verify(mockFileUtil, never()).getStream(any(RunConfigurationBase.class), anyString());
+
+        doReturn(1L).when(mockCatalog).getVersion();
+        entry.parse();
+        verify(mockFileUtil).getStream(any(RunConfigurationBase.class), anyString());
+
+        entry.setContainer("missing");
+        assertThrows(ConfigFileException.class, () -> entry.parse());
+    }
+
+    private Map<String, ConfigParser> getParsers() {
+        return ImmutableMap.of(
+                ConfigParser.Kind.CONFIGMAP.getKey(), new ConfigMapParser(),
+                ConfigParser.Kind.SECRET.getKey(), new SecretParser()
+        );
+    }
+
     private InputStream getTestYamlStream(String kindValue) {
         return new ByteArrayInputStream(String.format(YAML_VALUE, ConfigEntryTest.KEY_KIND, kindValue, ConfigEntryTest.KEY_DATA).getBytes());
     }
 
     class TestFileNotFoundUtil extends ConfigFileUtil {
+        @Override
+        public long getModificationStamp(RunConfigurationBase config, String path) {
+            return STAMP_UNKNOWN;
+        }
+
         @Override
         public InputStream getStream(RunConfigurationBase config, String path) throws FileNotFoundException {
             throw new FileNotFoundException("");
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s;
+
+import com.egoshard.intellij.k8s.parser.ConfigLayers;
+import com.egoshard.intellij.k8s.parser.ConfigParser;
+import com.egoshard.intellij.k8s.parser.SecretData;
+import com.egoshard.intellij.k8s.support.ConfigFileUtil;
+import com.google.common.collect.ImmutableMap;
+import com.intellij.execution.configurations.RunConfigurationBase;
+import com.intellij.openapi.project.Project;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("Tests the injection report")
+class ConfigReportTest {
+
+    private static final String BASE = "base.yaml";
+    private static final String SECRET = "secret.yaml";
+    private static final String LOCAL = "local.env";
+    private static final String VOLUME = "volume.yaml";
+
+    @Mock
+    private ConfigFileUtil mockFileUtil;
+
+    @Mock
+    private RunConfigurationBase mockConfig;
+
+    private List<ConfigEntry> entries;
+    private ConfigReport report;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        doReturn(false).when(mockFileUtil).mayDeclareKind(mockConfig, BASE, ConfigParser.Kind.SECRET.getKey());
+        doReturn(true).when(mockFileUtil).mayDeclareKind(mockConfig, SECRET, ConfigParser.Kind.SECRET.getKey());
+        ConfigEntry volume = getEntry(VOLUME);
+        volume.setMount("CERTS");
+        entries = Arrays.asList(getEntry(BASE), getEntry(SECRET), getEntry(LOCAL), volume);
+        List<Map<String, String>> layers = Arrays.asList(
+                ImmutableMap.of("A", "base", "B", "base", "C", "base"),
+                new SecretData(ImmutableMap.of("B", "c2VjcmV0"), Collections.emptyMap()),
+                ImmutableMap.of("C", "local"),
+                Collections.emptyMap());
+        Map<String, String> environment = ImmutableMap.<String, String>builder()
+                .putAll(ConfigLayers.merge(layers))
+                .put("CERTS", "/volumes/certs")
+                .build();
+        report = new ConfigReport(entries, layers, environment);
+    }
+
+    @DisplayName("Tests that the winning and overridden entries of each variable are resolved")
+    @Test
+    void testProvenance() {
+        ConfigReport.Provenance base = report.getProvenance("A");
+        ConfigReport.Provenance secret = report.getProvenance("B");
+        ConfigReport.Provenance local = report.getProvenance("C");
+        ConfigReport.Provenance mount = report.getProvenance("CERTS");
+
+        assertSame(entries.get(0), base.getSource());
+        assertTrue(base.getOverridden().isEmpty());
+        assertFalse(base.isSecret());
+        assertSame(entries.get(1), secret.getSource());
+        assertEquals(Collections.singletonList(entries.get(0)), secret.getOverridden());
+        assertTrue(secret.isSecret());
+        assertSame(entries.get(2), local.getSource());
+        assertEquals(Collections.singletonList(entries.get(0)), local.getOverridden());
+        assertFalse(local.isSecret());
+        assertNull(mount.getSource());
+        assertEquals(Collections.singletonList(entries.get(3)), mount.getMounts());
+    }
+
+    @DisplayName("Tests that Secret values are masked unless revealed")
+    @Test
+    void testRender() {
+        String masked = report.render(false);
+        String revealed = report.render(true);
+
+        assertTrue(masked.contains("B=" + ConfigReport.MASK));
+        assertFalse(masked.contains("=secret"));
+        assertTrue(masked.contains("A=base"));
+        assertTrue(masked.contains("C=local"));
+        assertTrue(masked.contains("from " + SECRET));
+        assertTrue(masked.contains("overrides " + BASE));
+        assertTrue(masked.contains("volume directory of " + VOLUME));
+        assertTrue(revealed.contains("B=secret"));
+    }
+
+    @DisplayName("Tests that the last report is kept per project")
+    @Test
+    void testLast() {
+        Project project = mock(Project.class);
+        doReturn(report).when(project).getUserData(any());
+
+        assertSame(report, ConfigReport.getLast(project));
+        assertNull(ConfigReport.getLast(null));
+        ConfigReport.setLast(project, report);
+        verify(project).putUserData(any(), eq(report));
+    }
+
+    private ConfigEntry getEntry(String path) {
+        return new ConfigEntry(Collections.emptyMap(), mockFileUtil, mockConfig, path);
+    }
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s;
+
+import com.egoshard.intellij.k8s.parser.ConfigParser;
+import com.egoshard.intellij.k8s.support.ConfigFileUtil;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.intellij.execution.configurations.RunConfigurationBase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("Tests background resolution of run configuration environments")
+class ConfigResolverTest {
+
+    private static final String PATH = "path";
+    private static final String YAML_VALUE = "{\"kind\":\"ConfigMap\",\"data\":{\"test_key\":\"test_data\"}}";
+    private static final Map<String, String> RESULT = ImmutableMap.of("test_key", "test_data");
+
+    private ConfigResolver resolver;
+
+    @Mock
+    private ConfigFileUtil mockFileUtil;
+
+    @Mock
+    private RunConfigurationBase mockConfig;
+
+    @Mock
+    private ConfigParser mockParser;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        MockitoAnnotations.initMocks(this);
+        resolver = new ConfigResolver(MoreExecutors.newDirectExecutorService());
+        doReturn(1L).when(mockFileUtil).getModificationStamp(any(RunConfigurationBase.class), anyString());
+        doReturn(RESULT).when(mockParser).parse(anyMap());
+        doAnswer(invocation -> new ByteArrayInputStream(YAML_VALUE.getBytes()))
+                .when(mockFileUtil).getStream(any(RunConfigurationBase.class), anyString());
+    }
+
+    @DisplayName("Tests that scheduled settings are served from a snapshot")
+    @Test
+    void testSnapshot() {
+        resolver.schedule(getSettings(true));
+
+        assertEquals(RESULT, resolver.getSnapshot(getSettings(true)));
+        verify(mockParser, times(1)).parse(anyMap());
+    }
+
+    @DisplayName("Tests that disabled settings are not resolved")
+    @Test
+    void testDisabled() {
+        resolver.schedule(getSettings(false));
+
+        assertNull(resolver.getSnapshot(getSettings(true)));
+        verify(mockParser, never()).parse(anyMap());
+    }
+
+    @DisplayName("Tests that snapshots of changed files are stale until refreshed")
+    @Test
+    void testStale() {
+        resolver.schedule(getSettings(true));
+        doReturn(2L).when(mockFileUtil).getModificationStamp(any(RunConfigurationBase.class), anyString());
+
+        assertNull(resolver.getSnapshot(getSettings(true)));
+
+        resolver.refresh();
+
+        assertEquals(RESULT, resolver.getSnapshot(getSettings(true)));
+        verify(mockParser, times(2)).parse(anyMap());
+    }
+
+    @DisplayName("Tests that unresolvable files produce no snapshot")
+    @Test
+    void testFileNotFound() {
+        doReturn(ConfigFileUtil.STAMP_UNKNOWN).when(mockFileUtil).getModificationStamp(any(RunConfigurationBase.class), anyString());
+        resolver.schedule(getSettings(true));
+
+        assertNull(resolver.getSnapshot(getSettings(true)));
+        verify(mockParser, never()).parse(anyMap());
+    }
+
+    @DisplayName("Tests that failed resolutions produce no snapshot")
+    @Test
+    void testFailure() {
+        doThrow(new IllegalArgumentException()).when(mockParser).parse(anyMap());
+        resolver.schedule(getSettings(true));
+
+        assertNull(resolver.getSnapshot(getSettings(true)));
+    }
+
+    @DisplayName("Tests that only changed layers are parsed again")
+    @Test
+    void testIncremental() throws IOException {
+        ConfigEntry first = getEntry("first", ImmutableMap.of("a", "1", "b", "1"));
+        ConfigEntry second = getEntry("second", ImmutableMap.of("b", "2"));
+        ConfigSettings settings = new ConfigSettings(true, Arrays.asList(first, second));
+        resolver.schedule(settings);
+        doReturn(2L).when(second).getModificationStamp();
+        doReturn(ImmutableMap.of()).when(second).parse();
+
+        resolver.refresh();
+
+        assertEquals(ImmutableMap.of("a", "1", "b", "1"), resolver.getSnapshot(settings));
+        verify(first, times(1)).parse();
+        verify(second, times(2)).parse();
+    }
+
+    @DisplayName("Tests that reordered entries are merged again without being parsed")
+    @Test
+    void testReordered() throws IOException {
+        ConfigEntry first = getEntry("first", ImmutableMap.of("a", "1", "b", "1"));
+        ConfigEntry second = getEntry("second", ImmutableMap.of("b", "2"));
+        ConfigSettings settings = new ConfigSettings(true, Arrays.asList(first, second));
+        ConfigSettings reordered = new ConfigSettings(true, Arrays.asList(second, first));
+        resolver.schedule(settings);
+
+        resolver.schedule(reordered);
+
+        assertEquals(ImmutableMap.of("a", "1", "b", "1"), resolver.getSnapshot(reordered));
+        assertNull(resolver.getSnapshot(settings));
+        verify(first, times(1)).parse();
+        verify(second, times(1)).parse();
+    }
+
+    @DisplayName("Tests that refreshing only schedules the check, stamps are not computed on the calling thread")
+    @Test
+    void testRefreshDeferred() throws IOException {
+        List<Runnable> tasks = new ArrayList<>();
+        ExecutorService executor = mock(ExecutorService.class);
+        doAnswer(invocation -> tasks.add(invocation.getArgument(0))).when(executor).execute(any(Runnable.class));
+        resolver = new ConfigResolver(executor);
+        ConfigEntry entry = getEntry("first", ImmutableMap.of("a", "1"));
+        resolver.schedule(new ConfigSettings(true, Collections.singletonList(entry)));
+
+        resolver.refresh();
+        resolver.refresh();
+
+        verify(entry, never()).getModificationStamp();
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        assertEquals(1, tasks.size());
+    }
+
+    @DisplayName("Tests that a failed incremental update keeps the previous index intact")
+    @Test
+    void testIncrementalFailure() throws IOException {
+        ConfigEntry first = getEntry("first", ImmutableMap.of("a", "1", "b", "1"));
+        ConfigEntry second = getEntry("second", ImmutableMap.of("b", "2"));
+        ConfigSettings settings = new ConfigSettings(true, Arrays.asList(first, second));
+        resolver.schedule(settings);
+        doReturn(2L).when(first).getModificationStamp();
+        doReturn(2L).when(second).getModificationStamp();
+        doReturn(ImmutableMap.of("c", "1")).when(first).parse();
+        doThrow(new IOException()).when(second).parse();
+
+        resolver.refresh();
+
+        assertNull(resolver.getSnapshot(settings));
+        doReturn(ImmutableMap.of("b", "3")).when(second).parse();
+        resolver.schedule(settings);
+        assertEquals(ImmutableMap.of("c", "1", "b", "3"), resolver.getSnapshot(settings));
+    }
+
+    @DisplayName("Tests that snapshots of removed run configurations are dropped")
+    @Test
+    void testPrune() throws IOException {
+        ConfigSettings kept = new ConfigSettings(true, Collections.singletonList(getEntry("kept", ImmutableMap.of("a", "1"))));
+        ConfigSettings removed = new ConfigSettings(true, Collections.singletonList(getEntry("removed", ImmutableMap.of("b", "1"))));
+        resolver.schedule(kept);
+        resolver.schedule(removed);
+
+        resolver.prune(Collections.singletonList(kept));
+
+        assertEquals(ImmutableMap.of("a", "1"), resolver.getSnapshot(kept));
+        assertNull(resolver.getSnapshot(removed));
+    }
+
+    @DisplayName("Tests that disposing shuts the resolver thread down and drops every snapshot")
+    @Test
+    void testDispose() {
+        ExecutorService executor = mock(ExecutorService.class);
+        resolver = new ConfigResolver(executor);
+
+        resolver.dispose();
+        resolver.schedule(getSettings(true));
+        resolver.refresh();
+
+        verify(executor).shutdownNow();
+        verify(executor, never()).submit(any(Runnable.class));
+        verify(executor, never()).execute(any(Runnable.class));
+        assertNull(resolver.getSnapshot(getSettings(true)));
+    }
+
+    private ConfigEntry getEntry(String path, Map<String, String> result) throws IOException {
+        ConfigEntry entry = mock(ConfigEntry.class);
+        doReturn(path).when(entry).getPath();
+        doReturn(1L).when(entry).getModificationStamp();
+        doReturn(result).when(entry).parse();
+        return entry;
+    }
+
+    private ConfigSettings getSettings(boolean enabled) {
+        Map<String, ConfigParser> parsers = ImmutableMap.of(ConfigParser.Kind.CONFIGMAP.getKey(), mockParser);
+        return new ConfigSettings(enabled, Collections.singletonList(new ConfigEntry(parsers, mockFileUtil, mockConfig, PATH)));
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tests the compact immutable map")
+class CompactMapTest {
+
+    @DisplayName("Tests lookups, key order and the map contract against a HashMap")
+    @Test
+    void testCopyOf() {
+        Map<String, String> source = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            source.put("KEY_" + i, "value " + i);
+        }
+        source.put("EMPTY", "");
+
+        CompactMap map = CompactMap.copyOf(source);
+
+        assertEquals(source, map);
+        assertEquals(map, source);
+        assertEquals(source.hashCode(), map.hashCode());
+        assertEquals(source.size(), map.size());
+        assertEquals("value 500", map.get("KEY_500"));
+        assertEquals("", map.get("EMPTY"));
+        assertTrue(map.containsKey("KEY_0"));
+        assertFalse(map.containsKey("KEY_1000"));
+        assertNull(map.get(null));
+        assertNull(map.get(1));
+        assertEquals("default", map.getOrDefault("ABSENT", "default"));
+        assertTrue(map.entrySet().contains(new AbstractMap.SimpleEntry<>("KEY_1", "value 1")));
+        assertFalse(map.entrySet().contains(new AbstractMap.SimpleEntry<>("KEY_1", "value 2")));
+        assertSame(map, CompactMap.copyOf(map));
+        ArrayList<String> keys = new ArrayList<>(map.keySet());
+        ArrayList<String> sorted = new ArrayList<>(keys);
+        sorted.sort(null);
+        assertEquals(sorted, keys);
+    }
+
+    @DisplayName("Tests that the last value of a duplicated key wins")
+    @Test
+    void testBuilder() {
+        CompactMap map = new CompactMap.Builder(1)
+                .put("B", "first")
+                .put("A", "a")
+                .put("B", "second")
+                .put("C", "c")
+                .put("B", "third")
+                .build();
+
+        assertEquals(ImmutableMap.of("A", "a", "B", "third", "C", "c"), map);
+        assertEquals(Arrays.asList("A", "B", "C"), new ArrayList<>(map.keySet()));
+        assertThrows(NullPointerException.class, () -> new CompactMap.Builder(1).put(null, "value"));
+    }
+
+    @DisplayName("Tests that the map cannot be modified")
+    @Test
+    void testImmutable() {
+        CompactMap map = CompactMap.copyOf(ImmutableMap.of("A", "a"));
+
+        assertThrows(UnsupportedOperationException.class, () -> map.put("B", "b"));
+        assertThrows(UnsupportedOperationException.class, () -> map.remove("A"));
+        assertThrows(UnsupportedOperationException.class, () -> map.entrySet().iterator().next().setValue("b"));
+        assertThrows(UnsupportedOperationException.class, map::clear);
+        assertTrue(CompactMap.of().isEmpty());
+        assertSame(CompactMap.of(), new CompactMap.Builder(0).build());
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tests canonicalization of parsed layers")
+class ConfigInternerTest {
+
+    @DisplayName("Tests that equal keys and large values parsed separately are held once")
+    @Test
+    void testCanonicalize() {
+        CompactMap first = ConfigInterner.canonicalize(getLayer());
+        CompactMap second = ConfigInterner.canonicalize(getLayer());
+
+        assertEquals(first, second);
+        assertSame(getKey(first, "LOG_LEVEL"), getKey(second, "LOG_LEVEL"));
+        assertSame(first.get("CA_BUNDLE"), second.get("CA_BUNDLE"));
+        assertNotSame(first.get("LOG_LEVEL"), second.get("LOG_LEVEL"));
+        assertNull(second.get("EMPTY"));
+        assertTrue(second.containsKey("EMPTY"));
+    }
+
+    @DisplayName("Tests that a layer already holding canonical strings is returned as is")
+    @Test
+    void testCanonicalizeCanonical() {
+        CompactMap layer = ConfigInterner.canonicalize(getLayer());
+
+        assertSame(layer, ConfigInterner.canonicalize(layer));
+        assertTrue(ConfigInterner.getKeyCount() >= layer.size());
+        assertTrue(ConfigInterner.getValueCount() >= 1);
+        assertSame(CompactMap.of(), ConfigInterner.canonicalize(new HashMap<>()));
+    }
+
+    private static Map<String, String> getLayer() {
+        StringBuilder bundle = new StringBuilder("-----BEGIN CERTIFICATE-----\n");
+        while (bundle.length() < ConfigInterner.VALUE_THRESHOLD) {
+            bundle.append("MIIDdzCCAl+gAwIBAgIEAgAAuTANBgkqhkiG9w0BAQUFADBaMQswCQYDVQQGEwJJ\n");
+        }
+        Map<String, String> layer = new HashMap<>();
+        layer.put(new String("LOG_LEVEL".toCharArray()), new String("INFO".toCharArray()));
+        layer.put(new String("CA_BUNDLE".toCharArray()), bundle.toString());
+        layer.put("EMPTY", null);
+        return layer;
+    }
+
+    private static String getKey(Map<String, String> layer, String key) {
+        return layer.keySet().stream().filter(key::equals).findFirst().orElse(null);
+    }
+
+}
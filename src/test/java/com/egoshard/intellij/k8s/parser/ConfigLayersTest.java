@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tests merging of parsed configuration layers")
+class ConfigLayersTest {
+
+    private static final String INVALID = "not*base64";
+
+    @DisplayName("Tests that later layers take precedence")
+    @Test
+    void testPrecedence() {
+        Map<String, String> result = ConfigLayers.merge(Arrays.asList(
+                ImmutableMap.of("A", "1", "B", "1"),
+                getSecret(ImmutableMap.of("B", encode("2"), "C", encode("2"))),
+                ImmutableMap.of("C", "3")));
+
+        assertEquals(ImmutableMap.of("A", "1", "B", "2", "C", "3"), result);
+    }
+
+    @DisplayName("Tests that overridden secret values are never decoded")
+    @Test
+    void testOverriddenNotDecoded() {
+        Map<String, String> result = ConfigLayers.merge(Arrays.asList(
+                getSecret(ImmutableMap.of("KEY", INVALID)),
+                ImmutableMap.of("KEY", "value")));
+
+        assertEquals(ImmutableMap.of("KEY", "value"), result);
+    }
+
+    @DisplayName("Tests that binary winning values never fall back to the previous layer")
+    @Test
+    void testBinaryNoFallback() {
+        String binary = Base64.getEncoder().encodeToString(new byte[]{(byte) 0xFF, 0});
+        Map<String, String> result = ConfigLayers.merge(Arrays.asList(
+                ImmutableMap.of("KEY", "text", "OTHER", "generic"),
+                getSecret(ImmutableMap.of("KEY", binary))));
+
+        assertEquals(ImmutableMap.of("OTHER", "generic"), result);
+    }
+
+    @DisplayName("Tests that a binary value in the most specific layer hides every generic value of its key")
+    @Test
+    void testBinaryMostSpecific() {
+        String binary = Base64.getEncoder().encodeToString(new byte[]{(byte) 0xFF, 0});
+        Map<String, String> result = ConfigLayers.merge(Arrays.asList(
+                getSecret(ImmutableMap.of("KEY", encode("secret"))),
+                ImmutableMap.of("KEY", "text"),
+                getSecret(ImmutableMap.of("KEY", binary, "TEXT", encode("value")))));
+
+        assertFalse(result.containsKey("KEY"));
+        assertEquals(ImmutableMap.of("TEXT", "value"), result);
+    }
+
+    @DisplayName("Tests that undecodable winning values report their layer")
+    @Test
+    void testMergeException() {
+        ConfigLayers.MergeException exception = assertThrows(ConfigLayers.MergeException.class, () -> ConfigLayers.merge(
+                Arrays.asList(ImmutableMap.of("KEY", "value"), getSecret(ImmutableMap.of("KEY", INVALID)), ImmutableMap.of())));
+
+        assertEquals(1, exception.getLayer());
+        assertTrue(exception.getMessage().contains("KEY"));
+    }
+
+    @DisplayName("Tests that a single layer is copied into an immutable compact map")
+    @Test
+    void testSingleLayer() {
+        Map<String, String> layer = new HashMap<>(ImmutableMap.of("KEY", "value"));
+        Map<String, String> result = ConfigLayers.merge(Collections.singletonList(layer));
+        layer.put("OTHER", "value");
+
+        assertEquals(ImmutableMap.of("KEY", "value"), result);
+        assertTrue(result instanceof CompactMap);
+        assertThrows(UnsupportedOperationException.class, () -> result.put("OTHER", "value"));
+    }
+
+    private static SecretData getSecret(Map<String, Object> encoded) {
+        return new SecretData(new HashMap<>(encoded), new HashMap<>());
+    }
+
+    private static String encode(String value) {
+        return Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
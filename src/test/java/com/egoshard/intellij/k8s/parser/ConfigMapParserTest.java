@@ -17,6 +17,7 @@ package com.egoshard.intellij.k8s.parser;
 
 import com.egoshard.intellij.k8s.ConfigTestDataUtils;
 import com.egoshard.intellij.k8s.TestUtils;
+import com.google.common.collect.ImmutableMap;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -56,4 +57,16 @@ class ConfigMapParserTest {
 
     }
 
+    @DisplayName("Tests that volumes include binaryData keys")
+    @Test
+    void testParseVolume() {
+        Map<String, Object> source = ConfigTestDataUtils.getConfigMapData();
+        source.put(AbstractParser.KEY_BINARY_DATA, ImmutableMap.of("binary", "AQI="));
+
+        SecretData result = parser.parseVolume(source);
+
+        assertEquals(TEST_VALUE, result.getPlain().get(TEST_KEY));
+        assertEquals("AQI=", result.getEncoded().get("binary"));
+    }
+
 }
\ No newline at end of file
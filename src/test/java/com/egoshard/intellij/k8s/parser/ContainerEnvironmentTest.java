@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tests container environment resolution")
+class ContainerEnvironmentTest {
+
+    private static final String DEPLOYMENT = "kind: Service\n"
+            + "metadata:\n  name: web\n"
+            + "---\n"
+            + "kind: Deployment\n"
+            + "metadata:\n  name: web\n"
+            + "spec:\n"
+            + "  template:\n"
+            + "    spec:\n"
+            + "      initContainers:\n"
+            + "      - name: init\n"
+            + "        env:\n"
+            + "        - name: INIT\n"
+            + "          value: 'yes'\n"
+            + "      containers:\n"
+            + "      - name: app\n"
+            + "        envFrom:\n"
+            + "        - configMapRef:\n"
+            + "            name: common\n"
+            + "        - prefix: DB_\n"
+            + "          secretRef:\n"
+            + "            name: db\n"
+            + "        - configMapRef:\n"
+            + "            name: absent\n"
+            + "            optional: true\n"
+            + "        env:\n"
+            + "        - name: LEVEL\n"
+            + "          value: debug\n"
+            + "        - name: URL\n"
+            + "          value: $(DB_HOST):$(PORT)/$(UNDEFINED)$$\n"
+            + "        - name: PASSWORD\n"
+            + "          valueFrom:\n"
+            + "            secretKeyRef:\n"
+            + "              name: db\n"
+            + "              key: PASSWORD\n"
+            + "        - name: OPTIONAL\n"
+            + "          valueFrom:\n"
+            + "            configMapKeyRef:\n"
+            + "              name: common\n"
+            + "              key: ABSENT\n"
+            + "              optional: true\n"
+            + "        - name: POD_IP\n"
+            + "          valueFrom:\n"
+            + "            fieldRef:\n"
+            + "              fieldPath: status.podIP\n"
+            + "        - name: BLANK\n"
+            + "      - name: sidecar\n";
+    private static final Map<String, String> COMMON = ImmutableMap.of("LEVEL", "info", "PORT", "8080");
+    private static final Map<String, String> DB = ImmutableMap.of("HOST", "db.local", "PASSWORD", "secret");
+
+    @DisplayName("Tests that envFrom, env, prefixes, optional references and variable expansion resolve as in Kubernetes")
+    @Test
+    void testResolve() {
+        ContainerEnvironment environment = read(DEPLOYMENT, "web", "app");
+
+        Map<String, String> result = environment.resolve(this::find);
+
+        assertEquals(ImmutableMap.builder()
+                .put("LEVEL", "debug")
+                .put("PORT", "8080")
+                .put("DB_HOST", "db.local")
+                .put("DB_PASSWORD", "secret")
+                .put("URL", "db.local:8080/$(UNDEFINED)$")
+                .put("PASSWORD", "secret")
+                .put("BLANK", "")
+                .build(), result);
+        assertEquals("app", environment.getContainer());
+        assertEquals(3, environment.getReferences().size());
+    }
+
+    @DisplayName("Tests container selection across init containers and single container pods")
+    @Test
+    void testRead() {
+        assertEquals(ImmutableMap.of("INIT", "yes"), read(DEPLOYMENT, null, "init").resolve(this::find));
+        assertEquals("only", read("kind: Pod\nspec:\n  containers:\n  - name: only\n", null, null).getContainer());
+        assertEquals("job", read("kind: CronJob\nspec:\n  jobTemplate:\n    spec:\n      template:\n        spec:\n"
+                + "          containers:\n          - name: job\n", null, "job").getContainer());
+
+        assertThrows(IllegalArgumentException.class, () -> read(DEPLOYMENT, "web", null));
+        assertThrows(IllegalArgumentException.class, () -> read(DEPLOYMENT, "web", "missing"));
+        assertThrows(IllegalArgumentException.class, () -> read(DEPLOYMENT, "api", "app"));
+        assertThrows(IllegalArgumentException.class, () -> read("kind: ConfigMap\n", null, "app"));
+    }
+
+    @DisplayName("Tests that missing references fail unless they are optional")
+    @Test
+    void testResolveMissing() {
+        ContainerEnvironment environment = read(DEPLOYMENT, "web", "app");
+
+        IllegalArgumentException missing = assertThrows(IllegalArgumentException.class,
+                () -> environment.resolve((kind, name) -> "common".equals(name) ? COMMON : null));
+        assertTrue(missing.getMessage().contains("[db]"));
+
+        IllegalArgumentException missingKey = assertThrows(IllegalArgumentException.class,
+                () -> environment.resolve((kind, name) -> "db".equals(name) ? ImmutableMap.of("HOST", "h") : find(kind, name)));
+        assertTrue(missingKey.getMessage().contains("[PASSWORD]"));
+    }
+
+    @DisplayName("Tests variable expansion escapes")
+    @Test
+    void testExpand() {
+        Map<String, String> variables = ImmutableMap.of("A", "1");
+
+        assertEquals("1-$(A)-$(B)-$x-$(A", ContainerEnvironment.expand("$(A)-$$(A)-$(B)-$x-$(A", variables));
+        assertEquals("plain", ContainerEnvironment.expand("plain", variables));
+        assertEquals("end$", ContainerEnvironment.expand("end$", variables));
+    }
+
+    private Map<String, String> find(ConfigParser.Kind kind, String name) {
+        if (kind == ConfigParser.Kind.CONFIGMAP && "common".equals(name)) {
+            return COMMON;
+        }
+        return kind == ConfigParser.Kind.SECRET && "db".equals(name) ? DB : null;
+    }
+
+    private static ContainerEnvironment read(String yaml, String workload, String container) {
+        return ContainerEnvironment.read(yaml.getBytes(StandardCharsets.UTF_8), workload, container);
+    }
+
+}
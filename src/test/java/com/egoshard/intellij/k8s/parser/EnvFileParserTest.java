@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tests env file parsing")
+class EnvFileParserTest {
+
+    private EnvFileParser parser;
+
+    @BeforeEach
+    void setUp() {
+        parser = new EnvFileParser(ImmutableMap.of("FROM_ENV", "inherited")::get);
+    }
+
+    @DisplayName("Tests file names recognised as env files")
+    @Test
+    void testIsEnvFile() {
+        assertTrue(EnvFileParser.isEnvFile(".env"));
+        assertTrue(EnvFileParser.isEnvFile("config/dev.env"));
+        assertTrue(EnvFileParser.isEnvFile("C:\\config\\.env.local"));
+        assertFalse(EnvFileParser.isEnvFile("config/env.yaml"));
+        assertFalse(EnvFileParser.isEnvFile(null));
+    }
+
+    @DisplayName("Tests kubectl comment, whitespace and quoting rules")
+    @Test
+    void testParse() {
+        Map<String, String> result = parse("\uFEFF# comment\r\n"
+                + "\r\n"
+                + "   INDENTED=value\r\n"
+                + "QUOTED=\"a b\"\n"
+                + "HASH=a # b\n"
+                + "TRAILING=value  \n"
+                + "EQUALS=a=b\n"
+                + "EMPTY=\n"
+                + "UNICODE=\u00e9t\u00e9\n"
+                + "FROM_ENV\n"
+                + "UNSET\n"
+                + "  # indented comment\n"
+                + "LAST=no newline");
+
+        assertEquals(ImmutableMap.builder()
+                .put("INDENTED", "value")
+                .put("QUOTED", "\"a b\"")
+                .put("HASH", "a # b")
+                .put("TRAILING", "value  ")
+                .put("EQUALS", "a=b")
+                .put("EMPTY", "")
+                .put("UNICODE", "\u00e9t\u00e9")
+                .put("FROM_ENV", "inherited")
+                .put("UNSET", "")
+                .put("LAST", "no newline")
+                .build(), result);
+    }
+
+    @DisplayName("Tests that invalid and duplicate keys are rejected with their line")
+    @Test
+    void testInvalid() {
+        IllegalArgumentException invalid = assertThrows(IllegalArgumentException.class, () -> parse("A=1\n1KEY=value\n"));
+        assertTrue(invalid.getMessage().contains("1KEY") && invalid.getMessage().contains("2"));
+        assertThrows(IllegalArgumentException.class, () -> parse("KEY NAME=value\n"));
+        assertThrows(IllegalArgumentException.class, () -> parse("=value\n"));
+        assertThrows(IllegalArgumentException.class, () -> parse("A=1\nA=2\n"));
+    }
+
+    @DisplayName("Tests that the values taken from the environment are reported for caching")
+    @Test
+    void testGetEnvironment() {
+        assertEquals(ImmutableMap.of("FROM_ENV", "inherited", "UNSET", ""),
+                parser.getEnvironment("UNSET\nA=1\nFROM_ENV\n".getBytes(StandardCharsets.UTF_8)));
+        assertTrue(parser.getEnvironment("A=1\n".getBytes(StandardCharsets.UTF_8)).isEmpty());
+    }
+
+    @DisplayName("Tests that empty files have no values")
+    @Test
+    void testEmpty() {
+        assertTrue(parse("").isEmpty());
+        assertTrue(parse("# only a comment\n\n").isEmpty());
+    }
+
+    private Map<String, String> parse(String content) {
+        return parser.parse(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tests flat manifest scanning against SnakeYAML")
+class FlatManifestScannerTest {
+
+    private FlatManifestScanner scanner;
+    private ManifestReader reader;
+
+    @BeforeEach
+    void setUp() {
+        scanner = new FlatManifestScanner();
+        reader = new ManifestReader(false);
+    }
+
+    @DisplayName("Tests that resource manifests are scanned identically to SnakeYAML")
+    @ParameterizedTest
+    @ValueSource(strings = {"TestConfigMap.yml", "TestSecretData.yml", "TestSecretStringData.yml", "TestSecretDataStringData.yml"})
+    void testResources(String resource) throws IOException {
+        assertSame(getResource(resource));
+    }
+
+    @DisplayName("Tests that supported manifests are scanned identically to SnakeYAML")
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "kind: ConfigMap\ndata:\n  A: value\n",
+            "kind: ConfigMap\ndata:\n  A: value",
+            "---\nkind: ConfigMap\ndata:\n  A: value\n",
+            "\uFEFFkind: ConfigMap\ndata:\n  A: value\n",
+            "kind: ConfigMap\r\ndata:\r\n  A: value\r\n  B: |\r\n    one\r\n    two\r\n",
+            "# header\napiVersion: v1\nkind: \"ConfigMap\" # kind\nmetadata:\n  name: test\n  labels:\n    app: test\ndata:\n  A: value # comment\n",
+            "kind: ConfigMap\ndata:\n    A: value\n    B:   spaced value  \n\n    # comment\n    C: \"quoted # value\"\n",
+            "kind: ConfigMap\ndata:\n  A: 'single ''quoted'' value'\n  B: ''\n  C: \"\"\n",
+            "kind: ConfigMap\ndata:\n  A: \"2\"\n  B: '010'\n  C: \"true\"\n  D: value#hash\n  E: http://host:8080/path\n",
+            "kind: ConfigMap\ndata:\n  A: \u00FCn\u00EFc\u00F6d\u00E9\n  B: \"\u65E5\u672C\u8A9E\"\n",
+            "kind: ConfigMap\ndata:\n  A: |\n    one\n    two\n  B: value\n",
+            "kind: ConfigMap\ndata:\n  A: |-\n    one\n\n    two\n\n\n  B: value\n",
+            "kind: ConfigMap\ndata:\n  A: |+\n    one\n    two\n\n\n  B: value\n",
+            "kind: ConfigMap\ndata:\n  A: | # comment\n    one\n      indented\n    # not a comment\n",
+            "kind: ConfigMap\ndata:\n  A: |\n\n    leading\n",
+            "kind: ConfigMap\ndata: {}\n",
+            "kind: ConfigMap\ndata:\nmetadata:\n  name: test\n",
+            "kind: ConfigMap\nmetadata:\n  annotations:\n    note: |\n      data:\n        X: y\ndata:\n  A: value\nbinaryData:\n  B: dmFsdWU=\n",
+            "kind: Secret\ntype: Opaque\ndata:\n  A: dmFsdWU=\n  B: Mg==\nstringData:\n  C: value\n",
+            "data:\n  A: value\nkind: ConfigMap\n"
+    })
+    void testSupported(String yaml) {
+        assertSame(yaml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @DisplayName("Tests that unsupported manifests are rejected and read by SnakeYAML")
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "# only a comment\n",
+            "kind: ConfigMap\ndata:\n  A: &anchor value\n  B: *anchor\n",
+            "kind: ConfigMap\ndata:\n  A: !!str value\n",
+            "kind: ConfigMap\ndata: {A: value}\n",
+            "kind: ConfigMap\ndata:\n  A: >\n    folded\n    text\n",
+            "kind: ConfigMap\ndata:\n  A: |2\n    indented\n",
+            "kind: ConfigMap\ndata:\n  A: \"escaped\\nvalue\"\n",
+            "kind: ConfigMap\ndata:\n  A: 2\n",
+            "kind: ConfigMap\ndata:\n  A: true\n",
+            "kind: ConfigMap\ndata:\n  A: ~\n",
+            "kind: ConfigMap\ndata:\n  A:\n",
+            "kind: ConfigMap\ndata:\n  A: multi\n    line\n",
+            "kind: ConfigMap\ndata:\n  \"A\": value\n",
+            "kind: ConfigMap\ndata:\n  1: value\n",
+            "kind: ConfigMap\ndata:\n  A:\tvalue\n",
+            "kind: ConfigMap\ndata:\n  A: |\n    unterminated",
+            "kind: ConfigMap\ndata:\n  A: value\n---\nkind: Secret\n",
+            "kind: ConfigMap\ndata:\n  A: value\ndata:\n  B: value\n",
+            "kind: ConfigMap\n<<: {data: {A: value}}\n",
+            "kind: ConfigMap\ndata:\n  A: value\n  - item\n",
+            "- kind: ConfigMap\n",
+            "kind: ConfigMap\ndata:\n  A: \"emoji \uD83D\uDE00\"\n"
+    })
+    void testUnsupported(String yaml) {
+        byte[] content = yaml.getBytes(StandardCharsets.UTF_8);
+        assertNull(scanner.scan(ByteBuffer.wrap(content)));
+        try {
+            assertEquals(reader.read(content), new ManifestReader().read(content));
+        } catch (RuntimeException e) {
+            assertThrows(e.getClass(), () -> new ManifestReader().read(content));
+        }
+    }
+
+    @DisplayName("Tests that values are left undecoded until read")
+    @Test
+    void testByteSlice() {
+        Map<String, Object> result = scanner.scan(ByteBuffer.wrap("kind: ConfigMap\ndata:\n  A: value\n".getBytes(StandardCharsets.UTF_8)));
+        Object value = getSection(result, AbstractParser.KEY_DATA).get("A");
+        assertTrue(value instanceof ByteSlice);
+        assertEquals(5, ((ByteSlice) value).byteLength());
+        assertEquals("value", value.toString());
+    }
+
+    private void assertSame(byte[] content) {
+        Map<String, Object> scanned = scanner.scan(ByteBuffer.wrap(content));
+        assertNotNull(scanned);
+        Map<String, Object> expected = reader.read(content);
+        assertEquals(normalize(expected), normalize(scanned));
+        ConfigParser parser = ConfigParser.Kind.SECRET.getKey().equals(expected.get(ConfigParser.KEY_KIND))
+                ? new SecretParser()
+                : new ConfigMapParser();
+        if (expected.get(AbstractParser.KEY_DATA) != null) {
+            assertEquals(parser.parse(expected), parser.parse(scanned));
+        }
+    }
+
+    private Map<String, Object> normalize(Map<String, Object> source) {
+        if (source == null) {
+            return null;
+        }
+        Map<String, Object> result = new HashMap<>();
+        for (Map.Entry<String, Object> entry : source.entrySet()) {
+            if (entry.getValue() instanceof Map) {
+                Map<String, String> values = new LinkedHashMap<>();
+                getSection(source, entry.getKey()).forEach((key, value) -> values.put(key, String.valueOf(value)));
+                result.put(entry.getKey(), values);
+            } else {
+                result.put(entry.getKey(), entry.getValue() == null ? null : String.valueOf(entry.getValue()));
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> getSection(Map<String, Object> source, String key) {
+        return (Map<String, Object>) source.get(key);
+    }
+
+    private byte[] getResource(String name) throws IOException {
+        try (InputStream input = ClassLoader.getSystemResourceAsStream(name)) {
+            return FileUtil.loadBytes(input);
+        }
+    }
+
+}
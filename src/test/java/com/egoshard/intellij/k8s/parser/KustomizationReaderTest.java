@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tests local builds of kustomizations")
+class KustomizationReaderTest {
+
+    private static final String BASE = "base/kustomization.yaml";
+    private static final String OVERLAY = "overlays/dev/kustomization.yaml";
+    private static final Map<String, ConfigParser> PARSERS = ImmutableMap.of(
+            ConfigParser.Kind.CONFIGMAP.getKey(), new ConfigMapParser(),
+            ConfigParser.Kind.SECRET.getKey(), new SecretParser());
+
+    private Map<String, byte[]> files;
+    private KustomizationReader reader;
+
+    @BeforeEach
+    void setUp() {
+        files = new HashMap<>();
+        reader = new KustomizationReader(files::get);
+        put(BASE, "resources:\n- config.yaml\n");
+        put("base/config.yaml", "apiVersion: v1\nkind: ConfigMap\nmetadata:\n  name: app\ndata:\n  A: base\n  B: base\n"
+                + "---\napiVersion: v1\nkind: ConfigMap\nmetadata:\n  name: other\ndata:\n  C: other\n");
+    }
+
+    @DisplayName("Tests file names recognised as kustomizations")
+    @Test
+    void testIsKustomization() {
+        assertTrue(KustomizationReader.isKustomization(BASE));
+        assertTrue(KustomizationReader.isKustomization("C:\\k8s\\kustomization.yml"));
+        assertTrue(KustomizationReader.isKustomization("Kustomization"));
+        assertFalse(KustomizationReader.isKustomization("config.yaml"));
+        assertFalse(KustomizationReader.isKustomization(null));
+    }
+
+    @DisplayName("Tests path resolution relative to a kustomization")
+    @Test
+    void testResolve() {
+        assertEquals("base/config.yaml", KustomizationReader.resolve("overlays/dev", "../../base/./config.yaml"));
+        assertEquals("../shared", KustomizationReader.resolve("", "../shared"));
+        assertEquals("/etc/config.yaml", KustomizationReader.resolve("overlays", "/etc/config.yaml"));
+    }
+
+    @DisplayName("Tests that overlay generators take precedence over base resources")
+    @Test
+    void testOverlay() throws Exception {
+        put(OVERLAY, "bases:\n- ../../base\nconfigMapGenerator:\n- name: app\n  behavior: merge\n"
+                + "  envs:\n  - app.env\n  files:\n  - config.properties\n  - ALIAS=config.properties\n"
+                + "  literals:\n  - B=overlay\n  - QUOTED=\"a b\"\n");
+        put("overlays/dev/app.env", "\uFEFF# comment\r\nENV=env\r\n\r\n");
+        put("overlays/dev/config.properties", "x=1\n");
+
+        KustomizationReader.Build build = reader.read(OVERLAY);
+        Map<String, String> result = ConfigLayers.merge(build.getLayers(PARSERS, null));
+
+        assertEquals(Arrays.asList(OVERLAY, BASE, "base/config.yaml", "overlays/dev/app.env", "overlays/dev/config.properties"),
+                Arrays.asList(build.getInputs().keySet().toArray()));
+        assertEquals(new HashMap<>(ImmutableMap.<String, String>builder()
+                .put("A", "base").put("B", "overlay").put("C", "other").put("ENV", "env").put("QUOTED", "a b")
+                .put("config.properties", "x=1\n").put("ALIAS", "x=1\n").build()), result);
+    }
+
+    @DisplayName("Tests that values env files take from the environment are recorded with the build")
+    @Test
+    void testEnvironment() throws Exception {
+        put(OVERLAY, "configMapGenerator:\n- name: app\n  envs:\n  - app.env\n");
+        put("overlays/dev/app.env", "A=1\nK8S_CONFIG_TEST_UNSET\n");
+
+        KustomizationReader.Build build = reader.read(OVERLAY);
+
+        assertEquals(ImmutableMap.of("K8S_CONFIG_TEST_UNSET", ""), build.getEnvironment());
+        assertEquals(ImmutableMap.of("A", "1", "K8S_CONFIG_TEST_UNSET", ""), ConfigLayers.merge(build.getLayers(PARSERS, null)));
+    }
+
+    @DisplayName("Tests that the name filter applies to resources and generators")
+    @Test
+    void testNamed() throws Exception {
+        put(OVERLAY, "resources:\n- ../../base\nconfigMapGenerator:\n- name: other\n  literals:\n  - C=overlay\n"
+                + "- name: unrelated\n  literals:\n  - D=unrelated\n");
+
+        List<Map<String, String>> layers = reader.read(OVERLAY).getLayers(PARSERS, "other");
+
+        assertEquals(ImmutableMap.of("C", "overlay"), ConfigLayers.merge(layers));
+        assertEquals(2, layers.size());
+    }
+
+    @DisplayName("Tests that replace generators drop earlier layers of the same name")
+    @Test
+    void testReplace() throws Exception {
+        put(OVERLAY, "resources:\n- ../../base\nconfigMapGenerator:\n- name: app\n  behavior: replace\n"
+                + "  literals:\n  - A=overlay\n");
+
+        Map<String, String> result = ConfigLayers.merge(reader.read(OVERLAY).getLayers(PARSERS, null));
+
+        assertEquals(ImmutableMap.of("A", "overlay", "C", "other"), result);
+    }
+
+    @DisplayName("Tests that binary secret files are kept as binary data")
+    @Test
+    void testSecretGenerator() throws Exception {
+        put(OVERLAY, "secretGenerator:\n- name: secret\n  files:\n  - key.bin\n  literals:\n  - PASSWORD=secret\n");
+        files.put("overlays/dev/key.bin", new byte[]{(byte) 0xFF, 0});
+
+        List<Map<String, String>> layers = reader.read(OVERLAY).getLayers(PARSERS, null);
+
+        assertTrue(layers.get(0) instanceof SecretData);
+        assertEquals(ImmutableMap.of("PASSWORD", "secret"), ConfigLayers.merge(layers));
+    }
+
+    @DisplayName("Tests that a key defined twice by one generator is rejected")
+    @Test
+    void testDuplicateKey() {
+        put(OVERLAY, "configMapGenerator:\n- name: app\n  literals:\n  - A=1\n  - A=2\n");
+
+        assertThrows(IllegalArgumentException.class, () -> reader.read(OVERLAY));
+    }
+
+    @DisplayName("Tests that cycles, remote and missing resources are rejected")
+    @Test
+    void testInvalidResources() {
+        put(OVERLAY, "resources:\n- ../dev\n");
+        assertThrows(IllegalArgumentException.class, () -> reader.read(OVERLAY));
+
+        put(OVERLAY, "resources:\n- https://github.com/example/config\n");
+        assertThrows(IllegalArgumentException.class, () -> reader.read(OVERLAY));
+
+        put(OVERLAY, "resources:\n- missing.yaml\n");
+        assertThrows(FileNotFoundException.class, () -> reader.read(OVERLAY));
+    }
+
+    private void put(String path, String content) {
+        files.put(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
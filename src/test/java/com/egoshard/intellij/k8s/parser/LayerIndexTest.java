@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tests incremental merging of configuration layers")
+class LayerIndexTest {
+
+    private static final String BINARY = Base64.getEncoder().encodeToString(new byte[]{(byte) 0xFF});
+
+    @DisplayName("Tests that replaced and moved layers merge like a full merge")
+    @Test
+    void testMatchesFullMerge() {
+        Random random = new Random(15);
+        for (int run = 0; run < 200; run++) {
+            List<Map<String, String>> layers = new ArrayList<>();
+            for (int i = 0; i < 1 + random.nextInt(6); i++) {
+                layers.add(getLayer(random));
+            }
+            LayerIndex index = new LayerIndex(layers);
+            assertEquals(ConfigLayers.merge(layers), index.getResult());
+            for (int step = 0; step < 10; step++) {
+                if (random.nextBoolean()) {
+                    int position = random.nextInt(layers.size());
+                    Map<String, String> layer = getLayer(random);
+                    layers.set(position, layer);
+                    index.replace(position, layer);
+                } else {
+                    int from = random.nextInt(layers.size());
+                    int to = random.nextInt(layers.size());
+                    layers.add(to, layers.remove(from));
+                    index.move(from, to);
+                }
+                assertEquals(ConfigLayers.merge(layers), index.getResult());
+            }
+        }
+    }
+
+    @DisplayName("Tests that replacing a layer only reads keys the layer touches")
+    @Test
+    void testReplaceReadsAffectedKeys() {
+        Set<String> read = new HashSet<>();
+        Map<String, String> base = new ReadTrackingMap(ImmutableMap.of("A", "0", "B", "0", "C", "0"), read);
+        LayerIndex index = new LayerIndex(Arrays.asList(base, ImmutableMap.of("A", "1", "B", "1")));
+        read.clear();
+
+        index.replace(1, ImmutableMap.of("A", "2"));
+
+        assertEquals(ImmutableMap.of("A", "2", "B", "0", "C", "0"), index.getResult());
+        assertEquals(Collections.singleton("B"), read);
+    }
+
+    @DisplayName("Tests that moving a layer only reads the keys of the moved layer")
+    @Test
+    void testMoveReadsMovedKeys() {
+        Set<String> read = new HashSet<>();
+        Map<String, String> moved = new ReadTrackingMap(ImmutableMap.of("A", "0"), read);
+        LayerIndex index = new LayerIndex(Arrays.asList(moved, ImmutableMap.of("A", "1", "B", "1"), ImmutableMap.of("C", "2")));
+        read.clear();
+
+        index.move(0, 2);
+
+        assertEquals(ImmutableMap.of("A", "0", "B", "1", "C", "2"), index.getResult());
+        assertEquals(Collections.singleton("A"), read);
+    }
+
+    @DisplayName("Tests that the same parsed layer may be used at several positions")
+    @Test
+    void testSharedLayer() {
+        Map<String, String> shared = ImmutableMap.of("A", "0");
+        LayerIndex index = new LayerIndex(Arrays.asList(shared, ImmutableMap.of("A", "1"), shared));
+
+        index.replace(2, ImmutableMap.of());
+
+        assertEquals(ImmutableMap.of("A", "1"), index.getResult());
+        assertEquals(3, index.size());
+    }
+
+    @DisplayName("Tests that updating a copy leaves the original index unchanged")
+    @Test
+    void testCopy() {
+        LayerIndex index = new LayerIndex(Arrays.asList(ImmutableMap.of("A", "0", "B", "0"), ImmutableMap.of("A", "1")));
+        LayerIndex copy = index.copy();
+
+        copy.replace(1, ImmutableMap.of("B", "1"));
+        copy.move(0, 1);
+
+        assertEquals(ImmutableMap.of("A", "1", "B", "0"), index.getResult());
+        assertEquals(ImmutableMap.of("A", "0", "B", "0"), copy.getResult());
+        index.replace(0, ImmutableMap.of());
+        assertEquals(ImmutableMap.of("A", "1"), index.getResult());
+        assertEquals(ImmutableMap.of("A", "0", "B", "0"), copy.getResult());
+    }
+
+    private static Map<String, String> getLayer(Random random) {
+        Map<String, Object> encoded = new HashMap<>();
+        Map<String, String> plain = new HashMap<>();
+        for (int i = 0; i < random.nextInt(5); i++) {
+            String key = String.valueOf((char) ('A' + random.nextInt(6)));
+            String value = String.valueOf(random.nextInt(100));
+            if (random.nextInt(4) == 0) {
+                encoded.put(key, random.nextBoolean() ? BINARY : Base64.getEncoder().encodeToString(value.getBytes()));
+            } else {
+                plain.put(key, value);
+            }
+        }
+        return encoded.isEmpty() ? plain : new SecretData(encoded, plain);
+    }
+
+    /**
+     * Map recording which keys have their value read.
+     */
+    private static class ReadTrackingMap extends HashMap<String, String> {
+
+        private final Set<String> read;
+
+        ReadTrackingMap(Map<String, String> values, Set<String> read) {
+            super(values);
+            this.read = read;
+        }
+
+        @Override
+        public String get(Object key) {
+            read.add((String) key);
+            return super.get(key);
+        }
+
+    }
+
+}
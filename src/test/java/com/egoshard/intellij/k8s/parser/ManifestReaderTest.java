@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import com.google.common.collect.ImmutableMap;
+import com.intellij.openapi.util.io.FileUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tests streaming manifest extraction")
+class ManifestReaderTest {
+
+    private ManifestReader reader;
+
+    @BeforeEach
+    void setUp() {
+        reader = new ManifestReader(false);
+    }
+
+    @DisplayName("Tests that only parser sections are extracted from an exported manifest")
+    @Test
+    void testReadExported() throws IOException {
+        Map<String, Object> result = reader.read(getResource("TestConfigMapExported.yml"));
+
+        assertEquals(ConfigParser.Kind.CONFIGMAP.getKey(), result.get(ConfigParser.KEY_KIND));
+        assertTrue(result.containsKey(AbstractParser.KEY_DATA));
+        assertTrue(result.containsKey(AbstractParser.KEY_BINARY_DATA));
+        assertFalse(result.containsKey("metadata"));
+        assertFalse(result.containsKey("apiVersion"));
+    }
+
+    @DisplayName("Tests that extracted sections match a full YAML load")
+    @ParameterizedTest
+    @ValueSource(strings = {"TestConfigMap.yml", "TestConfigMapExported.yml", "TestSecretData.yml", "TestSecretStringData.yml",
+            "TestSecretDataStringData.yml"})
+    void testReadMatchesLoad(String resource) throws IOException {
+        byte[] content = getResource(resource);
+        Map<String, Object> expected = new Yaml().load(new ByteArrayInputStream(content));
+        Map<String, Object> result = reader.read(content);
+
+        for (Map.Entry<String, Object> entry : result.entrySet()) {
+            assertEquals(expected.get(entry.getKey()), entry.getValue());
+        }
+    }
+
+    @DisplayName("Tests that anchors and merge keys are resolved")
+    @Test
+    void testReadAliases() {
+        String yaml = "kind: ConfigMap\nmetadata:\n  labels: &labels\n    a: b\ndata:\n  base: &base\n    key: value\n  merged:\n    <<: *base\n  alias: *labels\n";
+        Map<String, Object> expected = new Yaml().load(yaml);
+        Map<String, Object> result = reader.read(yaml.getBytes());
+
+        assertEquals(expected.get(AbstractParser.KEY_DATA), result.get(AbstractParser.KEY_DATA));
+    }
+
+    @DisplayName("Tests that an empty document has no content")
+    @Test
+    void testReadEmpty() {
+        assertNull(reader.read(new byte[0]));
+        assertTrue(reader.read("{}".getBytes()).isEmpty());
+    }
+
+    @DisplayName("Tests that a document which is not a mapping is rejected")
+    @Test
+    void testReadInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> reader.read("test".getBytes()));
+        assertThrows(IllegalArgumentException.class, () -> reader.read("- test".getBytes()));
+    }
+
+    @DisplayName("Tests that multi-document streams are read in order, skipping rejected kinds")
+    @Test
+    void testReadAll() {
+        String yaml = "kind: Deployment\nspec:\n  template:\n    data: ignored\n---\n# empty\n---\n"
+                + "kind: ConfigMap\ndata:\n  A: one\n---\n"
+                + "apiVersion: v1\n---\n"
+                + "kind: Service\n---\n"
+                + "data:\n  B: two\nkind: Secret\n";
+        List<Object> kinds = new ArrayList<>();
+        List<Map<String, Object>> result = new ArrayList<>();
+        reader.readAll(yaml.getBytes(), kind -> kinds.add(kind) && !"Deployment".equals(kind) && !"Service".equals(kind))
+                .forEach(result::add);
+
+        assertEquals(Arrays.asList("Deployment", "ConfigMap", "Service", "Secret"), kinds);
+        assertEquals(2, result.size());
+        assertEquals(ImmutableMap.of("A", "one"), result.get(0).get(AbstractParser.KEY_DATA));
+        assertEquals("Secret", result.get(1).get(ConfigParser.KEY_KIND));
+    }
+
+    @DisplayName("Tests that documents needing a full load are read in place")
+    @Test
+    void testReadAllFallback() {
+        String yaml = "kind: ConfigMap\ndata:\n  A: one\n---\n"
+                + "kind: ConfigMap\nmetadata:\n  labels: &labels\n    a: b\ndata:\n  alias: *labels\n---\n"
+                + "kind: ConfigMap\ndata:\n  C: three\n";
+        List<Map<String, Object>> result = new ArrayList<>();
+        reader.readAll(yaml.getBytes(), kind -> true).forEach(result::add);
+
+        assertEquals(3, result.size());
+        assertEquals(ImmutableMap.of("alias", ImmutableMap.of("a", "b")), result.get(1).get(AbstractParser.KEY_DATA));
+        assertEquals(ImmutableMap.of("C", "three"), result.get(2).get(AbstractParser.KEY_DATA));
+    }
+
+    @DisplayName("Tests that a document which is not a mapping is rejected during iteration")
+    @Test
+    void testReadAllInvalid() {
+        Iterator<Map<String, Object>> result = reader.readAll("kind: ConfigMap\n---\n- test\n".getBytes(), kind -> true).iterator();
+
+        assertNotNull(result.next());
+        assertThrows(IllegalArgumentException.class, result::hasNext);
+    }
+
+    @DisplayName("Tests that the fast path applies the kind filter")
+    @Test
+    void testReadAllFastPath() {
+        byte[] content = "kind: ConfigMap\ndata:\n  A: one\n".getBytes();
+
+        assertTrue(new ManifestReader().readAll(content, kind -> true).iterator().hasNext());
+        assertFalse(new ManifestReader().readAll(content, kind -> false).iterator().hasNext());
+    }
+
+    @DisplayName("Tests that List items are streamed in order, skipping rejected kinds")
+    @Test
+    void testReadAllList() throws IOException {
+        List<Map<String, Object>> result = new ArrayList<>();
+        reader.readAll(getResource("TestList.yml"), kind -> !"Deployment".equals(kind)).forEach(result::add);
+
+        assertEquals(3, result.size());
+        assertEquals(ImmutableMap.of("SHARED", "first", "FIRST_ONLY", "value"), result.get(0).get(AbstractParser.KEY_DATA));
+        assertEquals("Secret", result.get(1).get(ConfigParser.KEY_KIND));
+        assertEquals(ImmutableMap.of("SHARED", "third"), result.get(2).get(AbstractParser.KEY_DATA));
+    }
+
+    @DisplayName("Tests that List items are filtered by name")
+    @Test
+    void testReadAllListNamed() throws IOException {
+        List<Map<String, Object>> result = new ArrayList<>();
+        reader.readAll(getResource("TestList.yml"), kind -> true, "first-configmap"::equals).forEach(result::add);
+
+        assertEquals(2, result.size());
+        assertEquals(ConfigParser.Kind.CONFIGMAP.getKey(), result.get(0).get(ConfigParser.KEY_KIND));
+        assertEquals("Deployment", result.get(1).get(ConfigParser.KEY_KIND));
+    }
+
+    @DisplayName("Tests that items preceding a list kind are streamed once the kind is read")
+    @Test
+    void testReadAllListItemsFirst() {
+        String yaml = "kind: ConfigMap\ndata:\n  A: one\n---\n"
+                + "apiVersion: v1\nitems:\n"
+                + "- kind: ConfigMap\n  metadata:\n    name: two\n  data:\n    B: two\n"
+                + "- kind: Secret\n  metadata:\n    name: other\n  data:\n    C: dGhyZWU=\n"
+                + "kind: List\nmetadata:\n  resourceVersion: \"\"\n---\n"
+                + "kind: ConfigMap\nmetadata:\n  name: two\ndata:\n  D: four\n";
+        List<Map<String, Object>> result = new ArrayList<>();
+        new ManifestReader().readAll(yaml.getBytes(), kind -> true, "two"::equals).forEach(result::add);
+
+        assertEquals(2, result.size());
+        assertEquals(ImmutableMap.of("B", "two"), result.get(0).get(AbstractParser.KEY_DATA));
+        assertEquals(ImmutableMap.of("D", "four"), result.get(1).get(AbstractParser.KEY_DATA));
+        assertEquals("two", ManifestReader.getName(result.get(0)));
+        assertEquals("two", ManifestReader.getName(result.get(1)));
+    }
+
+    @DisplayName("Tests that the items of other kinds are not streamed as manifests")
+    @Test
+    void testReadAllCustomResourceItems() {
+        String yaml = "items:\n- kind: ConfigMap\n  data:\n    A: nested\nkind: Inventory\n---\n"
+                + "items:\n- kind: ConfigMap\n  data:\n    B: nested\n---\n"
+                + "kind: ConfigMap\ndata:\n  C: three\n";
+        List<Map<String, Object>> result = new ArrayList<>();
+        reader.readAll(yaml.getBytes(), ConfigParser.Kind.CONFIGMAP.getKey()::equals).forEach(result::add);
+
+        assertEquals(1, result.size());
+        assertEquals(ImmutableMap.of("C", "three"), result.get(0).get(AbstractParser.KEY_DATA));
+    }
+
+    @DisplayName("Tests that documents are filtered by name")
+    @Test
+    void testReadAllNamed() {
+        String yaml = "kind: ConfigMap\nmetadata:\n  name: one\ndata:\n  A: one\n---\n"
+                + "kind: ConfigMap\ndata:\n  B: two\nmetadata:\n  labels:\n    name: one\n  name: two\n---\n"
+                + "kind: ConfigMap\ndata:\n  C: three\n";
+        List<Map<String, Object>> result = new ArrayList<>();
+        new ManifestReader().readAll(yaml.getBytes(), kind -> true, "two"::equals).forEach(result::add);
+
+        assertEquals(1, result.size());
+        assertEquals(ImmutableMap.of("B", "two"), result.get(0).get(AbstractParser.KEY_DATA));
+        assertEquals("two", ManifestReader.getName(result.get(0)));
+    }
+
+    @DisplayName("Tests that List items needing a full load are read in place")
+    @Test
+    void testReadAllListFallback() {
+        String yaml = "kind: List\nitems:\n"
+                + "- kind: ConfigMap\n  data:\n    A: one\n"
+                + "- kind: ConfigMap\n  metadata:\n    labels: &labels\n      a: b\n  data:\n    alias: *labels\n"
+                + "- kind: ConfigMap\n  data:\n    C: three\n"
+                + "---\nkind: ConfigMap\ndata:\n  D: four\n";
+        List<Map<String, Object>> result = new ArrayList<>();
+        reader.readAll(yaml.getBytes(), kind -> true).forEach(result::add);
+
+        assertEquals(4, result.size());
+        assertEquals(ImmutableMap.of("A", "one"), result.get(0).get(AbstractParser.KEY_DATA));
+        assertEquals(ImmutableMap.of("alias", ImmutableMap.of("a", "b")), result.get(1).get(AbstractParser.KEY_DATA));
+        assertEquals(ImmutableMap.of("C", "three"), result.get(2).get(AbstractParser.KEY_DATA));
+        assertEquals(ImmutableMap.of("D", "four"), result.get(3).get(AbstractParser.KEY_DATA));
+    }
+
+    private byte[] getResource(String name) throws IOException {
+        try (InputStream input = ClassLoader.getSystemResourceAsStream(name)) {
+            return FileUtil.loadBytes(input);
+        }
+    }
+
+}
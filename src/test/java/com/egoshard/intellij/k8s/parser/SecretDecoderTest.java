@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tests base64 and UTF-8 decoding of secret values")
+class SecretDecoderTest {
+
+    private SecretDecoder decoder;
+
+    @BeforeEach
+    void setUp() {
+        decoder = new SecretDecoder();
+    }
+
+    @DisplayName("Tests that decoding matches the JDK decoder for random values of every length")
+    @Test
+    void testMatchesJdk() {
+        Random random = new Random(42);
+        for (int length = 0; length < 600; length++) {
+            byte[] value = new byte[length];
+            random.nextBytes(value);
+            String encoded = Base64.getEncoder().encodeToString(value);
+
+            assertTrue(decoder.decode(encoded));
+            assertArrayEquals(value, decoder.getBytes());
+            assertTrue(decoder.decode(encoded.replace("=", "")));
+            assertArrayEquals(value, decoder.getBytes());
+        }
+    }
+
+    @DisplayName("Tests that malformed base64 is rejected")
+    @Test
+    void testInvalid() {
+        assertFalse(decoder.decode("a"));
+        assertFalse(decoder.decode("abcde"));
+        assertFalse(decoder.decode("ab=c"));
+        assertFalse(decoder.decode("abc=="));
+        assertFalse(decoder.decode("=abc"));
+        assertFalse(decoder.decode("ab-_"));
+        assertFalse(decoder.decode("YWJj\u00e4"));
+        assertTrue(decoder.decode("YQ=="));
+        assertEquals("a", decoder.getText());
+    }
+
+    @DisplayName("Tests that null and empty values decode to empty text")
+    @Test
+    void testEmpty() {
+        assertTrue(decoder.decode(null));
+        assertTrue(decoder.isText());
+        assertEquals("", decoder.getText());
+        assertTrue(decoder.decode(" \n"));
+        assertEquals("", decoder.getText());
+    }
+
+    @DisplayName("Tests that UTF-8 validation matches a strict JDK decoder")
+    @Test
+    void testUtf8Validation() {
+        Random random = new Random(7);
+        byte[] pool = {0x41, 0x7F, (byte) 0x80, (byte) 0xBF, (byte) 0xC0, (byte) 0xC2, (byte) 0xDF, (byte) 0xE0, (byte) 0xA0,
+                (byte) 0xED, (byte) 0x9F, (byte) 0xEF, (byte) 0xF0, (byte) 0x90, (byte) 0xF4, (byte) 0x8F, (byte) 0xF5};
+        for (int run = 0; run < 20000; run++) {
+            byte[] value = new byte[1 + random.nextInt(6)];
+            for (int i = 0; i < value.length; i++) {
+                value[i] = pool[random.nextInt(pool.length)];
+            }
+            assertTrue(decoder.decode(Base64.getEncoder().encodeToString(value)));
+            assertEquals(isUtf8(value), decoder.isText(), () -> Base64.getEncoder().encodeToString(value));
+        }
+    }
+
+    @DisplayName("Tests that NUL characters are treated as binary")
+    @Test
+    void testNul() {
+        assertTrue(decoder.decode(Base64.getEncoder().encodeToString(new byte[]{0x41, 0})));
+        assertFalse(decoder.isText());
+    }
+
+    private static boolean isUtf8(byte[] value) {
+        try {
+            StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(value));
+            return true;
+        } catch (CharacterCodingException e) {
+            return false;
+        }
+    }
+
+}
@@ -20,10 +20,17 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.Map;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 @DisplayName("Tests Kubernetes Secret parsing")
 class SecretParserTest {
@@ -67,4 +74,92 @@ class SecretParserTest {
         assertEquals(ConfigTestDataUtils.TEST_STRING_DATA_VALUE, result.get(ConfigTestDataUtils.TEST_STRING_DATA_KEY));
     }
 
-}
\ No newline at end of file
+    @DisplayName("Tests that secret data is decoded as UTF-8 regardless of the platform charset")
+    @Test
+    void testSecretDataUtf8() {
+        String value = "p\u00e4ss-\u5bc6\u7801-\ud83d\udd11";
+        Map<String, String> result = parser.parse(getSource(encode(value.getBytes(StandardCharsets.UTF_8))));
+        assertEquals(value, result.get(ConfigTestDataUtils.TEST_KEY));
+    }
+
+    @DisplayName("Tests that line wrapped secret data is decoded")
+    @Test
+    void testSecretDataWrapped() {
+        String value = "-----BEGIN CERTIFICATE-----\nMIIB\n-----END CERTIFICATE-----\n";
+        String encoded = encode(value.getBytes(StandardCharsets.UTF_8));
+        String wrapped = encoded.substring(0, 10) + "\n" + encoded.substring(10, 30) + "\r\n  " + encoded.substring(30) + "\n";
+        Map<String, String> result = parser.parse(getSource(wrapped));
+        assertEquals(value, result.get(ConfigTestDataUtils.TEST_KEY));
+    }
+
+    @DisplayName("Tests that secret data is decoded from the source bytes of a scanned value")
+    @Test
+    void testSecretDataByteSlice() {
+        byte[] content = ("  " + ConfigTestDataUtils.TEST_KEY + ": " + encode("\u00fcber".getBytes(StandardCharsets.UTF_8)))
+                .getBytes(StandardCharsets.UTF_8);
+        int start = content.length - 8;
+        Map<String, String> result = parser.parse(getSource(ByteSlice.of(ByteBuffer.wrap(content), start, content.length)));
+        assertEquals("\u00fcber", result.get(ConfigTestDataUtils.TEST_KEY));
+    }
+
+    @DisplayName("Tests that a detached secret no longer reads the source bytes of a scanned value")
+    @Test
+    void testSecretDataDetach() {
+        byte[] content = (" " + encode("\u00fcber".getBytes(StandardCharsets.UTF_8))).getBytes(StandardCharsets.UTF_8);
+        SecretData result = (SecretData) parser.parse(getSource(ByteSlice.of(ByteBuffer.wrap(content), 1, content.length)));
+        SecretData detached = result.detach();
+        Arrays.fill(content, (byte) 'A');
+
+        assertNotSame(result, detached);
+        assertEquals("\u00fcber", detached.get(ConfigTestDataUtils.TEST_KEY));
+        assertSame(detached, detached.detach());
+    }
+
+    @DisplayName("Tests that invalid base64 reports the key holding it when the value is read")
+    @Test
+    void testSecretDataInvalid() {
+        Map<String, String> result = parser.parse(getSource("not*base64"));
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> result.get(ConfigTestDataUtils.TEST_KEY));
+        assertTrue(exception.getMessage().contains(ConfigTestDataUtils.TEST_KEY));
+    }
+
+    @DisplayName("Tests that secret data is decoded lazily and string data takes precedence")
+    @Test
+    void testSecretDataLazy() {
+        Map<String, Object> source = getSource("not*base64");
+        Map<String, Object> stringData = new HashMap<>();
+        stringData.put(ConfigTestDataUtils.TEST_STRING_DATA_KEY, ConfigTestDataUtils.TEST_STRING_DATA_VALUE);
+        source.put("stringData", stringData);
+        Map<String, String> result = parser.parse(source);
+
+        assertTrue(result instanceof SecretData);
+        assertEquals(ConfigTestDataUtils.TEST_STRING_DATA_VALUE, result.get(ConfigTestDataUtils.TEST_STRING_DATA_KEY));
+        assertTrue(ConfigLayers.getKeys(result).contains(ConfigTestDataUtils.TEST_KEY));
+    }
+
+    @DisplayName("Tests that binary secret data is left out of environment variables and kept in volumes")
+    @Test
+    void testSecretDataBinary() throws IOException {
+        byte[] keystore = {(byte) 0xFE, (byte) 0xED, (byte) 0xFE, (byte) 0xED, 0, 0, 0, 2};
+        Map<String, Object> source = getSource(encode(keystore));
+
+        assertFalse(parser.parse(source).containsKey(ConfigTestDataUtils.TEST_KEY));
+        ByteArrayOutputStream volume = new ByteArrayOutputStream();
+        assertTrue(parser.parseVolume(source).transferTo(ConfigTestDataUtils.TEST_KEY, Channels.newChannel(volume)));
+        assertArrayEquals(keystore, volume.toByteArray());
+    }
+
+    private static String encode(byte[] value) {
+        return Base64.getEncoder().encodeToString(value);
+    }
+
+    private static Map<String, Object> getSource(Object value) {
+        Map<String, Object> source = ConfigTestDataUtils.getSecretData();
+        Map<String, Object> data = new HashMap<>();
+        data.put(ConfigTestDataUtils.TEST_KEY, value);
+        source.put("data", data);
+        return source;
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.parser;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tests off-heap storage of large values")
+class ValueArenaTest {
+
+    @DisplayName("Tests that only text values of at least the threshold are stored")
+    @Test
+    void testStore() {
+        ValueArena arena = new ValueArena();
+        String small = Strings.repeat("x", 99);
+        String large = Strings.repeat("\u00e9", 50);
+        ByteSlice slice = ByteSlice.of(ByteBuffer.wrap(Strings.repeat("y", 200).getBytes(StandardCharsets.UTF_8)), 50, 150);
+
+        assertSame(small, arena.store(small, 100));
+        assertSame(42, arena.store(42, 1));
+        Object stored = arena.store(large, 100);
+        Object storedSlice = arena.store(slice, 100);
+
+        assertTrue(stored instanceof ValueArena.Value);
+        assertEquals(large, ((ValueArena.Value) stored).read());
+        assertEquals(Strings.repeat("y", 100), ((ValueArena.Value) storedSlice).read());
+        assertEquals(200, arena.getSize());
+    }
+
+    @DisplayName("Tests that reading a released value fails")
+    @Test
+    void testRelease() {
+        ValueArena arena = new ValueArena();
+        ValueArena.Value value = (ValueArena.Value) arena.store(Strings.repeat("x", 100), 1);
+
+        arena.release();
+
+        assertTrue(arena.isReleased());
+        assertTrue(value.isReleased());
+        assertEquals(0, arena.getSize());
+        assertThrows(ValueArena.ReleasedException.class, value::read);
+        assertThrows(ValueArena.ReleasedException.class, () -> value.forEachByte(character -> {
+        }));
+        String late = Strings.repeat("z", 100);
+        assertSame(late, arena.store(late, 1));
+    }
+
+    @DisplayName("Tests that arenas of a pool share equal values until the last one is released")
+    @Test
+    void testPool() {
+        ValueArena.Pool pool = new ValueArena.Pool();
+        ValueArena first = new ValueArena(pool);
+        ValueArena second = new ValueArena(pool);
+        String large = Strings.repeat("x", 100);
+        ValueArena.Value kept = (ValueArena.Value) second.store(large, 1);
+        first.store(large, 1);
+        first.store(Strings.repeat("y", 100), 1);
+
+        assertEquals(200, first.getSize());
+        assertEquals(200, pool.getSize());
+
+        first.release();
+
+        assertEquals(100, pool.getSize());
+        assertEquals(large, kept.read());
+
+        second.release();
+
+        assertEquals(0, pool.getSize());
+        assertThrows(ValueArena.ReleasedException.class, kept::read);
+    }
+
+    @DisplayName("Tests that merging carries off-heap values over without reading them")
+    @Test
+    void testMerge() {
+        ValueArena arena = new ValueArena();
+        String large = Strings.repeat("x", 100);
+        Map<String, String> base = CompactMap.copyOf(ImmutableMap.of("A", large, "B", "base"))
+                .moveOffHeap(arena, 100);
+        Map<String, String> merged = ConfigLayers.merge(Arrays.asList(base, ImmutableMap.of("B", "override")));
+        LayerIndex index = new LayerIndex(Arrays.asList(base, ImmutableMap.of("B", "override")));
+
+        assertEquals(ImmutableMap.of("A", large, "B", "override"), merged);
+        assertEquals(merged, index.getResult());
+
+        arena.release();
+
+        assertTrue(ConfigLayers.isReleased(merged));
+        assertTrue(ConfigLayers.isReleased(index.getResult()));
+        assertFalse(ConfigLayers.isReleased(ImmutableMap.of("A", large)));
+    }
+
+}
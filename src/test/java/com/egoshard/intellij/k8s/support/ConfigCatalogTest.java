@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.support;
+
+import com.egoshard.intellij.k8s.parser.ConfigParser;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tests the project resource catalog")
+class ConfigCatalogTest {
+
+    private static final String CONFIGMAP = "kind: ConfigMap\nmetadata:\n  name: %s\ndata:\n  KEY: %s\n";
+
+    private MemoryFileSource files;
+    private ConfigCatalog catalog;
+
+    @BeforeEach
+    void setUp() {
+        files = new MemoryFileSource();
+        catalog = new ConfigCatalog(files);
+    }
+
+    @DisplayName("Tests that resources are found by kind and name, same name resources of a file in document order")
+    @Test
+    void testFind() {
+        files.put("/p/base/config.yaml", String.format(CONFIGMAP, "app", "first") + "---\n"
+                + "kind: Secret\nmetadata:\n  name: app\ndata:\n  KEY: c2Vjb25k\n---\n"
+                + String.format(CONFIGMAP, "app", "second"));
+        files.put("/p/list.yaml", "kind: List\nitems:\n- kind: Secret\n  metadata:\n    name: listed\n");
+        files.put("/p/invalid.yaml", "kind: ConfigMap\n  : [");
+        files.put("/p/other.yaml", "kind: Service\nmetadata:\n  name: app\n");
+
+        List<ConfigCatalog.Resource> resources = catalog.find(ConfigParser.Kind.CONFIGMAP, "app", "/p/deploy.yaml");
+
+        assertEquals(2, resources.size());
+        assertEquals("first", getValue(resources.get(0)));
+        assertEquals("second", getValue(resources.get(1)));
+        assertFalse(resources.get(0).getSource().containsKey("metadata"));
+        assertEquals(1, catalog.find(ConfigParser.Kind.SECRET, "app", "/p/deploy.yaml").size());
+        assertEquals("/p/list.yaml", catalog.find(ConfigParser.Kind.SECRET, "listed", "/p/deploy.yaml").get(0).getPath());
+        assertTrue(catalog.find(ConfigParser.Kind.CONFIGMAP, "absent", "/p/deploy.yaml").isEmpty());
+    }
+
+    @DisplayName("Tests that the file closest to the referencing file wins")
+    @Test
+    void testFindClosest() {
+        files.put("/p/base/config.yaml", String.format(CONFIGMAP, "app", "base"));
+        files.put("/p/overlays/dev/config.yaml", String.format(CONFIGMAP, "app", "dev"));
+        files.put("/p/overlays/prod/config.yaml", String.format(CONFIGMAP, "app", "prod"));
+
+        assertEquals("dev", getValue(catalog.find(ConfigParser.Kind.CONFIGMAP, "app", "/p/overlays/dev/deploy.yaml").get(0)));
+        assertEquals("base", getValue(catalog.find(ConfigParser.Kind.CONFIGMAP, "app", "/p/base/deploy.yaml").get(0)));
+        assertEquals("dev", getValue(catalog.find(ConfigParser.Kind.CONFIGMAP, "app", "/p/overlays/deploy.yaml").get(0)));
+    }
+
+    @DisplayName("Tests that only changed files are parsed again and the version only moves when resources do")
+    @Test
+    void testIncrementalUpdate() {
+        files.put("/p/a.yaml", String.format(CONFIGMAP, "a", "1"));
+        files.put("/p/b.yaml", String.format(CONFIGMAP, "b", "1"));
+        long version = catalog.getVersion();
+        assertEquals(2, files.loads);
+
+        catalog.getVersion();
+        assertEquals(2, files.loads);
+
+        files.put("/p/a.yaml", String.format(CONFIGMAP, "a", "2"));
+        catalog.invalidate("/p/a.yaml");
+        assertEquals(version, catalog.getVersion());
+        assertEquals(3, files.loads);
+        assertEquals("2", getValue(catalog.find(ConfigParser.Kind.CONFIGMAP, "a", "/p/x.yaml").get(0)));
+
+        files.put("/p/a.yaml", String.format(CONFIGMAP, "renamed", "2"));
+        catalog.invalidate("/p/a.yaml");
+        assertNotEquals(version, catalog.getVersion());
+        assertTrue(catalog.find(ConfigParser.Kind.CONFIGMAP, "a", "/p/x.yaml").isEmpty());
+
+        version = catalog.getVersion();
+        files.remove("/p/b.yaml");
+        files.put("/p/c.yaml", "kind: Service\n");
+        catalog.invalidateAll();
+        assertNotEquals(version, catalog.getVersion());
+        assertTrue(catalog.find(ConfigParser.Kind.CONFIGMAP, "b", "/p/x.yaml").isEmpty());
+        assertEquals(5, files.loads);
+    }
+
+    private static String getValue(ConfigCatalog.Resource resource) {
+        return String.valueOf(((Map<?, ?>) resource.getSource().get("data")).get("KEY"));
+    }
+
+    /**
+     * In memory file source stamping each file by the number of times it was written.
+     */
+    private static class MemoryFileSource implements ConfigCatalog.FileSource {
+
+        private final Map<String, String> contents = new HashMap<>();
+        private final Map<String, Long> stamps = new HashMap<>();
+        private int loads;
+
+        void put(String path, String content) {
+            contents.put(path, content);
+            stamps.merge(path, 1L, Long::sum);
+        }
+
+        void remove(String path) {
+            contents.remove(path);
+            stamps.remove(path);
+        }
+
+        @Override
+        public Collection<String> list() {
+            return new ArrayList<>(contents.keySet());
+        }
+
+        @Override
+        public long getStamp(String path) {
+            return stamps.getOrDefault(path, ConfigFileUtil.STAMP_UNKNOWN);
+        }
+
+        @Nullable
+        @Override
+        public byte[] load(String path) {
+            loads++;
+            String content = contents.get(path);
+            return content == null ? null : content.getBytes(StandardCharsets.UTF_8);
+        }
+
+    }
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.support;
+
+import com.egoshard.intellij.k8s.parser.CompactMap;
+import com.egoshard.intellij.k8s.parser.ConfigLayers;
+import com.egoshard.intellij.k8s.parser.SecretData;
+import com.egoshard.intellij.k8s.parser.ValueArena;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tests the shared project layer cache")
+class ConfigLayerCacheTest {
+
+    private static final int ENTRY_WEIGHT = 64;
+
+    private ConfigLayerCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ConfigLayerCache(3 * (ENTRY_WEIGHT + 100), 1024);
+    }
+
+    @DisplayName("Tests that layers are shared by resolved path, content and name filter")
+    @Test
+    void testShare() {
+        Map<String, String> layer = ImmutableMap.of("A", "1");
+
+        assertSame(layer, cache.put(fingerprint("/p/a.yaml", 1, "hash"), null, layer));
+        assertSame(layer, cache.put(fingerprint("/p/a.yaml", 2, "hash"), null, ImmutableMap.of("A", "1")));
+        assertSame(layer, cache.get(fingerprint("/p/a.yaml", 3, "hash"), null));
+        assertNull(cache.get(fingerprint("/p/a.yaml", 1, "other"), null));
+        assertNull(cache.get(fingerprint("/p/b.yaml", 1, "hash"), null));
+        assertNull(cache.get(fingerprint("/p/a.yaml", 1, "hash"), "name"));
+        assertEquals(ENTRY_WEIGHT + 100, cache.getWeight());
+    }
+
+    @DisplayName("Tests that the least recently used layers are evicted once the weight limit is exceeded")
+    @Test
+    void testEvict() {
+        cache.put(fingerprint("/p/a.yaml", 1, "a"), null, ImmutableMap.of("A", "1"));
+        cache.put(fingerprint("/p/b.yaml", 1, "b"), null, ImmutableMap.of("B", "1"));
+        cache.put(fingerprint("/p/c.yaml", 1, "c"), null, ImmutableMap.of("C", "1"));
+        cache.get(fingerprint("/p/a.yaml", 1, "a"), null);
+
+        cache.put(fingerprint("/p/d.yaml", 1, "d"), null, ImmutableMap.of("D", "1"));
+
+        assertNotNull(cache.get(fingerprint("/p/a.yaml", 1, "a"), null));
+        assertNull(cache.get(fingerprint("/p/b.yaml", 1, "b"), null));
+        assertNotNull(cache.get(fingerprint("/p/c.yaml", 1, "c"), null));
+        assertNotNull(cache.get(fingerprint("/p/d.yaml", 1, "d"), null));
+        assertEquals(3 * (ENTRY_WEIGHT + 100), cache.getWeight());
+    }
+
+    @DisplayName("Tests that clearing the cache releases every layer")
+    @Test
+    void testClear() {
+        cache.put(fingerprint("/p/a.yaml", 1, "a"), null, ImmutableMap.of("A", "1"));
+        cache.clear();
+
+        assertNull(cache.get(fingerprint("/p/a.yaml", 1, "a"), null));
+        assertEquals(0, cache.getWeight());
+    }
+
+    @DisplayName("Tests that large values are moved off-heap and released on eviction")
+    @Test
+    void testOffHeap() {
+        String large = Strings.repeat("x", 2048);
+        Map<String, String> layer = cache.put(fingerprint("/p/a.yaml", 1, "a"), null,
+                CompactMap.copyOf(ImmutableMap.of("SMALL", "1", "LARGE", large)));
+
+        assertEquals(ImmutableMap.of("SMALL", "1", "LARGE", large), layer);
+        assertEquals(2048, cache.getOffHeapSize());
+        assertFalse(ConfigLayers.isReleased(layer));
+
+        cache.put(fingerprint("/p/b.yaml", 1, "b"), null, ImmutableMap.of("B", "1"));
+        cache.put(fingerprint("/p/c.yaml", 1, "c"), null, ImmutableMap.of("C", "1"));
+        cache.put(fingerprint("/p/d.yaml", 1, "d"), null, ImmutableMap.of("D", "1"));
+
+        assertTrue(ConfigLayers.isReleased(layer));
+        assertEquals("1", layer.get("SMALL"));
+        assertThrows(ValueArena.ReleasedException.class, () -> layer.get("LARGE"));
+        assertEquals(0, cache.getOffHeapSize());
+    }
+
+    @DisplayName("Tests that a large value found in several layers is held off-heap once until the last layer is released")
+    @Test
+    void testOffHeapShared() {
+        cache = new ConfigLayerCache(Long.MAX_VALUE, 1024);
+        String bundle = Strings.repeat("-----CERTIFICATE-----", 100);
+        Map<String, String> first = cache.put(fingerprint("/p/a.yaml", 1, "a"), null,
+                CompactMap.copyOf(ImmutableMap.of("CA", bundle, "A", "1")));
+        Map<String, String> second = cache.put(fingerprint("/p/b.yaml", 1, "b"), null,
+                CompactMap.copyOf(ImmutableMap.of("CA", bundle, "B", "2")));
+
+        assertEquals(bundle.length(), cache.getOffHeapSize());
+
+        cache.clear();
+
+        assertTrue(ConfigLayers.isReleased(first));
+        assertTrue(ConfigLayers.isReleased(second));
+        assertEquals(0, cache.getOffHeapSize());
+    }
+
+    @DisplayName("Tests that encoded and decoded Secret values are moved off-heap and released when the cache is cleared")
+    @Test
+    void testOffHeapSecret() {
+        String large = Strings.repeat("secret ", 512);
+        String encoded = Base64.getEncoder().encodeToString(large.getBytes(StandardCharsets.UTF_8));
+        Map<String, String> layer = cache.put(fingerprint("/p/a.yaml", 1, "a"), null,
+                new SecretData(ImmutableMap.of("LARGE", encoded, "SMALL", "MQ=="), Collections.emptyMap()));
+
+        assertEquals(encoded.length(), cache.getOffHeapSize());
+        assertEquals(large, layer.get("LARGE"));
+        assertEquals("1", layer.get("SMALL"));
+        assertEquals(encoded.length() + large.length(), cache.getOffHeapSize());
+
+        cache.clear();
+
+        assertTrue(ConfigLayers.isReleased(layer));
+        assertThrows(ValueArena.ReleasedException.class, () -> layer.get("LARGE"));
+    }
+
+    @DisplayName("Tests that a threshold of zero keeps every value on the heap")
+    @Test
+    void testOffHeapDisabled() {
+        cache = new ConfigLayerCache(3 * (ENTRY_WEIGHT + 100), 0);
+        Map<String, String> layer = CompactMap.copyOf(ImmutableMap.of("LARGE", Strings.repeat("x", 2048)));
+
+        assertSame(layer, cache.put(fingerprint("/p/a.yaml", 1, "a"), null, layer));
+        assertEquals(0, cache.getOffHeapSize());
+    }
+
+    @DisplayName("Tests that concurrent lookups agree on a single shared layer and keep the weight consistent")
+    @Test
+    void testConcurrent() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Map<String, String>>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                int file = i % 8;
+                results.add(executor.submit(() -> cache.put(fingerprint("/p/" + file + ".yaml", 1, "h" + file), null,
+                        ImmutableMap.of("K", Integer.toString(file)))));
+            }
+            for (Future<Map<String, String>> result : results) {
+                assertNotNull(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(cache.getWeight() <= 3 * (ENTRY_WEIGHT + 100));
+        cache.clear();
+        assertEquals(0, cache.getWeight());
+    }
+
+    private static ConfigFingerprint fingerprint(String path, long timestamp, String hash) {
+        return new ConfigFingerprint(path, 100, timestamp, hash);
+    }
+
+}
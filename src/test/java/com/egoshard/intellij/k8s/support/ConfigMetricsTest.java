@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.support;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tests plugin performance metrics")
+class ConfigMetricsTest {
+
+    private static final String METRIC = "test.keys";
+    private static final String TIMER = "test.nanos";
+
+    @BeforeEach
+    void setUp() {
+        ConfigMetrics.reset();
+    }
+
+    @DisplayName("Tests histogram count, sum and maximum")
+    @Test
+    void testHistogram() {
+        ConfigMetrics.record(METRIC, 3);
+        ConfigMetrics.record(METRIC, 5);
+        ConfigMetrics.record(METRIC, -1);
+
+        ConfigMetrics.Histogram histogram = ConfigMetrics.get(METRIC);
+        assertEquals(3, histogram.getCount());
+        assertEquals(8, histogram.getSum());
+        assertEquals(5, histogram.getMax());
+    }
+
+    @DisplayName("Tests that percentiles report the upper bound of their bucket")
+    @Test
+    void testPercentile() {
+        ConfigMetrics.Histogram histogram = ConfigMetrics.get(METRIC);
+        assertEquals(0, histogram.getPercentile(0.5));
+        for (int i = 0; i < 90; i++) {
+            histogram.record(10);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(1000);
+        }
+
+        assertEquals(15, histogram.getPercentile(0.5));
+        assertEquals(15, histogram.getPercentile(0.9));
+        assertEquals(1000, histogram.getPercentile(0.99));
+    }
+
+    @DisplayName("Tests that timers record elapsed time")
+    @Test
+    void testTimer() {
+        ConfigMetrics.stop(TIMER, ConfigMetrics.start());
+
+        assertEquals(1, ConfigMetrics.get(TIMER).getCount());
+        assertTrue(ConfigMetrics.getSummary(null).contains(TIMER + ": count=1"));
+    }
+
+    @DisplayName("Tests the JSON dump")
+    @Test
+    void testDump() throws IOException {
+        ConfigMetrics.record(METRIC, 4);
+        Path directory = Files.createTempDirectory("k8s-config-metrics");
+        Path file = directory.resolve("metrics.json");
+        try {
+            ConfigMetrics.dump(file, null);
+
+            String json = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            assertTrue(json.startsWith("{\"timestamp\":"));
+            assertTrue(json.contains("\"" + METRIC + "\":{\"count\":1,\"sum\":4,\"max\":4,\"p50\":4,\"p90\":4,\"p99\":4}"));
+            assertTrue(json.contains("\"memory\":{\"hits\":"));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(directory);
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.support;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tests the manifest resource index")
+class ConfigResourceIndexTest {
+
+    private static final String MANIFESTS = "kind: ConfigMap\n"
+            + "metadata:\n  name: app\n  namespace: dev\n"
+            + "data:\n  B: b\n  A: a\n"
+            + "binaryData:\n  C: Yw==\n"
+            + "---\n"
+            + "kind: Deployment\nmetadata:\n  name: app\n"
+            + "---\n"
+            + "kind: List\nitems:\n- kind: Secret\n  metadata:\n    name: db\n  stringData:\n    PASSWORD: secret\n"
+            + "- kind: Secret\n";
+
+    @DisplayName("Tests that every document and list item is indexed by kind and by kind and name")
+    @Test
+    void testIndex() {
+        Map<String, List<ConfigResourceIndex.Resource>> index = index(MANIFESTS);
+
+        ConfigResourceIndex.Resource configMap = index.get(ConfigResourceIndex.getKey("ConfigMap", "app")).get(0);
+        assertEquals("dev", configMap.getNamespace());
+        assertEquals(Arrays.asList("B", "A", "C"), configMap.getKeys());
+        assertEquals(0, configMap.getDocument());
+        assertEquals(1, index.get(ConfigResourceIndex.getKey("Deployment", "app")).get(0).getDocument());
+        ConfigResourceIndex.Resource secret = index.get(ConfigResourceIndex.getKey("Secret", "db")).get(0);
+        assertNull(secret.getNamespace());
+        assertEquals(Arrays.asList("PASSWORD"), secret.getKeys());
+        assertEquals(2, secret.getDocument());
+        assertEquals(2, index.get("Secret").size());
+        assertEquals(6, index.size());
+    }
+
+    @DisplayName("Tests that invalid files are indexed as empty")
+    @Test
+    void testIndexInvalid() {
+        assertTrue(index("kind: ConfigMap\n  : [").isEmpty());
+        assertTrue(index("").isEmpty());
+        assertTrue(index("- not\n- a manifest\n").isEmpty());
+    }
+
+    @DisplayName("Tests that indexed resources survive serialization")
+    @Test
+    void testExternalizer() throws IOException {
+        List<ConfigResourceIndex.Resource> resources = index(MANIFESTS).get("Secret");
+        ConfigResourceIndex.ResourceExternalizer externalizer = new ConfigResourceIndex.ResourceExternalizer();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        externalizer.save(new DataOutputStream(bytes), resources);
+        List<ConfigResourceIndex.Resource> read = externalizer.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(resources, read);
+        assertNull(read.get(1).getName());
+    }
+
+    private static Map<String, List<ConfigResourceIndex.Resource>> index(String yaml) {
+        return ConfigResourceIndex.index(yaml.getBytes(StandardCharsets.UTF_8), "test.yaml");
+    }
+
+}
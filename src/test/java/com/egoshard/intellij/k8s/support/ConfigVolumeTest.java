@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.support;
+
+import com.egoshard.intellij.k8s.parser.ManifestReader;
+import com.egoshard.intellij.k8s.parser.SecretData;
+import com.egoshard.intellij.k8s.parser.SecretParser;
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tests projection of configuration keys into volume directories")
+class ConfigVolumeTest {
+
+    private static final byte[] BINARY = {(byte) 0xFF, 0, 1};
+
+    private Path directory;
+    private ConfigVolume volume;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("k8s-config-volume");
+        volume = new ConfigVolume(directory.resolve("CONFIG_DIR"));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @DisplayName("Tests that later layers win and binary values are written as raw bytes")
+    @Test
+    void testUpdate() throws IOException {
+        int count = volume.update(getLayers("2"));
+
+        assertEquals(3, count);
+        assertEquals("2", read("A"));
+        assertEquals("text", read("B"));
+        assertArrayEquals(BINARY, Files.readAllBytes(volume.getDirectory().resolve("BIN")));
+    }
+
+    @DisplayName("Tests that only changed keys are written again and removed keys are deleted")
+    @Test
+    void testIncremental() throws IOException {
+        volume.update(getLayers("2"));
+        Object key = getFileKey("B");
+
+        assertEquals(0, volume.update(getLayers("2")));
+        assertEquals(1, volume.update(getLayers("3")));
+        assertEquals("3", read("A"));
+        assertEquals(key, getFileKey("B"));
+
+        assertEquals(0, volume.update(Collections.singletonList(new SecretData(Collections.emptyMap(), ImmutableMap.of("A", "3")))));
+        assertFalse(Files.exists(volume.getDirectory().resolve("B")));
+        assertFalse(Files.exists(volume.getDirectory().resolve("BIN")));
+    }
+
+    @DisplayName("Tests that unchanged keys of a Secret read again from the same file are not written again")
+    @Test
+    void testIncrementalManifest() throws IOException {
+        String manifest = "kind: Secret\n"
+                + "data:\n"
+                + "  BIN: " + Base64.getEncoder().encodeToString(BINARY) + "\n"
+                + "  A: " + Base64.getEncoder().encodeToString("1".getBytes(StandardCharsets.UTF_8)) + "\n"
+                + "stringData:\n"
+                + "  B: text\n";
+
+        assertEquals(3, volume.update(readLayers(manifest)));
+        assertEquals(0, volume.update(readLayers(manifest)));
+        assertEquals(0, volume.update(readLayers(manifest)));
+        assertEquals(1, volume.update(readLayers(manifest.replace("B: text", "B: changed"))));
+        assertEquals("1", read("A"));
+        assertEquals("changed", read("B"));
+        assertArrayEquals(BINARY, Files.readAllBytes(volume.getDirectory().resolve("BIN")));
+    }
+
+    @DisplayName("Tests that files of an earlier session are written again and stale files are deleted")
+    @Test
+    void testExistingDirectory() throws IOException {
+        Files.createDirectories(volume.getDirectory());
+        Files.write(volume.getDirectory().resolve("A"), "stale".getBytes(StandardCharsets.UTF_8));
+        Files.write(volume.getDirectory().resolve("STALE"), "stale".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(3, volume.update(getLayers("2")));
+        assertEquals("2", read("A"));
+        assertFalse(Files.exists(volume.getDirectory().resolve("STALE")));
+    }
+
+    @DisplayName("Tests that keys which are not valid file names are skipped")
+    @Test
+    void testInvalidKey() throws IOException {
+        assertEquals(0, volume.update(Collections.singletonList(
+                new SecretData(Collections.emptyMap(), ImmutableMap.of("../A", "1", "..data", "1")))));
+        assertFalse(ConfigVolume.isValidKey(".."));
+        assertTrue(ConfigVolume.isValidKey(".env"));
+    }
+
+    private List<SecretData> getLayers(String value) {
+        return Arrays.asList(
+                new SecretData(ImmutableMap.of("BIN", Base64.getEncoder().encodeToString(BINARY)), ImmutableMap.of("A", "1")),
+                new SecretData(Collections.emptyMap(), ImmutableMap.of("A", value, "B", "text")));
+    }
+
+    private List<SecretData> readLayers(String manifest) {
+        Map<String, Object> source = new ManifestReader().read(manifest.getBytes(StandardCharsets.UTF_8));
+        return Collections.singletonList(new SecretParser().parseVolume(source));
+    }
+
+    private String read(String key) throws IOException {
+        return new String(Files.readAllBytes(volume.getDirectory().resolve(key)), StandardCharsets.UTF_8);
+    }
+
+    private Object getFileKey(String key) throws IOException {
+        return Files.readAttributes(volume.getDirectory().resolve(key), BasicFileAttributes.class).fileKey();
+    }
+
+}
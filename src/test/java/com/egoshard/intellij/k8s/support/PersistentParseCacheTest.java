@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.support;
+
+import com.egoshard.intellij.k8s.parser.SecretData;
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tests the persistent parse cache")
+class PersistentParseCacheTest {
+
+    private static final String HASH = ConfigFingerprint.hash("content".getBytes());
+    private static final String SECRET = "s3cr3t-value";
+    private static final Map<String, String> RESULT = ImmutableMap.of("KEY", SECRET, "OTHER", "");
+
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("k8s-config-cache");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @DisplayName("Tests that lazily decoded secret values are stored encoded and stay lazy")
+    @Test
+    void testSecretData() {
+        Map<String, Object> encoded = new HashMap<>();
+        encoded.put("KEY", Base64.getEncoder().encodeToString(SECRET.getBytes(StandardCharsets.UTF_8)));
+        encoded.put("INVALID", "not*base64");
+        Map<String, String> plain = new HashMap<>();
+        plain.put("PLAIN", "value");
+        new PersistentParseCache(directory, Long.MAX_VALUE).put(HASH, null, new SecretData(encoded, plain));
+
+        Map<String, String> result = new PersistentParseCache(directory, Long.MAX_VALUE).get(HASH, null);
+
+        assertTrue(result instanceof SecretData);
+        assertEquals(SECRET, result.get("KEY"));
+        assertEquals("value", result.get("PLAIN"));
+        assertThrows(IllegalArgumentException.class, () -> result.get("INVALID"));
+    }
+
+    @DisplayName("Tests that stored results survive a new cache instance")
+    @Test
+    void testPersisted() {
+        new PersistentParseCache(directory, Long.MAX_VALUE).put(HASH, null, RESULT);
+        PersistentParseCache cache = new PersistentParseCache(directory, Long.MAX_VALUE);
+
+        assertEquals(RESULT, cache.get(HASH, null));
+        assertNull(cache.get(HASH, "name"));
+        assertNull(cache.get(ConfigFingerprint.hash("other".getBytes()), null));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @DisplayName("Tests that entries are separated by name filter")
+    @Test
+    void testNamed() {
+        PersistentParseCache cache = new PersistentParseCache(directory, Long.MAX_VALUE);
+        cache.put(HASH, null, RESULT);
+        cache.put(HASH, "name", ImmutableMap.of("KEY", "named"));
+
+        assertEquals(RESULT, cache.get(HASH, null));
+        assertEquals(ImmutableMap.of("KEY", "named"), cache.get(HASH, "name"));
+    }
+
+    @DisplayName("Tests that neither values nor the content hash are written in clear text")
+    @Test
+    void testEncrypted() throws IOException {
+        new PersistentParseCache(directory, Long.MAX_VALUE).put(HASH, null, RESULT);
+
+        for (Path file : getFiles()) {
+            String content = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+            assertFalse(content.contains(SECRET));
+            assertFalse(content.contains("KEY"));
+            assertFalse(file.getFileName().toString().contains(HASH));
+        }
+    }
+
+    @DisplayName("Tests that corrupt entries are discarded")
+    @Test
+    void testCorrupt() throws IOException {
+        new PersistentParseCache(directory, Long.MAX_VALUE).put(HASH, null, RESULT);
+        Path file = getFiles().get(0);
+        byte[] content = Files.readAllBytes(file);
+        content[content.length - 1] ^= 1;
+        Files.write(file, content);
+        PersistentParseCache cache = new PersistentParseCache(directory, Long.MAX_VALUE);
+
+        assertNull(cache.get(HASH, null));
+        assertTrue(getFiles().isEmpty());
+        assertEquals(0, cache.getSize());
+    }
+
+    @DisplayName("Tests that the least recently used entries are evicted")
+    @Test
+    void testEviction() throws IOException {
+        PersistentParseCache unbounded = new PersistentParseCache(directory, Long.MAX_VALUE);
+        unbounded.put(HASH, "first", RESULT);
+        long entrySize = unbounded.getSize();
+        unbounded.put(HASH, "second", RESULT);
+        List<Path> files = getFiles();
+        long now = System.currentTimeMillis();
+        for (Path file : files) {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(now - 60000));
+        }
+
+        PersistentParseCache cache = new PersistentParseCache(directory, entrySize * 2);
+        assertNotNull(cache.get(HASH, "first"));
+        cache.put(HASH, "third", RESULT);
+
+        assertEquals(2, getFiles().size());
+        assertEquals(entrySize * 2, cache.getSize());
+        assertNotNull(cache.get(HASH, "first"));
+        assertNull(cache.get(HASH, "second"));
+        assertNotNull(cache.get(HASH, "third"));
+    }
+
+    @DisplayName("Tests that temporary files of an earlier session are deleted when the cache is first used")
+    @Test
+    void testOrphanedTempFiles() throws IOException {
+        new PersistentParseCache(directory, Long.MAX_VALUE).put(HASH, null, RESULT);
+        Path entry = getFiles().get(0);
+        Path orphan = Files.createTempFile(directory, entry.getFileName().toString(), ".tmp");
+        Files.setLastModifiedTime(orphan, FileTime.fromMillis(System.currentTimeMillis() - 60000));
+        PersistentParseCache cache = new PersistentParseCache(directory, Long.MAX_VALUE);
+        Path current = Files.createTempFile(directory, "current", ".tmp");
+
+        assertEquals(RESULT, cache.get(HASH, null));
+        assertFalse(Files.exists(orphan));
+        assertTrue(Files.exists(current));
+        assertEquals(Files.size(entry), cache.getSize());
+    }
+
+    private List<Path> getFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+
+}
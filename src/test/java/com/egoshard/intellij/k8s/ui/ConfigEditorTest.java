@@ -21,6 +21,7 @@ import com.egoshard.intellij.k8s.ConfigSettings;
 import com.egoshard.intellij.k8s.TestUtils;
 import com.egoshard.intellij.k8s.parser.ConfigMapParser;
 import com.egoshard.intellij.k8s.parser.ConfigParser;
+import com.egoshard.intellij.k8s.parser.SecretData;
 import com.egoshard.intellij.k8s.parser.SecretParser;
 import com.egoshard.intellij.k8s.support.ConfigFileUtil;
 import com.google.common.collect.ImmutableMap;
@@ -39,7 +40,6 @@ import org.mockito.MockitoAnnotations;
 import org.mockito.internal.util.MockUtil;
 
 import java.io.ByteArrayInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
@@ -57,6 +57,9 @@ class ConfigEditorTest {
     private static final String ELEMENT_ENTRY = TestUtils.getFinalStaticString(ConfigEditor.class, "ELEMENT_ENTRY");
     private static final String FIELD_ENABLED = TestUtils.getFinalStaticString(ConfigEditor.class, "FIELD_ENABLED");
     private static final String FIELD_PATH = TestUtils.getFinalStaticString(ConfigEditor.class, "FIELD_PATH");
+    private static final String FIELD_NAME = TestUtils.getFinalStaticString(ConfigEditor.class, "FIELD_NAME");
+    private static final String FIELD_MOUNT = TestUtils.getFinalStaticString(ConfigEditor.class, "FIELD_MOUNT");
+    private static final String FIELD_CONTAINER = TestUtils.getFinalStaticString(ConfigEditor.class, "FIELD_CONTAINER");
     private static final String SERIALIZATION_ID = TestUtils.getFinalStaticString(ConfigEditor.class, "SERIALIZATION_ID");
     private static final String TITLE = TestUtils.getFinalStaticString(ConfigEditor.class, "TITLE");
     private static final String MSG_PATH_INVALID = TestUtils.getFinalStaticString(ConfigEditor.class, "MSG_PATH_INVALID");
@@ -143,6 +146,9 @@ class ConfigEditorTest {
 
         Element entryElement = new Element(ELEMENT_ENTRY);
         entryElement.setAttribute(FIELD_PATH, PATH);
+        entryElement.setAttribute(FIELD_NAME, "test-configmap");
+        entryElement.setAttribute(FIELD_MOUNT, "CONFIG_DIR");
+        entryElement.setAttribute(FIELD_CONTAINER, "app");
 
         Element entriesElement = new Element(ELEMENT_ENTRIES);
         entriesElement.addContent(entryElement);
@@ -156,6 +162,9 @@ class ConfigEditorTest {
         assertTrue(settings.isEnabled());
         assertEquals(1, settings.getEntries().size());
         assertEquals(PATH, settings.getEntries().get(0).getPath());
+        assertEquals("test-configmap", settings.getEntries().get(0).getName());
+        assertEquals("CONFIG_DIR", settings.getEntries().get(0).getMount());
+        assertEquals("app", settings.getEntries().get(0).getContainer());
 
     }
 
@@ -195,7 +204,7 @@ class ConfigEditorTest {
     @SuppressWarnings("unchecked")
     @DisplayName("Tests configuration parsing")
     @Test
-    void testParse() throws ExecutionException, FileNotFoundException {
+    void testParse() throws ExecutionException, IOException {
 
         String key = "key";
         String value = "value";
@@ -293,6 +302,68 @@ class ConfigEditorTest {
 
     }
 
+    @SuppressWarnings("unchecked")
+    @DisplayName("Tests concurrently parsed entries are merged in list order")
+    @Test
+    void testParseOrdered() throws ExecutionException, IOException, ConfigFileException {
+
+        ConfigEntry first = mock(ConfigEntry.class);
+        ConfigEntry second = mock(ConfigEntry.class);
+        ConfigEntry third = mock(ConfigEntry.class);
+        doReturn(ImmutableMap.of("a", "1", "b", "1", "c", "1")).when(first).parse();
+        doReturn(ImmutableMap.of("b", "2", "c", "2")).when(second).parse();
+        doReturn(ImmutableMap.of("c", "3")).when(third).parse();
+        ConfigSettings settings = new ConfigSettings(true, Arrays.asList(first, second, third));
+        doReturn(settings).when(mockConfig).getUserData(any(Key.class));
+
+        Map<String, String> result = ConfigEditor.parse(mockConfig, new HashMap<>());
+        assertEquals("1", result.get("a"));
+        assertEquals("2", result.get("b"));
+        assertEquals("3", result.get("c"));
+
+    }
+
+    @SuppressWarnings("unchecked")
+    @DisplayName("Tests the first failing entry in list order is reported")
+    @Test
+    void testParseFirstFailure() throws IOException, ConfigFileException {
+
+        ConfigEntry valid = mock(ConfigEntry.class);
+        ConfigEntry first = mock(ConfigEntry.class);
+        ConfigEntry second = mock(ConfigEntry.class);
+        doReturn(new HashMap<>()).when(valid).parse();
+        doThrow(new ConfigFileException("first")).when(first).parse();
+        doThrow(new IOException("second")).when(second).parse();
+        ConfigSettings settings = new ConfigSettings(true, Arrays.asList(valid, first, second));
+        doReturn(settings).when(mockConfig).getUserData(any(Key.class));
+
+        ExecutionException execution = assertThrows(ExecutionException.class, () -> ConfigEditor.parse(mockConfig, new HashMap<>()));
+        assertEquals(ConfigFileException.class, execution.getCause().getClass());
+        assertEquals("first", execution.getCause().getMessage());
+
+    }
+
+    @SuppressWarnings("unchecked")
+    @DisplayName("Tests overridden secret values are not decoded and undecodable winners report their entry")
+    @Test
+    void testParseSecretOverridden() throws ExecutionException, IOException, ConfigFileException {
+
+        ConfigEntry secret = mock(ConfigEntry.class);
+        ConfigEntry override = mock(ConfigEntry.class);
+        doReturn(new SecretData(ImmutableMap.of("a", "not*base64"), new HashMap<>())).when(secret).parse();
+        doReturn(PATH + "1").when(secret).getPath();
+        doReturn(ImmutableMap.of("a", "2")).when(override).parse();
+        doReturn(new ConfigSettings(true, Arrays.asList(secret, override))).when(mockConfig).getUserData(any(Key.class));
+
+        assertEquals("2", ConfigEditor.parse(mockConfig, new HashMap<>()).get("a"));
+
+        doReturn(new ConfigSettings(true, Arrays.asList(override, secret))).when(mockConfig).getUserData(any(Key.class));
+
+        ExecutionException execution = assertThrows(ExecutionException.class, () -> ConfigEditor.parse(mockConfig, new HashMap<>()));
+        assertTrue(execution.getMessage().contains(PATH + "1"));
+
+    }
+
     @SuppressWarnings("unchecked")
     @DisplayName("Tests configuration disabled returns staring config")
     @Test
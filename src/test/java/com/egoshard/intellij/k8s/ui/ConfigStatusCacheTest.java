@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2019. Matt Trefethen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.egoshard.intellij.k8s.ui;
+
+import com.egoshard.intellij.k8s.ConfigEntry;
+import com.egoshard.intellij.k8s.parser.ConfigParser;
+import com.egoshard.intellij.k8s.parser.SecretData;
+import com.egoshard.intellij.k8s.parser.SecretParser;
+import com.egoshard.intellij.k8s.support.ConfigFileUtil;
+import com.google.common.collect.ImmutableMap;
+import com.intellij.execution.configurations.RunConfigurationBase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("Tests background file status validation of config entries")
+class ConfigStatusCacheTest {
+
+    private static final String PATH = "path";
+    private static final String YAML_VALUE = "{\"kind\":\"ConfigMap\",\"data\":{\"test_key\":\"test_data\"}}";
+    private static final String YAML_INVALID = "{\"kind\":\"Pod\"}";
+    private static final String YAML_SECRET_OVERRIDDEN = "{\"kind\":\"Secret\",\"data\":{\"test_key\":\"not*base64\"}}\n---\n"
+            + "{\"kind\":\"Secret\",\"stringData\":{\"test_key\":\"test_data\"}}";
+
+    private final List<Runnable> tasks = new ArrayList<>();
+    private ConfigStatusCache statuses;
+    private int repaints;
+
+    @Mock
+    private ConfigFileUtil mockFileUtil;
+
+    @Mock
+    private RunConfigurationBase mockConfig;
+
+    @Mock
+    private ConfigParser mockParser;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        MockitoAnnotations.initMocks(this);
+        tasks.clear();
+        repaints = 0;
+        statuses = new ConfigStatusCache(tasks::add, () -> repaints++);
+        doReturn(true).when(mockFileUtil).exists(any(RunConfigurationBase.class), anyString());
+        doReturn(ImmutableMap.of("test_key", "test_data")).when(mockParser).parse(anyMap());
+        doReturn(new SecretData(Collections.emptyMap(), ImmutableMap.of("test_key", "test_data")))
+                .when(mockParser).parseVolume(anyMap());
+        doAnswer(invocation -> new ByteArrayInputStream(YAML_VALUE.getBytes()))
+                .when(mockFileUtil).getStream(any(RunConfigurationBase.class), anyString());
+    }
+
+    @DisplayName("Tests that lookups report pending without touching the file system")
+    @Test
+    void testPending() {
+        ConfigEntry entry = getEntry();
+
+        assertEquals(ConfigStatusCache.State.PENDING, statuses.get(entry).getState());
+        assertEquals(ConfigStatusCache.State.PENDING, statuses.get(entry).getState());
+        assertEquals(1, tasks.size());
+        verify(mockFileUtil, never()).exists(any(RunConfigurationBase.class), anyString());
+    }
+
+    @DisplayName("Tests that a valid file is reported once checked")
+    @Test
+    void testValid() {
+        ConfigEntry entry = getEntry();
+        statuses.get(entry);
+        runTasks();
+
+        assertEquals(ConfigStatusCache.State.VALID, statuses.get(entry).getState());
+        assertEquals(1, repaints);
+        assertTrue(tasks.isEmpty());
+    }
+
+    @DisplayName("Tests that a missing file is reported once checked")
+    @Test
+    void testNotFound() {
+        doReturn(false).when(mockFileUtil).exists(any(RunConfigurationBase.class), anyString());
+        ConfigEntry entry = getEntry();
+        statuses.get(entry);
+        runTasks();
+
+        assertEquals(ConfigStatusCache.State.NOT_FOUND, statuses.get(entry).getState());
+        verify(mockParser, never()).parse(anyMap());
+    }
+
+    @DisplayName("Tests that a file that fails to parse is reported with its error")
+    @Test
+    void testInvalid() throws IOException {
+        doAnswer(invocation -> new ByteArrayInputStream(YAML_INVALID.getBytes()))
+                .when(mockFileUtil).getStream(any(RunConfigurationBase.class), anyString());
+        ConfigEntry entry = getEntry();
+        statuses.get(entry);
+        runTasks();
+
+        ConfigStatusCache.Status status = statuses.get(entry);
+        assertEquals(ConfigStatusCache.State.INVALID, status.getState());
+        assertNotNull(status.getMessage());
+    }
+
+    @DisplayName("Tests that invalid base64 is reported even if a later layer overrides the value")
+    @Test
+    void testInvalidOverriddenSecret() throws IOException {
+        doAnswer(invocation -> new ByteArrayInputStream(YAML_SECRET_OVERRIDDEN.getBytes()))
+                .when(mockFileUtil).getStream(any(RunConfigurationBase.class), anyString());
+        doReturn(true).when(mockFileUtil).mayDeclareKind(any(RunConfigurationBase.class), anyString(), anyString());
+        ConfigEntry entry = new ConfigEntry(ImmutableMap.of(ConfigParser.Kind.SECRET.getKey(), new SecretParser()), mockFileUtil,
+                mockConfig, PATH);
+        statuses.get(entry);
+        runTasks();
+
+        ConfigStatusCache.Status status = statuses.get(entry);
+        assertEquals(ConfigStatusCache.State.INVALID, status.getState());
+        assertTrue(status.getMessage().contains("test_key"));
+    }
+
+    @DisplayName("Tests that a changed path is checked again")
+    @Test
+    void testPathChanged() {
+        ConfigEntry entry = getEntry();
+        statuses.get(entry);
+        runTasks();
+        entry.setPath("other");
+
+        assertEquals(ConfigStatusCache.State.PENDING, statuses.get(entry).getState());
+        assertEquals(1, tasks.size());
+    }
+
+    @DisplayName("Tests that a changed container or mount is checked again")
+    @Test
+    void testInjectionChanged() {
+        ConfigEntry entry = getEntry();
+        statuses.get(entry);
+        runTasks();
+        entry.setMount("CONFIG_DIR");
+
+        assertEquals(ConfigStatusCache.State.PENDING, statuses.get(entry).getState());
+        runTasks();
+        assertEquals(ConfigStatusCache.State.VALID, statuses.get(entry).getState());
+
+        entry.setContainer("app");
+
+        assertEquals(ConfigStatusCache.State.PENDING, statuses.get(entry).getState());
+        assertEquals(1, tasks.size());
+    }
+
+    @DisplayName("Tests that invalidated statuses stay visible until checked again")
+    @Test
+    void testInvalidate() {
+        ConfigEntry entry = getEntry();
+        statuses.get(entry);
+        runTasks();
+        doReturn(false).when(mockFileUtil).exists(any(RunConfigurationBase.class), anyString());
+        statuses.invalidate();
+
+        assertEquals(ConfigStatusCache.State.VALID, statuses.get(entry).getState());
+
+        runTasks();
+
+        assertEquals(ConfigStatusCache.State.NOT_FOUND, statuses.get(entry).getState());
+        assertEquals(2, repaints);
+    }
+
+    @DisplayName("Tests that unchanged statuses do not repaint")
+    @Test
+    void testUnchanged() {
+        ConfigEntry entry = getEntry();
+        statuses.get(entry);
+        runTasks();
+        statuses.invalidate();
+        runTasks();
+
+        assertEquals(1, repaints);
+    }
+
+    @DisplayName("Tests that nothing is checked after dispose")
+    @Test
+    void testDisposed() {
+        statuses.dispose();
+        statuses.get(getEntry());
+
+        assertTrue(tasks.isEmpty());
+    }
+
+    private void runTasks() {
+        List<Runnable> pending = new ArrayList<>(tasks);
+        tasks.clear();
+        pending.forEach(Runnable::run);
+    }
+
+    private ConfigEntry getEntry() {
+        Map<String, ConfigParser> parsers = ImmutableMap.of(ConfigParser.Kind.CONFIGMAP.getKey(), mockParser);
+        return new ConfigEntry(parsers, mockFileUtil, mockConfig, PATH);
+    }
+
+}